@@ -0,0 +1,117 @@
+package at.ac.univie.mminf.luceneSKOS.benchmark;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects the results of a harness run as records of named values and
+ * writes them as a JSON array.
+ */
+final class BenchmarkResults {
+
+    private final List<Map<String, Object>> records = new ArrayList<>();
+
+    /**
+     * Starts a new record, values are added to it in insertion order
+     */
+    Map<String, Object> newRecord() {
+        Map<String, Object> record = new LinkedHashMap<>();
+        records.add(record);
+        return record;
+    }
+
+    List<Map<String, Object>> getRecords() {
+        return records;
+    }
+
+    void write(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("[\n");
+            for (int i = 0; i < records.size(); i++) {
+                out.write("  ");
+                out.write(toJSON(records.get(i)));
+                out.write(i + 1 < records.size() ? ",\n" : "\n");
+            }
+            out.write("]\n");
+        }
+    }
+
+    static String toJSON(Object value) {
+        if (value == null || value instanceof Double
+                && (((Double) value).isNaN() || ((Double) value).isInfinite())) {
+            return "null";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        if (value instanceof Map) {
+            StringBuilder json = new StringBuilder("{");
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (json.length() > 1) {
+                    json.append(", ");
+                }
+                json.append(toJSON(String.valueOf(entry.getKey()))).append(": ").append(toJSON(entry.getValue()));
+            }
+            return json.append('}').toString();
+        }
+        if (value instanceof Collection) {
+            StringBuilder json = new StringBuilder("[");
+            for (Object element : (Collection<?>) value) {
+                if (json.length() > 1) {
+                    json.append(", ");
+                }
+                json.append(toJSON(element));
+            }
+            return json.append(']').toString();
+        }
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toString().toCharArray()) {
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
@@ -0,0 +1,150 @@
+package at.ac.univie.mminf.luceneSKOS.benchmark;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngineFactory;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator.Format;
+
+/**
+ * The vocabularies the benchmarks run over.
+ *
+ * "ukat" is the UKAT sample shipped with the tests; "synthetic-N" is a
+ * vocabulary of N concepts written by {@link SKOSVocabularyGenerator} with
+ * its default settings and a fixed seed. Any other name is read as the path
+ * of a local vocabulary file.
+ */
+final class BenchmarkVocabularies {
+
+    static final String UKAT = "ukat";
+
+    static final String SYNTHETIC_PREFIX = "synthetic-";
+
+    static final long SEED = 42;
+
+    private BenchmarkVocabularies() {
+    }
+
+    /**
+     * Builds the engine for a named vocabulary
+     *
+     * @param name "ukat", "synthetic-N" or a file path
+     * @return a new engine
+     * @throws IOException if the engine can not be built
+     */
+    static SKOSEngine load(String name) throws IOException {
+        if (UKAT.equals(name)) {
+            try (InputStream in = BenchmarkVocabularies.class.getResourceAsStream("/skos_samples/ukat_examples.n3")) {
+                return SKOSEngineFactory.getSKOSEngine(in, "N3");
+            }
+        }
+        if (isSynthetic(name)) {
+            SKOSVocabularyGenerator generator = synthetic(name);
+            StringWriter n3 = new StringWriter();
+            generator.write(n3, Format.N3);
+            return SKOSEngineFactory.getSKOSEngine(
+                    new ByteArrayInputStream(n3.toString().getBytes(StandardCharsets.UTF_8)), Format.N3.getLang());
+        }
+        Path file = Paths.get(name);
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                return SKOSEngineFactory.getSKOSEngine(in, format(file));
+            }
+        }
+        throw new IllegalArgumentException("Unknown vocabulary: " + name);
+    }
+
+    static boolean isSynthetic(String name) {
+        return name.startsWith(SYNTHETIC_PREFIX);
+    }
+
+    /**
+     * Guesses the serialization format of a vocabulary file from its extension
+     */
+    static String format(Path file) {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (fileName.endsWith(".n3")) {
+            return Format.N3.getLang();
+        }
+        if (fileName.endsWith(".ttl")) {
+            return Format.TURTLE.getLang();
+        }
+        return Format.RDFXML.getLang();
+    }
+
+    /**
+     * Collects all concept URIs of an engine, in a stable order
+     */
+    static List<String> concepts(SKOSEngine engine) throws IOException {
+        List<String> concepts = new ArrayList<>(((ExtendedSKOSEngine) engine).getAllConcepts());
+        Collections.sort(concepts);
+        return concepts;
+    }
+
+    /**
+     * Collects the preferred labels of the given concepts
+     */
+    static List<String> prefLabels(SKOSEngine engine, List<String> concepts) throws IOException {
+        List<String> labels = new ArrayList<>();
+        for (String concept : concepts) {
+            Collection<String> prefLabels = engine.getPrefLabels(concept);
+            if (prefLabels != null) {
+                labels.addAll(prefLabels);
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Draws a fixed-size, seeded sample of the given values
+     */
+    static List<String> sample(List<String> values, int size, long seed) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to sample from");
+        }
+        Random random = new Random(seed);
+        List<String> sample = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sample.add(values.get(random.nextInt(values.size())));
+        }
+        return sample;
+    }
+
+    /**
+     * Returns the generator of a "synthetic-N" vocabulary
+     */
+    static SKOSVocabularyGenerator synthetic(String name) {
+        return new SKOSVocabularyGenerator(Integer.parseInt(name.substring(SYNTHETIC_PREFIX.length())), SEED);
+    }
+}
@@ -0,0 +1,92 @@
+package at.ac.univie.mminf.luceneSKOS.benchmark;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+
+/**
+ * Measures the lookups the filters issue against a {@link SKOSEngine}.
+ *
+ * Each invocation looks up the next entry of a fixed, seeded sample of labels
+ * or concepts, so repeated runs see the same key sequence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SKOSEngineBenchmark {
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({BenchmarkVocabularies.UKAT, "synthetic-10000", "synthetic-100000"})
+    public String vocabulary;
+
+    private SKOSEngine engine;
+
+    private List<String> concepts;
+
+    private List<String> labels;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        engine = BenchmarkVocabularies.load(vocabulary);
+        List<String> allConcepts = BenchmarkVocabularies.concepts(engine);
+        concepts = BenchmarkVocabularies.sample(allConcepts, SAMPLE_SIZE, 42);
+        labels = BenchmarkVocabularies.sample(BenchmarkVocabularies.prefLabels(engine, allConcepts), SAMPLE_SIZE, 42);
+    }
+
+    @Benchmark
+    public Collection<String> getConcepts() throws IOException {
+        return engine.getConcepts(labels.get(nextIndex()));
+    }
+
+    @Benchmark
+    public Collection<String> getPrefLabels() throws IOException {
+        return engine.getPrefLabels(concepts.get(nextIndex()));
+    }
+
+    @Benchmark
+    public Collection<String> getBroaderTransitiveLabels() throws IOException {
+        return engine.getBroaderTransitiveLabels(concepts.get(nextIndex()));
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (SAMPLE_SIZE - 1);
+        return next;
+    }
+}
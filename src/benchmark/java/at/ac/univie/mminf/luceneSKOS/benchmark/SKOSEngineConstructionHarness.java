@@ -0,0 +1,244 @@
+package at.ac.univie.mminf.luceneSKOS.benchmark;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.util.IOUtils;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngineFactory;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.jena.SKOSEngineImpl;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.jena.SKOSEngineImpl.BuildPhase;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator.Format;
+
+/**
+ * Measures the construction of SKOS engines through each
+ * {@link SKOSEngineFactory} variant on generated vocabularies of increasing
+ * size.
+ *
+ * For each run the harness records the time of each
+ * {@link BuildPhase build phase}, the heap retained by the engine (the heap
+ * in use after garbage collection with the engine alive, minus the heap in
+ * use before), the engine's own estimate {@link SKOSEngineImpl#ramBytesUsed()}
+ * and the GC time and count. The records are written as JSON and serve as a
+ * baseline to compare engine changes against.
+ *
+ * Parameters are given as name=value arguments:
+ * <ul>
+ * <li>sizes: comma-separated numbers of concepts (10000,100000,1000000)</li>
+ * <li>format: the serialization format of the vocabularies, N3, TURTLE or
+ * RDFXML (N3)</li>
+ * <li>variants: comma-separated factory variants (all)</li>
+ * <li>warmups: the number of discarded runs per configuration (1)</li>
+ * <li>runs: the number of recorded runs per configuration (3)</li>
+ * <li>output: the result file (target/skos-engine-construction.json)</li>
+ * </ul>
+ */
+public final class SKOSEngineConstructionHarness {
+
+    private final static Logger logger = Logger.getLogger(SKOSEngineConstructionHarness.class.getName());
+
+    private static final List<String> LANGUAGES = Collections.singletonList("en");
+
+    /**
+     * The {@link SKOSEngineFactory} methods
+     */
+    enum Variant {
+        FILE {
+            @Override
+            SKOSEngine build(Path file, Format format, String indexPath) throws IOException {
+                return SKOSEngineFactory.getSKOSEngine(indexPath, file.toString());
+            }
+        },
+        FILE_LANGUAGES {
+            @Override
+            SKOSEngine build(Path file, Format format, String indexPath) throws IOException {
+                return SKOSEngineFactory.getSKOSEngine(indexPath, file.toString(), LANGUAGES);
+            }
+        },
+        FILE_LABEL_ANALYZER {
+            @Override
+            SKOSEngine build(Path file, Format format, String indexPath) throws IOException {
+                return SKOSEngineFactory.getSKOSEngine(indexPath, file.toString(), LANGUAGES,
+                        SKOSAnalyzer.createLabelAnalyzer());
+            }
+        },
+        STREAM {
+            @Override
+            SKOSEngine build(Path file, Format format, String indexPath) throws IOException {
+                try (InputStream in = Files.newInputStream(file)) {
+                    return SKOSEngineFactory.getSKOSEngine(in, format.getLang());
+                }
+            }
+        },
+        STREAM_LANGUAGES {
+            @Override
+            SKOSEngine build(Path file, Format format, String indexPath) throws IOException {
+                try (InputStream in = Files.newInputStream(file)) {
+                    return SKOSEngineFactory.getSKOSEngine(in, format.getLang(), LANGUAGES);
+                }
+            }
+        },
+        STREAM_LANGUAGE_ARRAY {
+            @Override
+            SKOSEngine build(Path file, Format format, String indexPath) throws IOException {
+                try (InputStream in = Files.newInputStream(file)) {
+                    return SKOSEngineFactory.getSKOSEngine(in, format.getLang(), "en");
+                }
+            }
+        },
+        STREAM_LABEL_ANALYZER {
+            @Override
+            SKOSEngine build(Path file, Format format, String indexPath) throws IOException {
+                try (InputStream in = Files.newInputStream(file)) {
+                    return SKOSEngineFactory.getSKOSEngine(in, format.getLang(), LANGUAGES,
+                            SKOSAnalyzer.createLabelAnalyzer());
+                }
+            }
+        };
+
+        /**
+         * Builds an engine
+         *
+         * @param file the vocabulary file
+         * @param format the format of the file
+         * @param indexPath the prefix of the concept index directory, used by
+         * the file variants
+         */
+        abstract SKOSEngine build(Path file, Format format, String indexPath) throws IOException;
+    }
+
+    private final Map<String, String> params;
+
+    private final BenchmarkResults results = new BenchmarkResults();
+
+    SKOSEngineConstructionHarness(Map<String, String> params) {
+        this.params = params;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> params = SKOSIndexingHarness.parseArgs(args);
+        SKOSEngineConstructionHarness harness = new SKOSEngineConstructionHarness(params);
+        harness.run();
+        Path output = Paths.get(SKOSIndexingHarness.param(params, "output", "target/skos-engine-construction.json"));
+        harness.results.write(output);
+        logger.info("Wrote " + harness.results.getRecords().size() + " results to " + output);
+    }
+
+    void run() throws IOException {
+        Format format = Format.valueOf(SKOSIndexingHarness.param(params, "format", "N3").toUpperCase(Locale.ROOT));
+        int warmups = Integer.parseInt(SKOSIndexingHarness.param(params, "warmups", "1"));
+        int runs = Integer.parseInt(SKOSIndexingHarness.param(params, "runs", "3"));
+        List<Variant> variants = new ArrayList<>();
+        String variantNames = params.get("variants");
+        if (variantNames == null) {
+            variants.addAll(Arrays.asList(Variant.values()));
+        } else {
+            for (String variant : variantNames.split(",")) {
+                variants.add(Variant.valueOf(variant.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        Path workDir = Files.createTempDirectory("skos-engine-construction");
+        try {
+            for (String size : SKOSIndexingHarness.param(params, "sizes", "10000,100000,1000000").split(",")) {
+                int concepts = Integer.parseInt(size.trim());
+                Path file = workDir.resolve("vocabulary-" + concepts + extension(format));
+                new SKOSVocabularyGenerator(concepts, BenchmarkVocabularies.SEED).write(file, format);
+                for (Variant variant : variants) {
+                    for (int run = -warmups; run < runs; run++) {
+                        measure(variant, file, format, concepts, run, workDir);
+                    }
+                }
+                Files.delete(file);
+            }
+        } finally {
+            IOUtils.rm(workDir);
+        }
+    }
+
+    private void measure(Variant variant, Path file, Format format, int concepts, int run, Path workDir)
+            throws IOException {
+        Path indexDir = Files.createTempDirectory(workDir, "index");
+        String indexPath = indexDir.toString() + indexDir.getFileSystem().getSeparator();
+        try {
+            long heapBefore = JvmMetrics.usedHeapBytes();
+            long gcMillis = JvmMetrics.gcMillis();
+            long gcCount = JvmMetrics.gcCount();
+            long start = System.nanoTime();
+            SKOSEngine engine = variant.build(file, format, indexPath);
+            long nanos = System.nanoTime() - start;
+            long runGcMillis = JvmMetrics.gcMillis() - gcMillis;
+            long runGcCount = JvmMetrics.gcCount() - gcCount;
+            long retained = JvmMetrics.usedHeapBytes() - heapBefore;
+            try {
+                if (run < 0) {
+                    return;
+                }
+                Map<String, Object> record = results.newRecord();
+                record.put("variant", variant.name());
+                record.put("format", format.name());
+                record.put("concepts", concepts);
+                record.put("vocabularyBytes", Files.size(file));
+                record.put("run", run);
+                record.put("totalMillis", nanos / 1e6);
+                if (engine instanceof SKOSEngineImpl) {
+                    SKOSEngineImpl impl = (SKOSEngineImpl) engine;
+                    for (BuildPhase phase : BuildPhase.values()) {
+                        record.put(phase.name().toLowerCase(Locale.ROOT) + "Millis", impl.getBuildNanos(phase) / 1e6);
+                    }
+                    record.put("estimatedRamBytes", impl.ramBytesUsed());
+                }
+                record.put("retainedHeapBytes", retained);
+                record.put("gcMillis", runGcMillis);
+                record.put("gcCount", runGcCount);
+                logger.info(BenchmarkResults.toJSON(record));
+            } finally {
+                if (engine instanceof Closeable) {
+                    ((Closeable) engine).close();
+                }
+            }
+        } finally {
+            IOUtils.rm(indexDir);
+        }
+    }
+
+    private static String extension(Format format) {
+        switch (format) {
+            case TURTLE:
+                return ".ttl";
+            case RDFXML:
+                return ".rdf";
+            default:
+                return ".n3";
+        }
+    }
+}
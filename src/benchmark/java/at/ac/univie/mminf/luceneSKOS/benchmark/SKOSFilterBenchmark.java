@@ -0,0 +1,105 @@
+package at.ac.univie.mminf.luceneSKOS.benchmark;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+
+/**
+ * Measures the token throughput of the SKOS filters.
+ *
+ * In LABEL mode each operation analyzes one label of the vocabulary through
+ * the {@link at.ac.univie.mminf.luceneSKOS.analysis.SKOSLabelFilter}; in URI
+ * mode one concept URI through the
+ * {@link at.ac.univie.mminf.luceneSKOS.analysis.SKOSURIFilter}. Scores are
+ * analyzed inputs per second, the returned count of emitted tokens gives the
+ * expansion fan-out. The expansion cache can be switched off to measure the
+ * engine lookups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SKOSFilterBenchmark {
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({BenchmarkVocabularies.UKAT, "synthetic-10000"})
+    public String vocabulary;
+
+    @Param({"LABEL", "URI"})
+    public ExpansionType expansionType;
+
+    @Param({"1", "2", "4"})
+    public int bufferSize;
+
+    @Param({"0", "1024"})
+    public int expansionCacheSize;
+
+    private SKOSAnalyzer analyzer;
+
+    private List<String> inputs;
+
+    @Setup
+    public void setUp() throws IOException {
+        SKOSEngine engine = BenchmarkVocabularies.load(vocabulary);
+        List<String> concepts = BenchmarkVocabularies.concepts(engine);
+        inputs = BenchmarkVocabularies.sample(expansionType == ExpansionType.URI ? concepts
+                : BenchmarkVocabularies.prefLabels(engine, concepts), SAMPLE_SIZE, 42);
+        analyzer = new SKOSAnalyzer(SKOSAnalyzer.STOP_WORDS_SET, engine, expansionType, bufferSize,
+                Arrays.asList(SKOSAnalyzer.DEFAULT_SKOS_TYPES));
+        analyzer.setExpansionCacheSize(expansionCacheSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_SIZE)
+    public long analyze() throws IOException {
+        long tokens = 0;
+        for (String input : inputs) {
+            try (TokenStream ts = analyzer.tokenStream("subject", input)) {
+                ts.reset();
+                while (ts.incrementToken()) {
+                    tokens++;
+                }
+                ts.end();
+            }
+        }
+        return tokens;
+    }
+}
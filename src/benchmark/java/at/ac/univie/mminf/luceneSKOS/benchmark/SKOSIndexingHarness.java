@@ -0,0 +1,273 @@
+package at.ac.univie.mminf.luceneSKOS.benchmark;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.IOUtils;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSCorpusGenerator;
+
+/**
+ * Measures the end-to-end cost of indexing with {@link SKOSAnalyzer}
+ * compared with a plain {@link StandardAnalyzer}.
+ *
+ * The same documents are indexed into a fresh on-disk index once with the
+ * standard analyzer and once with a SKOS analyzer for each expansion type
+ * and set of SKOS types. LABEL expansion indexes text documents, either
+ * read from a corpus file (one document per line) or generated for a
+ * synthetic vocabulary; URI expansion indexes documents holding concept
+ * URIs of the vocabulary. For each run the harness records docs/sec (adding
+ * and committing the documents), the size of the index after merging it to
+ * one segment, the peak heap and the GC time and count. The records are
+ * written as JSON.
+ *
+ * Parameters are given as name=value arguments:
+ * <ul>
+ * <li>vocabulary: "ukat", "synthetic-N" or a vocabulary file (synthetic-10000)</li>
+ * <li>corpus: a corpus file, required unless the vocabulary is synthetic</li>
+ * <li>documents: the number of documents (10000)</li>
+ * <li>hitRate: the hit rate of a generated corpus (0.1)</li>
+ * <li>urisPerDocument: the number of concept URIs per URI document (5)</li>
+ * <li>bufferSize: the number of tokens of the longest label matched (4)</li>
+ * <li>expansionTypes: comma-separated expansion types (LABEL,URI)</li>
+ * <li>types: semicolon-separated, comma-separated SKOS type sets, "default"
+ * for {@link SKOSAnalyzer#DEFAULT_SKOS_TYPES}</li>
+ * <li>warmups: the number of discarded runs per configuration (1)</li>
+ * <li>runs: the number of recorded runs per configuration (3)</li>
+ * <li>output: the result file (target/skos-indexing.json)</li>
+ * </ul>
+ */
+public final class SKOSIndexingHarness {
+
+    private final static Logger logger = Logger.getLogger(SKOSIndexingHarness.class.getName());
+
+    static final String TEXT_FIELD = "content";
+
+    static final String URI_FIELD = "subject";
+
+    private static final String DEFAULT_TYPES = "PREF,ALT;BROADER,NARROWER;"
+            + "BROADERTRANSITIVE,NARROWERTRANSITIVE;RELATED;default";
+
+    private final Map<String, String> params;
+
+    private final BenchmarkResults results = new BenchmarkResults();
+
+    SKOSIndexingHarness(Map<String, String> params) {
+        this.params = params;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> params = parseArgs(args);
+        SKOSIndexingHarness harness = new SKOSIndexingHarness(params);
+        harness.run();
+        Path output = Paths.get(param(params, "output", "target/skos-indexing.json"));
+        harness.results.write(output);
+        logger.info("Wrote " + harness.results.getRecords().size() + " results to " + output);
+    }
+
+    void run() throws IOException {
+        String vocabulary = param(params, "vocabulary", BenchmarkVocabularies.SYNTHETIC_PREFIX + "10000");
+        int documents = Integer.parseInt(param(params, "documents", "10000"));
+        int warmups = Integer.parseInt(param(params, "warmups", "1"));
+        int runs = Integer.parseInt(param(params, "runs", "3"));
+        int bufferSize = Integer.parseInt(param(params, "bufferSize", "4"));
+        List<ExpansionType> expansionTypes = new ArrayList<>();
+        for (String expansionType : param(params, "expansionTypes", "LABEL,URI").split(",")) {
+            expansionTypes.add(ExpansionType.valueOf(expansionType.trim().toUpperCase(Locale.ROOT)));
+        }
+        List<List<SKOSType>> typeSets = parseTypeSets(param(params, "types", DEFAULT_TYPES));
+
+        SKOSEngine engine = BenchmarkVocabularies.load(vocabulary);
+        for (ExpansionType expansionType : expansionTypes) {
+            String field = expansionType == ExpansionType.URI ? URI_FIELD : TEXT_FIELD;
+            List<List<String>> docs = expansionType == ExpansionType.URI ? uriDocuments(engine, documents)
+                    : textDocuments(vocabulary, documents);
+            Map<String, Object> config = new HashMap<>();
+            config.put("vocabulary", vocabulary);
+            config.put("expansionType", expansionType.name());
+            measure(config, "standard", null, new StandardAnalyzer(), field, docs, warmups, runs);
+            for (List<SKOSType> types : typeSets) {
+                Analyzer analyzer = new SKOSAnalyzer(SKOSAnalyzer.STOP_WORDS_SET, engine, expansionType,
+                        bufferSize, types);
+                measure(config, "skos", types, analyzer, field, docs, warmups, runs);
+            }
+        }
+    }
+
+    private void measure(Map<String, Object> config, String analyzerName, List<SKOSType> types, Analyzer analyzer,
+            String field, List<List<String>> docs, int warmups, int runs) throws IOException {
+        for (int run = -warmups; run < runs; run++) {
+            JvmMetrics.resetPeakHeap();
+            long gcMillis = JvmMetrics.gcMillis();
+            long gcCount = JvmMetrics.gcCount();
+            Path indexDir = Files.createTempDirectory("skos-indexing");
+            try (Directory directory = FSDirectory.open(indexDir)) {
+                long start = System.nanoTime();
+                try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer))) {
+                    for (List<String> values : docs) {
+                        Document doc = new Document();
+                        for (String value : values) {
+                            doc.add(new Field(field, value, TextField.TYPE_NOT_STORED));
+                        }
+                        writer.addDocument(doc);
+                    }
+                    writer.commit();
+                    long nanos = System.nanoTime() - start;
+                    long peakHeap = JvmMetrics.peakHeapBytes();
+                    long runGcMillis = JvmMetrics.gcMillis() - gcMillis;
+                    long runGcCount = JvmMetrics.gcCount() - gcCount;
+                    writer.forceMerge(1);
+                    writer.commit();
+                    if (run < 0) {
+                        continue;
+                    }
+                    Map<String, Object> record = results.newRecord();
+                    record.put("vocabulary", config.get("vocabulary"));
+                    record.put("expansionType", config.get("expansionType"));
+                    record.put("analyzer", analyzerName);
+                    record.put("types", types);
+                    record.put("run", run);
+                    record.put("documents", docs.size());
+                    record.put("seconds", nanos / 1e9);
+                    record.put("docsPerSecond", docs.size() / (nanos / 1e9));
+                    record.put("indexBytes", sizeOf(directory));
+                    record.put("peakHeapBytes", peakHeap);
+                    record.put("gcMillis", runGcMillis);
+                    record.put("gcCount", runGcCount);
+                    logger.info(BenchmarkResults.toJSON(record));
+                }
+            } finally {
+                IOUtils.rm(indexDir);
+            }
+        }
+    }
+
+    private List<List<String>> textDocuments(String vocabulary, int documents) throws IOException {
+        List<List<String>> docs = new ArrayList<>(documents);
+        String corpus = params.get("corpus");
+        if (corpus != null) {
+            for (String line : Files.readAllLines(Paths.get(corpus), StandardCharsets.UTF_8)) {
+                if (docs.size() == documents) {
+                    break;
+                }
+                docs.add(Arrays.asList(line));
+            }
+            return docs;
+        }
+        if (!BenchmarkVocabularies.isSynthetic(vocabulary)) {
+            throw new IllegalArgumentException("A corpus is required for the vocabulary " + vocabulary);
+        }
+        SKOSCorpusGenerator generator = new SKOSCorpusGenerator(BenchmarkVocabularies.synthetic(vocabulary),
+                BenchmarkVocabularies.SEED);
+        generator.setHitRate(Double.parseDouble(param(params, "hitRate", "0.1")));
+        for (int i = 0; i < documents; i++) {
+            docs.add(Arrays.asList(generator.getDocument(i)));
+        }
+        return docs;
+    }
+
+    private List<List<String>> uriDocuments(SKOSEngine engine, int documents) throws IOException {
+        int urisPerDocument = Integer.parseInt(param(params, "urisPerDocument", "5"));
+        List<String> concepts = BenchmarkVocabularies.concepts(engine);
+        Random random = new Random(BenchmarkVocabularies.SEED);
+        List<List<String>> docs = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            List<String> uris = new ArrayList<>(urisPerDocument);
+            for (int j = 0; j < urisPerDocument; j++) {
+                uris.add(concepts.get(random.nextInt(concepts.size())));
+            }
+            docs.add(uris);
+        }
+        return docs;
+    }
+
+    /**
+     * Reads name=value arguments; arguments passed through Maven arrive as a
+     * single, space-separated one
+     */
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            for (String param : arg.trim().split("\\s+")) {
+                if (param.isEmpty()) {
+                    continue;
+                }
+                int eq = param.indexOf('=');
+                if (eq < 1) {
+                    throw new IllegalArgumentException("Arguments must be given as name=value: " + param);
+                }
+                params.put(param.substring(0, eq), param.substring(eq + 1));
+            }
+        }
+        return params;
+    }
+
+    static List<List<SKOSType>> parseTypeSets(String value) {
+        List<List<SKOSType>> typeSets = new ArrayList<>();
+        for (String set : value.split(";")) {
+            if ("default".equalsIgnoreCase(set.trim())) {
+                typeSets.add(Arrays.asList(SKOSAnalyzer.DEFAULT_SKOS_TYPES));
+                continue;
+            }
+            List<SKOSType> types = new ArrayList<>();
+            for (String type : set.split(",")) {
+                types.add(SKOSType.valueOf(type.trim().toUpperCase(Locale.ROOT)));
+            }
+            typeSets.add(types);
+        }
+        return typeSets;
+    }
+
+    static String param(Map<String, String> params, String name, String defaultValue) {
+        String value = params.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static long sizeOf(Directory directory) throws IOException {
+        long size = 0;
+        for (String file : directory.listAll()) {
+            size += directory.fileLength(file);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,92 @@
+package at.ac.univie.mminf.luceneSKOS.benchmark;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.SKOSStandardQueryParser;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSQueryNodeProcessor.ExpansionQueryMode;
+
+/**
+ * Measures the latency of parsing a query with
+ * {@link SKOSStandardQueryParser}, from the query string to the expanded
+ * Lucene query. Each invocation parses the next label of a seeded sample as
+ * a phrase; no expansion cache is set, so every parse expands its terms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SKOSQueryParserBenchmark {
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({BenchmarkVocabularies.UKAT, "synthetic-10000"})
+    public String vocabulary;
+
+    @Param({"BOOLEAN", "SYNONYM", "TERMS"})
+    public ExpansionQueryMode expansionQueryMode;
+
+    private SKOSStandardQueryParser parser;
+
+    private List<String> queries;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        SKOSEngine engine = BenchmarkVocabularies.load(vocabulary);
+        List<String> labels = BenchmarkVocabularies.prefLabels(engine, BenchmarkVocabularies.concepts(engine));
+        queries = BenchmarkVocabularies.sample(labels, SAMPLE_SIZE, 42);
+        for (int i = 0; i < queries.size(); i++) {
+            queries.set(i, '"' + queries.get(i).replace("\"", "") + '"');
+        }
+        parser = new SKOSStandardQueryParser(new SKOSAnalyzer(engine, ExpansionType.LABEL));
+        parser.setExpansionQueryMode(expansionQueryMode);
+        for (SKOSType type : SKOSType.values()) {
+            parser.setBoost(type, 1f);
+        }
+    }
+
+    @Benchmark
+    public Query parse() throws QueryNodeException {
+        next = (next + 1) & (SAMPLE_SIZE - 1);
+        return parser.parse(queries.get(next), "content");
+    }
+}
@@ -18,9 +18,15 @@
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeSet;
@@ -28,17 +34,22 @@
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.payloads.PayloadHelper;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.analysis.util.CharacterUtils;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
 
 import org.apache.lucene.util.CharsRefBuilder;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
 import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ConceptIdMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.PayloadMode;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
 
 /**
@@ -46,6 +57,29 @@
  */
 public abstract class AbstractSKOSFilter extends TokenFilter {
 
+    /**
+     * Default expansion budget (unlimited)
+     */
+    public static final int UNLIMITED_EXPANSIONS = Integer.MAX_VALUE;
+    /**
+     * Default number of token expansions kept by each filter
+     */
+    public static final int DEFAULT_EXPANSION_CACHE_SIZE = 256;
+    /**
+     * The order in which the SKOS types are expanded. When a budget is
+     * exhausted, the types at the end of this list are pruned first.
+     */
+    public static final SKOSType[] EXPANSION_PRIORITY = new SKOSType[]{
+            SKOSType.PREF,
+            SKOSType.ALT,
+            SKOSType.HIDDEN,
+            SKOSType.BROADER,
+            SKOSType.NARROWER,
+            SKOSType.RELATED,
+            SKOSType.BROADERTRANSITIVE,
+            SKOSType.NARROWERTRANSITIVE
+    };
+
     // a stack holding the expanded terms for a token
     protected Stack<ExpandedTerm> termStack;
     // an engine delivering SKOS concepts
@@ -69,6 +103,54 @@ public abstract class AbstractSKOSFilter extends TokenFilter {
     protected final Analyzer analyzer;
 
     private List<SKOSTypeAttribute.SKOSType> defaultTypes = Arrays.asList(SKOSAnalyzer.DEFAULT_SKOS_TYPES);
+    // the maximum number of expanded terms per input token
+    private int maxExpansionsPerToken = UNLIMITED_EXPANSIONS;
+    // the maximum number of expanded terms per stream (i.e., field value)
+    private int maxExpansionsPerDocument = UNLIMITED_EXPANSIONS;
+    // the number of expanded terms pushed for the current token
+    private int tokenExpansions;
+    // the number of expanded terms pushed since the last reset
+    private int documentExpansions;
+    // collects the expansion counters
+    private SKOSExpansionStats stats = new SKOSExpansionStats();
+    // how the SKOS type of expanded terms is written to the payload
+    private PayloadMode payloadMode = SKOSAnalyzer.DEFAULT_PAYLOAD_MODE;
+    // the weights written in WEIGHT payload mode
+    private SKOSWeights weights = new SKOSWeights();
+    // drops or down-weights too common expansions, if any
+    private SKOSExpansionSuppressor suppressor;
+
+    private ConceptIdMode conceptIdMode = ConceptIdMode.NONE;
+    // whether terms repeated at the same position are dropped
+    private boolean deduplicate;
+    // whether emitted terms are lower-cased
+    private boolean lowerCase;
+    // the stop words dropped from the output, if any
+    private CharArraySet stopWords;
+    // the terms emitted at the current position
+    private final CharArrayTermSet positionTermSet = new CharArrayTermSet();
+    // the expanded terms by their id in the position term set (null for the input token)
+    private final List<ExpandedTerm> positionTerms = new ArrayList<>();
+    // the position increments of dropped tokens, added to the next emitted token
+    private int skippedPositions;
+    // reused when analyzing expanded terms
+    private final CharsRefBuilder analyzeBuffer = new CharsRefBuilder();
+    // reused when lower-casing the input token for deduplication
+    private char[] scratch = new char[16];
+    private final CharacterUtils charUtils = CharacterUtils.getInstance();
+    // the offsets of the token the terms on the stack were expanded from
+    private int expansionStart = -1;
+    private int expansionEnd = -1;
+    // the recently built expansions by token text, null if disabled
+    private ExpansionCache expansionCache = new ExpansionCache(DEFAULT_EXPANSION_CACHE_SIZE);
+    // the engine version the cached expansions were built with
+    private long cacheVersion = -1;
+    // cache lookups since the last flush to the stats
+    private long cacheHits;
+    private long cacheMisses;
+    // whether a budget cut the expansion being built
+    private boolean tokenTruncated;
+    private boolean documentTruncated;
 
     /**
      * Constructor
@@ -99,6 +181,549 @@ public AbstractSKOSFilter(TokenStream input, SKOSEngine engine, Analyzer analyze
     @Override
     public abstract boolean incrementToken() throws IOException;
 
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        termStack.clear();
+        current = null;
+        documentExpansions = 0;
+        skippedPositions = 0;
+        if (expansionCache != null) {
+            // engines without versions are assumed not to change
+            long version = engine instanceof ExtendedSKOSEngine ? ((ExtendedSKOSEngine) engine).getVersion() : 0;
+            if (version != cacheVersion) {
+                expansionCache.clear();
+                cacheVersion = version;
+            }
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        // carry the positions of trailing dropped tokens, as StopFilter does
+        posIncrAtt.setPositionIncrement(posIncrAtt.getPositionIncrement() + skippedPositions);
+        skippedPositions = 0;
+        if (cacheHits != 0 || cacheMisses != 0) {
+            stats.recordCacheLookups(cacheHits, cacheMisses);
+            cacheHits = 0;
+            cacheMisses = 0;
+        }
+    }
+
+    /**
+     * Sets the maximum number of expanded terms emitted for a single input
+     * token. Expansions are pruned following {@link #EXPANSION_PRIORITY} and,
+     * for transitive relations, the distance in the concept hierarchy. Terms
+     * dropped as duplicates, stop words or suppressed terms are not emitted
+     * and do not count against this or the per-document budget.
+     *
+     * @param maxExpansionsPerToken the budget, must be positive
+     */
+    public void setMaxExpansionsPerToken(int maxExpansionsPerToken) {
+        if (maxExpansionsPerToken < 1) {
+            throw new IllegalArgumentException("maxExpansionsPerToken must be positive");
+        }
+        this.maxExpansionsPerToken = maxExpansionsPerToken;
+    }
+
+    public int getMaxExpansionsPerToken() {
+        return maxExpansionsPerToken;
+    }
+
+    /**
+     * Sets the maximum number of expanded terms emitted for a whole stream
+     * (i.e., a field value). Once exhausted, the remaining tokens are passed
+     * through without expansion.
+     *
+     * @param maxExpansionsPerDocument the budget, must be positive
+     */
+    public void setMaxExpansionsPerDocument(int maxExpansionsPerDocument) {
+        if (maxExpansionsPerDocument < 1) {
+            throw new IllegalArgumentException("maxExpansionsPerDocument must be positive");
+        }
+        this.maxExpansionsPerDocument = maxExpansionsPerDocument;
+    }
+
+    public int getMaxExpansionsPerDocument() {
+        return maxExpansionsPerDocument;
+    }
+
+    /**
+     * Sets the counters the filter reports to, usually shared between filters
+     *
+     * @param stats the expansion counters
+     */
+    public void setStats(SKOSExpansionStats stats) {
+        this.stats = stats;
+    }
+
+    public SKOSExpansionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Sets how the SKOS types of expanded terms are written to the payload.
+     * In {@link PayloadMode#MASK} mode a label reached through several types
+     * at the same position is emitted once, carrying all of them.
+     *
+     * @param payloadMode the payload mode
+     */
+    public void setPayloadMode(PayloadMode payloadMode) {
+        this.payloadMode = payloadMode;
+    }
+
+    public PayloadMode getPayloadMode() {
+        return payloadMode;
+    }
+
+    /**
+     * Sets the weights written to the payload in {@link PayloadMode#WEIGHT}
+     * mode. In this mode transitive relations are always walked ring by ring
+     * to find the distance of each concept.
+     *
+     * @param weights the weights
+     */
+    public void setWeights(SKOSWeights weights) {
+        this.weights = weights;
+    }
+
+    public SKOSWeights getWeights() {
+        return weights;
+    }
+
+    /**
+     * Sets the document frequency based suppression of expanded terms.
+     * Down-weighting only takes effect in {@link PayloadMode#WEIGHT} mode.
+     *
+     * @param suppressor the suppressor or null
+     */
+    public void setSuppressor(SKOSExpansionSuppressor suppressor) {
+        this.suppressor = suppressor;
+    }
+
+    public SKOSExpansionSuppressor getSuppressor() {
+        return suppressor;
+    }
+
+    /**
+     * Drops terms that are repeated at the same position, including
+     * expansions equal to the input token, before they are emitted. This
+     * replaces a downstream RemoveDuplicatesTokenFilter. Duplicates are
+     * dropped before the expansion budgets are checked, so they do not use
+     * up the budgets.
+     *
+     * @param deduplicate whether to drop duplicate terms
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * Lower-cases input tokens and expanded terms. This replaces a
+     * downstream LowerCaseFilter and lets the deduplication see the final
+     * term text.
+     *
+     * @param lowerCase whether to lower-case terms
+     */
+    public void setLowerCase(boolean lowerCase) {
+        this.lowerCase = lowerCase;
+    }
+
+    public boolean isLowerCase() {
+        return lowerCase;
+    }
+
+    /**
+     * Drops input tokens and expanded terms that are stop words. This
+     * replaces a downstream StopFilter; position increments of dropped
+     * tokens are preserved.
+     *
+     * @param stopWords the stop words or null
+     */
+    public void setStopWords(CharArraySet stopWords) {
+        this.stopWords = stopWords;
+    }
+
+    public CharArraySet getStopWords() {
+        return stopWords;
+    }
+
+    /**
+     * Sets the number of recent token expansions kept by this filter. The
+     * cache is private to the filter (and thus to the thread using it) and is
+     * cleared on reset if the engine version has changed.
+     *
+     * @param expansionCacheSize the number of cached tokens, 0 disables the cache
+     */
+    public void setExpansionCacheSize(int expansionCacheSize) {
+        if (expansionCacheSize < 0) {
+            throw new IllegalArgumentException("expansionCacheSize must not be negative");
+        }
+        this.expansionCache = expansionCacheSize > 0 ? new ExpansionCache(expansionCacheSize) : null;
+        this.cacheVersion = -1;
+    }
+
+    public int getExpansionCacheSize() {
+        return expansionCache != null ? expansionCache.maxSize : 0;
+    }
+
+    /**
+     * Applies lower-casing and stop word removal to the input token held by
+     * the attributes. Must be called before the input token is emitted.
+     *
+     * @return false if the input token has to be dropped
+     */
+    protected boolean acceptInputToken() {
+        if (lowerCase) {
+            charUtils.toLowerCase(termAtt.buffer(), 0, termAtt.length());
+        }
+        if (stopWords != null && stopWords.contains(termAtt.buffer(), 0, termAtt.length())) {
+            skippedPositions += posIncrAtt.getPositionIncrement();
+            return false;
+        }
+        if (skippedPositions != 0) {
+            posIncrAtt.setPositionIncrement(posIncrAtt.getPositionIncrement() + skippedPositions);
+            skippedPositions = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Prepares the deduplication for a new position, the input token held by
+     * the attributes is added first
+     */
+    private void startPosition() {
+        positionTermSet.clear();
+        positionTerms.clear();
+        if (deduplicate) {
+            int length = termAtt.length();
+            if (scratch.length < length) {
+                scratch = ArrayUtil.grow(scratch, length);
+            }
+            System.arraycopy(termAtt.buffer(), 0, scratch, 0, length);
+            if (lowerCase) {
+                charUtils.toLowerCase(scratch, 0, length);
+            }
+            positionTermSet.add(scratch, 0, length);
+            positionTerms.add(null);
+        }
+    }
+
+    /**
+     * Sets whether tokens are expanded to the URIs of the concepts they refer
+     * to (and optionally of the ancestors of these concepts) instead of
+     * labels. Concept IDs are not affected by label changes, and a field
+     * holds one term per concept rather than one per label; the configured
+     * SKOS types are ignored in this mode.
+     *
+     * @param conceptIdMode the concept ID mode
+     */
+    public void setConceptIdMode(ConceptIdMode conceptIdMode) {
+        this.conceptIdMode = conceptIdMode;
+    }
+
+    public ConceptIdMode getConceptIdMode() {
+        return conceptIdMode;
+    }
+
+    /**
+     * Expands a token, reusing the expansion built for the same token text if
+     * it is still cached
+     *
+     * @param origin the expanded token
+     * @return true if term stack is not empty
+     * @throws IOException if the engine failed
+     */
+    protected boolean expandToken(ExpandedTerm origin) throws IOException {
+        if (expansionCache == null) {
+            return lookupAndExpand(origin);
+        }
+        CachedExpansion cached = expansionCache.get(origin.getTerm());
+        if (cached != null) {
+            cacheHits++;
+            return pushCachedExpansion(origin, cached);
+        }
+        cacheMisses++;
+        documentTruncated = false;
+        boolean expanded = lookupAndExpand(origin);
+        // an expansion cut by the document budget is not complete
+        if (!documentTruncated) {
+            expansionCache.put(origin.getTerm(), new CachedExpansion(
+                    termStack.toArray(new ExpandedTerm[termStack.size()]), tokenTruncated));
+        }
+        return expanded;
+    }
+
+    /**
+     * Expands a token with the engine, timing the lookups
+     */
+    private boolean lookupAndExpand(ExpandedTerm origin) throws IOException {
+        long start = System.nanoTime();
+        boolean expanded = expandConcepts(origin, lookupConcepts(origin));
+        stats.recordLookup(System.nanoTime() - start);
+        return expanded;
+    }
+
+    /**
+     * Looks up the concepts a token refers to
+     *
+     * @param origin the expanded token
+     * @return the concept URIs, may be null
+     * @throws IOException if the engine failed
+     */
+    protected abstract Collection<String> lookupConcepts(ExpandedTerm origin) throws IOException;
+
+    private boolean pushCachedExpansion(ExpandedTerm origin, CachedExpansion cached) {
+        tokenExpansions = 0;
+        expansionStart = origin.getStart();
+        expansionEnd = origin.getEnd();
+        if (isDocumentBudgetExhausted()) {
+            return false;
+        }
+        int count = cached.terms.length;
+        if (cached.tokenTruncated) {
+            stats.recordTokenTruncation();
+        }
+        if (count > maxExpansionsPerDocument - documentExpansions) {
+            count = maxExpansionsPerDocument - documentExpansions;
+            stats.recordDocumentTruncation();
+        }
+        for (int i = 0; i < count; i++) {
+            termStack.push(cached.terms[i]);
+        }
+        tokenExpansions = count;
+        documentExpansions += count;
+        stats.recordExpansion(count);
+        return count > 0;
+    }
+
+    /**
+     * Expands the given concepts to the configured SKOS types, honoring the
+     * expansion budgets. The engine is queried lazily, type by type, so no
+     * lookups are done once a budget is exhausted.
+     *
+     * @param origin the expanded token
+     * @param conceptURIs the concepts matching the token
+     * @return true if term stack is not empty
+     * @throws IOException if the engine failed
+     */
+    protected boolean expandConcepts(ExpandedTerm origin, Collection<String> conceptURIs) throws IOException {
+        tokenExpansions = 0;
+        tokenTruncated = false;
+        expansionStart = origin.getStart();
+        expansionEnd = origin.getEnd();
+        startPosition();
+        if (isDocumentBudgetExhausted()) {
+            return false;
+        }
+        if (conceptURIs != null && !conceptURIs.isEmpty() && conceptIdMode != ConceptIdMode.NONE) {
+            pushConceptIdsToStack(origin, conceptURIs);
+        } else if (conceptURIs != null && !conceptURIs.isEmpty()) {
+            for (SKOSType type : EXPANSION_PRIORITY) {
+                if (types.contains(type) && !expandConcepts(origin, conceptURIs, type)) {
+                    break;
+                }
+            }
+        }
+        stats.recordExpansion(tokenExpansions);
+        return !termStack.isEmpty();
+    }
+
+    /**
+     * @return false if a budget is exhausted
+     */
+    private boolean expandConcepts(ExpandedTerm origin, Collection<String> conceptURIs, SKOSType type)
+            throws IOException {
+        for (String conceptURI : conceptURIs) {
+            if (!expandConcept(origin, conceptURI, type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pushes the labels of a single relation of a concept to the stack
+     *
+     * @return false if a budget is exhausted
+     */
+    private boolean expandConcept(ExpandedTerm origin, String conceptURI, SKOSType type) throws IOException {
+        switch (type) {
+            case PREF:
+                return pushLabelsToStack(origin, engine.getPrefLabels(conceptURI), type, 0);
+            case ALT:
+                return pushLabelsToStack(origin, engine.getAltLabels(conceptURI), type, 0);
+            case HIDDEN:
+                return pushLabelsToStack(origin, engine.getHiddenLabels(conceptURI), type, 0);
+            case BROADER:
+                return pushLabelsToStack(origin, engine.getBroaderLabels(conceptURI), type, 1);
+            case NARROWER:
+                return pushLabelsToStack(origin, engine.getNarrowerLabels(conceptURI), type, 1);
+            case RELATED:
+                return pushLabelsToStack(origin, engine.getRelatedLabels(conceptURI), type, 1);
+            case BROADERTRANSITIVE:
+                if (!needsDistance()) {
+                    return pushLabelsToStack(origin, engine.getBroaderTransitiveLabels(conceptURI), type, 1);
+                }
+                return pushTransitiveLabelsToStack(origin, conceptURI, type,
+                        engine.getBroaderTransitiveConcepts(conceptURI));
+            case NARROWERTRANSITIVE:
+                if (!needsDistance()) {
+                    return pushLabelsToStack(origin, engine.getNarrowerTransitiveLabels(conceptURI), type, 1);
+                }
+                return pushTransitiveLabelsToStack(origin, conceptURI, type,
+                        engine.getNarrowerTransitiveConcepts(conceptURI));
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Pushes the URIs of the concepts, and in {@link ConceptIdMode#ANCESTORS}
+     * mode those of their broaderTransitive concepts, to the stack. The
+     * concepts get the type PREF, their ancestors BROADERTRANSITIVE.
+     *
+     * @return false if a budget is exhausted
+     */
+    private boolean pushConceptIdsToStack(ExpandedTerm origin, Collection<String> conceptURIs)
+            throws IOException {
+        Set<String> pushed = new HashSet<>();
+        // a URI token is its own concept ID
+        pushed.add(origin.getTerm());
+        for (String conceptURI : conceptURIs) {
+            if (pushed.add(conceptURI) && !pushConceptIdToStack(origin, conceptURI, SKOSType.PREF, 0)) {
+                return false;
+            }
+        }
+        if (conceptIdMode == ConceptIdMode.ANCESTORS) {
+            for (String conceptURI : conceptURIs) {
+                Collection<String> ancestors = engine.getBroaderTransitiveConcepts(conceptURI);
+                if (ancestors == null) {
+                    continue;
+                }
+                for (String ancestorURI : ancestors) {
+                    if (pushed.add(ancestorURI)
+                            && !pushConceptIdToStack(origin, ancestorURI, SKOSType.BROADERTRANSITIVE, 1)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean pushConceptIdToStack(ExpandedTerm origin, String conceptURI, SKOSType type, int distance)
+            throws IOException {
+        // concept IDs are neither analyzed nor suppressed, but lower-cased
+        // like URI tokens
+        char[] chars = conceptURI.toCharArray();
+        if (lowerCase) {
+            charUtils.toLowerCase(chars, 0, chars.length);
+        }
+        return pushTermToStack(origin, chars, chars.length, type, distance, false);
+    }
+
+    /**
+     * Checks whether the per-document budget allows any further expansion.
+     * Tokens seen after the budget is exhausted are counted as truncated.
+     *
+     * @return true if no more terms may be expanded in this stream
+     */
+    protected boolean isDocumentBudgetExhausted() {
+        if (documentExpansions >= maxExpansionsPerDocument) {
+            stats.recordDocumentTruncation();
+            documentTruncated = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if transitive expansions must be ordered (and weighted) by
+     * their distance
+     */
+    private boolean needsDistance() {
+        return maxExpansionsPerToken != UNLIMITED_EXPANSIONS
+                || maxExpansionsPerDocument != UNLIMITED_EXPANSIONS
+                || payloadMode == PayloadMode.WEIGHT;
+    }
+
+    /**
+     * Walks the transitive closure ring by ring along the direct relations so
+     * that closer concepts are expanded first. Concepts of the closure not
+     * reachable through direct relations are expanded last.
+     */
+    private boolean pushTransitiveLabelsToStack(ExpandedTerm origin, String conceptURI, SKOSType type,
+            Collection<String> closure) throws IOException {
+        if (closure == null || closure.isEmpty()) {
+            return true;
+        }
+        Set<String> remaining = new LinkedHashSet<>(closure);
+        Set<String> pushed = new HashSet<>();
+        Collection<String> ring = nextConcepts(conceptURI, type);
+        int distance = 1;
+        while (!remaining.isEmpty()) {
+            List<String> level = new ArrayList<>();
+            for (String aConceptURI : ring) {
+                if (remaining.remove(aConceptURI)) {
+                    level.add(aConceptURI);
+                }
+            }
+            if (level.isEmpty()) {
+                level.addAll(remaining);
+                remaining.clear();
+            }
+            for (String aConceptURI : level) {
+                if (!pushConceptLabelsToStack(origin, aConceptURI, type, distance, pushed)) {
+                    return false;
+                }
+            }
+            if (remaining.isEmpty()) {
+                break;
+            }
+            List<String> nextRing = new ArrayList<>();
+            for (String aConceptURI : level) {
+                nextRing.addAll(nextConcepts(aConceptURI, type));
+            }
+            ring = nextRing;
+            distance++;
+        }
+        return true;
+    }
+
+    private Collection<String> nextConcepts(String conceptURI, SKOSType type) throws IOException {
+        Collection<String> concepts = type == SKOSType.BROADERTRANSITIVE
+                ? engine.getBroaderConcepts(conceptURI)
+                : engine.getNarrowerConcepts(conceptURI);
+        return concepts != null ? concepts : Collections.<String>emptyList();
+    }
+
+    private boolean pushConceptLabelsToStack(ExpandedTerm origin, String conceptURI, SKOSType type,
+            int distance, Set<String> pushed) throws IOException {
+        Collection<String> prefLabels = engine.getPrefLabels(conceptURI);
+        if (prefLabels != null) {
+            for (String label : prefLabels) {
+                if (pushed.add(label) && !pushLabelToStack(origin, label, type, distance)) {
+                    return false;
+                }
+            }
+        }
+        Collection<String> altLabels = engine.getAltLabels(conceptURI);
+        if (altLabels != null) {
+            for (String label : altLabels) {
+                if (pushed.add(label) && !pushLabelToStack(origin, label, type, distance)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Replaces the current term (attributes) with term (attributes) from the stack
      *
@@ -106,31 +731,29 @@ public AbstractSKOSFilter(TokenStream input, SKOSEngine engine, Analyzer analyze
      */
     protected void processTermOnStack() throws IOException {
         ExpandedTerm expandedTerm = termStack.pop();
-        String term = expandedTerm.getTerm();
         SKOSType termType = expandedTerm.getTermType();
-        String sTerm;
-        try {
-            CharsRefBuilder builder = new CharsRefBuilder();
-            sTerm = analyze(analyzer, term, builder).toString();
-        } catch (IllegalArgumentException e) {
-            // skip this term
-            return;
-        }
         // copies the values of all attribute implementations from this state into
         // the implementations of the target stream
         restoreState(current);
-        // adds the expanded term to the term buffer
-        termAtt.setEmpty().append(sTerm);
-        // set position increment to zero to put multiple terms into the same position
-        posIncrAtt.setPositionIncrement(0);
+        // adds the expanded (and already analyzed) term to the term buffer
+        termAtt.setEmpty().append(expandedTerm.getTerm());
+        // set position increment to zero to put multiple terms into the same position,
+        // unless the input token was dropped
+        posIncrAtt.setPositionIncrement(skippedPositions);
+        skippedPositions = 0;
         // set offset of the original expression (usefull for highlighting)
-        if (expandedTerm.getStart() >= 0 && expandedTerm.getEnd() >= 0)
-            offsettAtt.setOffset(expandedTerm.getStart(), expandedTerm.getEnd());
+        if (expansionStart >= 0 && expansionEnd >= 0)
+            offsettAtt.setOffset(expansionStart, expansionEnd);
         // sets the type of the expanded term (pref, alt, broader, narrower, etc.)
         skosAtt.setSkosType(termType);
-        // converts the SKOS Attribute to a payload, which is propagated to the index
-        byte[] bytes = PayloadHelper.encodeInt(skosAtt.getSkosType().ordinal());
-        payloadAtt.setPayload(new BytesRef(bytes));
+        // converts the SKOS Attribute to a (shared) payload, which is propagated to the index
+        BytesRef payload = payloadMode == PayloadMode.WEIGHT
+                ? SKOSPayloads.encodeWeight(weights.getWeight(termType, expandedTerm.getDistance())
+                        * expandedTerm.getWeightFactor())
+                : SKOSPayloads.encode(payloadMode, termType, expandedTerm.getTypeMask());
+        if (payload != null) {
+            payloadAtt.setPayload(payload);
+        }
     }
 
     public static CharsRef analyze(Analyzer analyzer, String text, CharsRefBuilder buffer)
@@ -156,12 +779,132 @@ public static CharsRef analyze(Analyzer analyzer, String text, CharsRefBuilder b
         return buffer.get();
     }
 
-    protected void pushLabelsToStack(ExpandedTerm origin, Collection<String> labels, SKOSType type) {
+    /**
+     * Pushes the given labels to the stack as long as the budgets allow
+     *
+     * @return false if a budget is exhausted
+     */
+    protected boolean pushLabelsToStack(ExpandedTerm origin, Collection<String> labels, SKOSType type,
+            int distance) throws IOException {
         if (labels != null) {
             for (String label : labels) {
-                termStack.push(new ExpandedTerm(label, type, origin.getStart(), origin.getEnd()));
+                if (!pushLabelToStack(origin, label, type, distance)) {
+                    return false;
+                }
             }
         }
+        return true;
+    }
+
+    /**
+     * Analyzes a label and pushes it to the stack unless it is a stop word,
+     * a duplicate at this position, or a budget is exhausted
+     *
+     * @return false if a budget is exhausted
+     */
+    private boolean pushLabelToStack(ExpandedTerm origin, String label, SKOSType type, int distance)
+            throws IOException {
+        analyzeBuffer.clear();
+        try {
+            analyze(analyzer, label, analyzeBuffer);
+        } catch (IllegalArgumentException e) {
+            // skip this term
+            return true;
+        }
+        char[] chars = analyzeBuffer.chars();
+        int length = analyzeBuffer.length();
+        if (lowerCase) {
+            charUtils.toLowerCase(chars, 0, length);
+        }
+        if (stopWords != null && stopWords.contains(chars, 0, length)) {
+            return true;
+        }
+        return pushTermToStack(origin, chars, length, type, distance, true);
+    }
+
+    /**
+     * Pushes an analyzed term to the stack unless it is a duplicate at this
+     * position, suppressed, or a budget is exhausted
+     *
+     * @return false if a budget is exhausted
+     */
+    private boolean pushTermToStack(ExpandedTerm origin, char[] chars, int length, SKOSType type,
+            int distance, boolean suppressible) throws IOException {
+        if (deduplicate || payloadMode == PayloadMode.MASK) {
+            int id = positionTermSet.add(chars, 0, length);
+            if (id < 0) {
+                ExpandedTerm seen = positionTerms.get(-id - 1);
+                if (seen != null && payloadMode == PayloadMode.MASK) {
+                    seen.addTermType(type);
+                }
+                return true;
+            }
+        }
+        String term = new String(chars, 0, length);
+        float weightFactor = 1f;
+        if (suppressor != null && suppressible) {
+            weightFactor = suppressor.getWeight(term);
+            if (weightFactor == 0f) {
+                stats.recordSuppression();
+                return true;
+            }
+        }
+        if (tokenExpansions >= maxExpansionsPerToken) {
+            stats.recordTokenTruncation();
+            tokenTruncated = true;
+            return false;
+        }
+        if (documentExpansions >= maxExpansionsPerDocument) {
+            stats.recordDocumentTruncation();
+            documentTruncated = true;
+            return false;
+        }
+        // the offsets are taken from the expanded token when emitting, so the
+        // term can be reused for other occurrences of the token
+        ExpandedTerm expandedTerm = new ExpandedTerm(term, type, -1, -1, distance);
+        expandedTerm.setWeightFactor(weightFactor);
+        positionTerms.add(expandedTerm);
+        termStack.push(expandedTerm);
+        tokenExpansions++;
+        documentExpansions++;
+        return true;
+    }
+
+    /**
+     * The expanded terms built for a token, in stack order. The terms are
+     * shared between occurrences of the token and must not be modified.
+     */
+    private static final class CachedExpansion {
+
+        private final ExpandedTerm[] terms;
+        /* whether the per-token budget cut the expansion */
+        private final boolean tokenTruncated;
+
+        private CachedExpansion(ExpandedTerm[] terms, boolean tokenTruncated) {
+            this.terms = terms;
+            this.tokenTruncated = tokenTruncated;
+        }
+    }
+
+    /**
+     * A bounded map evicting the least recently used token. Not thread-safe,
+     * each filter owns its instance.
+     */
+    private static final class ExpansionCache extends LinkedHashMap<String, CachedExpansion> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private ExpansionCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedExpansion> eldest) {
+            return size() > maxSize;
+        }
     }
 
     /**
@@ -171,24 +914,31 @@ protected static class ExpandedTerm {
 
         private final String term;
         private final SKOSType termType;
+        /* the bitmask of all types the term was reached with */
+        private int typeMask;
 
         private final int start;
         private final int end;
+        /* the number of hops from the expanded concept (0 for its own labels) */
+        private final int distance;
+        /* applied to the weight of the term, e.g. if the term is very common */
+        private float weightFactor = 1f;
 
         protected ExpandedTerm(String term, SKOSType termType) {
-            this.term = term;
-            this.termType = termType;
-            this.start = -1;
-            this.end = -1;
-
+            this(term, termType, -1, -1);
         }
 
         protected ExpandedTerm(String term, SKOSType termType, int start, int end) {
+            this(term, termType, start, end, 0);
+        }
+
+        protected ExpandedTerm(String term, SKOSType termType, int start, int end, int distance) {
             this.term = term;
             this.termType = termType;
             this.start = start;
             this.end = end;
-
+            this.distance = distance;
+            this.typeMask = termType != null ? 1 << termType.ordinal() : 0;
         }
 
         protected String getTerm() {
@@ -207,5 +957,25 @@ protected int getEnd() {
             return end;
         }
 
+        protected int getDistance() {
+            return distance;
+        }
+
+        protected int getTypeMask() {
+            return typeMask;
+        }
+
+        protected void addTermType(SKOSType type) {
+            typeMask |= 1 << type.ordinal();
+        }
+
+        protected float getWeightFactor() {
+            return weightFactor;
+        }
+
+        protected void setWeightFactor(float weightFactor) {
+            this.weightFactor = weightFactor;
+        }
+
     }
 }
@@ -0,0 +1,145 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A small open-addressing set of char sequences, used to find duplicate
+ * terms at a single token position.
+ *
+ * The set is meant to be reused: {@link #clear()} runs in constant time, the
+ * slot table and the char pool are only reallocated when they have to grow.
+ * Each term added gets a dense id (0, 1, 2, ...) in insertion order.
+ */
+final class CharArrayTermSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* slot -> id of the term stored in the slot */
+    private int[] ids;
+    /* slot -> generation the slot was filled in; slots of older generations are free */
+    private int[] generations;
+    private int generation = 1;
+    private int mask;
+
+    /* the chars of all terms, back to back */
+    private char[] pool = new char[256];
+    private int poolLength;
+    /* id -> term start, length and hash */
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    CharArrayTermSet() {
+        ids = new int[INITIAL_CAPACITY];
+        generations = new int[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * Removes all terms
+     */
+    void clear() {
+        size = 0;
+        poolLength = 0;
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds a term unless it is already contained
+     *
+     * @return the id of the added term, or -(id + 1) if the term was
+     * already contained
+     */
+    int add(char[] text, int offset, int length) {
+        int hash = hash(text, offset, length);
+        int slot = hash & mask;
+        while (generations[slot] == generation) {
+            int id = ids[slot];
+            if (hashes[id] == hash && equals(id, text, offset, length)) {
+                return -(id + 1);
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = size++;
+        if (id == starts.length) {
+            starts = Arrays.copyOf(starts, id * 2);
+            lengths = Arrays.copyOf(lengths, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        if (poolLength + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolLength + length));
+        }
+        System.arraycopy(text, offset, pool, poolLength, length);
+        starts[id] = poolLength;
+        lengths[id] = length;
+        hashes[id] = hash;
+        poolLength += length;
+        ids[slot] = id;
+        generations[slot] = generation;
+        if (size * 2 > ids.length) {
+            rehash(ids.length * 2);
+        }
+        return id;
+    }
+
+    private boolean equals(int id, char[] text, int offset, int length) {
+        if (lengths[id] != length) {
+            return false;
+        }
+        int start = starts[id];
+        for (int i = 0; i < length; i++) {
+            if (pool[start + i] != text[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        ids = new int[capacity];
+        generations = new int[capacity];
+        generation = 1;
+        mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (generations[slot] == generation) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            generations[slot] = generation;
+        }
+    }
+
+    private static int hash(char[] text, int offset, int length) {
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + text[i];
+        }
+        // spread the low bits used for the slot
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,219 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.lucene.search.NumericRangeQuery;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
+
+/**
+ * Numbers the concepts of a vocabulary in depth-first pre-order, so that the
+ * subtree below a concept is one interval of numbers: a concept numbered
+ * <code>pre</code> has all its (transitively) narrower concepts numbered in
+ * <code>(pre, end]</code>, where <code>end</code> is the highest number
+ * in its subtree.
+ *
+ * Polyhierarchies: a concept with several broader concepts is visited, and
+ * numbered, once below each of them, and so is its whole subtree. A concept
+ * thus has one number per path from a root, and documents have to be indexed
+ * with all of them (see {@link SKOSIntervalFilter}); any one interval of a
+ * concept covers a number of each of its descendants, so the first one is
+ * used to query its subtree. Vocabularies with heavy multiple inheritance
+ * deep in the hierarchy get correspondingly many numbers.
+ *
+ * Roots are the concepts without broader concepts in the vocabulary.
+ * Broader relations closing a cycle are ignored; concepts only reachable
+ * through a cycle are numbered as roots. Siblings are visited in URI order,
+ * so the numbering is stable for the same vocabulary.
+ */
+public class ConceptIntervals {
+
+    /* concept URI -> its numbers in ascending order */
+    private final Map<String, int[]> numbers = new HashMap<>();
+    /* number -> highest number in the subtree */
+    private int[] ends = new int[1024];
+
+    private int size;
+
+    private ConceptIntervals() {
+    }
+
+    /**
+     * Numbers the concepts of an engine
+     *
+     * @param engine the engine
+     * @return the numbering
+     * @throws IOException if the engine failed
+     */
+    public static ConceptIntervals build(ExtendedSKOSEngine engine) throws IOException {
+        // the narrower relation, completed by the inverse of broader
+        Map<String, Set<String>> children = new TreeMap<>();
+        Set<String> roots = new TreeSet<>();
+        for (String conceptURI : engine.getAllConcepts()) {
+            children.put(conceptURI, new TreeSet<String>());
+        }
+        for (String conceptURI : children.keySet()) {
+            boolean hasBroader = false;
+            Collection<String> broader = engine.getBroaderConcepts(conceptURI);
+            if (broader != null) {
+                for (String broaderURI : broader) {
+                    Set<String> siblings = children.get(broaderURI);
+                    if (siblings != null && !broaderURI.equals(conceptURI)) {
+                        siblings.add(conceptURI);
+                        hasBroader = true;
+                    }
+                }
+            }
+            Collection<String> narrower = engine.getNarrowerConcepts(conceptURI);
+            if (narrower != null) {
+                for (String narrowerURI : narrower) {
+                    if (children.containsKey(narrowerURI) && !narrowerURI.equals(conceptURI)) {
+                        children.get(conceptURI).add(narrowerURI);
+                    }
+                }
+            }
+            if (!hasBroader) {
+                roots.add(conceptURI);
+            }
+        }
+        // a narrower relation without inverse broader still makes a child
+        for (Set<String> siblings : children.values()) {
+            roots.removeAll(siblings);
+        }
+
+        ConceptIntervals intervals = new ConceptIntervals();
+        for (String root : roots) {
+            intervals.number(root, children);
+        }
+        // cycles not reachable from any root
+        for (String conceptURI : children.keySet()) {
+            if (!intervals.numbers.containsKey(conceptURI)) {
+                intervals.number(conceptURI, children);
+            }
+        }
+        return intervals;
+    }
+
+    /**
+     * Numbers the subtree below a root, iteratively to cope with deep
+     * hierarchies
+     */
+    private void number(String root, Map<String, Set<String>> children) {
+        Deque<String> path = new ArrayDeque<>();
+        Deque<Integer> pathNumbers = new ArrayDeque<>();
+        Deque<Iterator<String>> pending = new ArrayDeque<>();
+        Set<String> onPath = new HashSet<>();
+
+        path.push(root);
+        pathNumbers.push(assign(root));
+        pending.push(children.get(root).iterator());
+        onPath.add(root);
+        while (!path.isEmpty()) {
+            Iterator<String> it = pending.peek();
+            if (it.hasNext()) {
+                String child = it.next();
+                if (onPath.add(child)) {
+                    path.push(child);
+                    pathNumbers.push(assign(child));
+                    pending.push(children.get(child).iterator());
+                }
+            } else {
+                ends[pathNumbers.pop()] = size - 1;
+                onPath.remove(path.pop());
+                pending.pop();
+            }
+        }
+    }
+
+    private int assign(String conceptURI) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many paths in the hierarchy");
+        }
+        int number = size++;
+        if (number == ends.length) {
+            ends = Arrays.copyOf(ends, (int) Math.min(Integer.MAX_VALUE, ends.length * 2L));
+        }
+        int[] conceptNumbers = numbers.get(conceptURI);
+        if (conceptNumbers == null) {
+            conceptNumbers = new int[]{number};
+        } else {
+            conceptNumbers = Arrays.copyOf(conceptNumbers, conceptNumbers.length + 1);
+            conceptNumbers[conceptNumbers.length - 1] = number;
+        }
+        numbers.put(conceptURI, conceptNumbers);
+        return number;
+    }
+
+    /**
+     * @param conceptURI the concept
+     * @return the numbers of the concept in ascending order, or null for
+     * unknown concepts
+     */
+    public int[] getNumbers(String conceptURI) {
+        return numbers.get(conceptURI);
+    }
+
+    /**
+     * @param conceptURI the concept
+     * @return the first and last number of the subtree below (and including)
+     * the concept, or null for unknown concepts
+     */
+    public int[] getSubtreeInterval(String conceptURI) {
+        int[] conceptNumbers = numbers.get(conceptURI);
+        if (conceptNumbers == null) {
+            return null;
+        }
+        return new int[]{conceptNumbers[0], ends[conceptNumbers[0]]};
+    }
+
+    /**
+     * @return the number of numbers assigned, at least the number of concepts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates a query for documents indexed with the concept or any of its
+     * (transitively) narrower concepts by a {@link SKOSIntervalFilter}
+     *
+     * @param field the field
+     * @param precisionStep the precision step used when indexing
+     * @param conceptURI the concept
+     * @return the query, or null for unknown concepts
+     */
+    public NumericRangeQuery<Integer> newSubtreeQuery(String field, int precisionStep, String conceptURI) {
+        int[] interval = getSubtreeInterval(conceptURI);
+        if (interval == null) {
+            return null;
+        }
+        return NumericRangeQuery.newIntRange(field, precisionStep, interval[0], interval[1], true, true);
+    }
+}
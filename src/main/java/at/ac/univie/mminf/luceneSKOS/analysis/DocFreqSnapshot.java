@@ -0,0 +1,101 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A precomputed, immutable table of document frequencies, e.g. taken from a
+ * previous index build. Terms not contained in the table have a document
+ * frequency of 0.
+ *
+ * The text format has the number of documents on the first line, followed by
+ * one term and its document frequency per line, separated by a tab.
+ */
+public class DocFreqSnapshot implements DocFreqSource {
+
+    private final Map<String, Integer> docFreqs;
+
+    private final int numDocs;
+
+    public DocFreqSnapshot(Map<String, Integer> docFreqs, int numDocs) {
+        this.docFreqs = new HashMap<>(docFreqs);
+        this.numDocs = numDocs;
+    }
+
+    @Override
+    public int docFreq(String term) {
+        Integer docFreq = docFreqs.get(term);
+        return docFreq != null ? docFreq : 0;
+    }
+
+    @Override
+    public int numDocs() {
+        return numDocs;
+    }
+
+    /**
+     * Reads a snapshot in text format
+     *
+     * @param reader the text
+     * @return the snapshot
+     * @throws IOException if the text can not be read or is malformed
+     */
+    public static DocFreqSnapshot read(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String line = lines.readLine();
+        if (line == null) {
+            throw new IOException("Empty document frequency snapshot");
+        }
+        try {
+            int numDocs = Integer.parseInt(line.trim());
+            Map<String, Integer> docFreqs = new HashMap<>();
+            while ((line = lines.readLine()) != null) {
+                int tab = line.lastIndexOf('\t');
+                if (tab > 0) {
+                    docFreqs.put(line.substring(0, tab), Integer.parseInt(line.substring(tab + 1).trim()));
+                }
+            }
+            return new DocFreqSnapshot(docFreqs, numDocs);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed document frequency snapshot", e);
+        }
+    }
+
+    /**
+     * Writes the snapshot in text format
+     *
+     * @param writer the target
+     * @throws IOException if writing failed
+     */
+    public void write(Writer writer) throws IOException {
+        writer.write(Integer.toString(numDocs));
+        writer.write('\n');
+        for (Map.Entry<String, Integer> entry : docFreqs.entrySet()) {
+            writer.write(entry.getKey());
+            writer.write('\t');
+            writer.write(entry.getValue().toString());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,40 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * Delivers the document frequency of terms, used to suppress expansions to
+ * very common labels
+ *
+ * @see SKOSExpansionSuppressor
+ */
+public interface DocFreqSource {
+
+    /**
+     * @param term the (analyzed) term
+     * @return the number of documents containing the term
+     * @throws IOException if the statistics can not be read
+     */
+    int docFreq(String term) throws IOException;
+
+    /**
+     * @return the number of documents the frequencies relate to
+     */
+    int numDocs();
+}
@@ -0,0 +1,155 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ConceptIdMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.PayloadMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+
+/**
+ * Describes how the values of a field are expanded
+ *
+ * @see SKOSPerFieldAnalyzer
+ */
+public class ExpansionProfile {
+
+    private final ExpansionType expansionType;
+
+    private final List<SKOSType> types;
+
+    private int bufferSize = SKOSLabelFilter.DEFAULT_BUFFER_SIZE;
+
+    private int maxExpansionsPerToken = AbstractSKOSFilter.UNLIMITED_EXPANSIONS;
+
+    private int maxExpansionsPerDocument = AbstractSKOSFilter.UNLIMITED_EXPANSIONS;
+
+    private PayloadMode payloadMode = SKOSAnalyzer.DEFAULT_PAYLOAD_MODE;
+
+    private SKOSWeights weights = new SKOSWeights();
+
+    private SKOSExpansionSuppressor suppressor;
+
+    private int expansionCacheSize = AbstractSKOSFilter.DEFAULT_EXPANSION_CACHE_SIZE;
+
+    private ConceptIdMode conceptIdMode = ConceptIdMode.NONE;
+
+    /**
+     * @param expansionType whether the field holds URIs or labels
+     * @param types the SKOS types to expand to
+     */
+    public ExpansionProfile(ExpansionType expansionType, List<SKOSType> types) {
+        this.expansionType = expansionType;
+        this.types = types;
+    }
+
+    public ExpansionProfile(ExpansionType expansionType, SKOSType... types) {
+        this(expansionType, Arrays.asList(types));
+    }
+
+    public ExpansionType getExpansionType() {
+        return expansionType;
+    }
+
+    public List<SKOSType> getTypes() {
+        return types;
+    }
+
+    /**
+     * Sets the length of the longest label (in tokens) looked up, only used
+     * for label expansion
+     * @param bufferSize the buffer size
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setMaxExpansionsPerToken(int maxExpansionsPerToken) {
+        this.maxExpansionsPerToken = maxExpansionsPerToken;
+    }
+
+    public int getMaxExpansionsPerToken() {
+        return maxExpansionsPerToken;
+    }
+
+    public void setMaxExpansionsPerDocument(int maxExpansionsPerDocument) {
+        this.maxExpansionsPerDocument = maxExpansionsPerDocument;
+    }
+
+    public int getMaxExpansionsPerDocument() {
+        return maxExpansionsPerDocument;
+    }
+
+    public void setPayloadMode(PayloadMode payloadMode) {
+        this.payloadMode = payloadMode;
+    }
+
+    public PayloadMode getPayloadMode() {
+        return payloadMode;
+    }
+
+    /**
+     * Sets the weights written in {@link PayloadMode#WEIGHT} mode
+     * @param weights the weights
+     */
+    public void setWeights(SKOSWeights weights) {
+        this.weights = weights;
+    }
+
+    public SKOSWeights getWeights() {
+        return weights;
+    }
+
+    /**
+     * Sets the document frequency based suppression of expanded terms
+     * @param suppressor the suppressor or null
+     */
+    public void setSuppressor(SKOSExpansionSuppressor suppressor) {
+        this.suppressor = suppressor;
+    }
+
+    public SKOSExpansionSuppressor getSuppressor() {
+        return suppressor;
+    }
+
+    /**
+     * Sets the number of recent token expansions kept by each filter
+     * @param expansionCacheSize the cache size, 0 disables the cache
+     */
+    public void setExpansionCacheSize(int expansionCacheSize) {
+        this.expansionCacheSize = expansionCacheSize;
+    }
+
+    public int getExpansionCacheSize() {
+        return expansionCacheSize;
+    }
+
+    public void setConceptIdMode(ConceptIdMode conceptIdMode) {
+        this.conceptIdMode = conceptIdMode;
+    }
+
+    public ConceptIdMode getConceptIdMode() {
+        return conceptIdMode;
+    }
+}
@@ -0,0 +1,48 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+
+/**
+ * Reads document frequencies of a single field from an open IndexReader
+ */
+public class IndexReaderDocFreqSource implements DocFreqSource {
+
+    private final IndexReader reader;
+
+    private final String field;
+
+    public IndexReaderDocFreqSource(IndexReader reader, String field) {
+        this.reader = reader;
+        this.field = field;
+    }
+
+    @Override
+    public int docFreq(String term) throws IOException {
+        return reader.docFreq(new Term(field, term));
+    }
+
+    @Override
+    public int numDocs() {
+        // docFreq counts deleted documents as well
+        return reader.maxDoc();
+    }
+}
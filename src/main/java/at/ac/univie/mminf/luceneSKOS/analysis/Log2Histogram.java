@@ -0,0 +1,86 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of non-negative values in power-of-two buckets:
+ * bucket 0 counts the value 0, bucket i the values in [2^(i-1), 2^i - 1].
+ * Percentiles are reported as the upper bound of their bucket, so they are
+ * exact to within a factor of two at a fixed cost of 65 counters.
+ */
+final class Log2Histogram {
+
+    private static final int BUCKETS = 65;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long value) {
+        counts.incrementAndGet(value > 0 ? 64 - Long.numberOfLeadingZeros(value) : 0);
+    }
+
+    /**
+     * @return the count per bucket, up to the last non-empty bucket
+     */
+    long[] getCounts() {
+        int length = BUCKETS;
+        while (length > 0 && counts.get(length - 1) == 0) {
+            length--;
+        }
+        long[] result = new long[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @param percentile the percentile, in (0, 1]
+     * @return the upper bound of the bucket holding the percentile, 0 if
+     * nothing was recorded
+     */
+    long getPercentile(double percentile) {
+        long[] snapshot = getCounts();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long cumulative = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank && snapshot[i] > 0) {
+                return getUpperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the largest value counted in the given bucket
+     */
+    static long getUpperBound(int bucket) {
+        return bucket < 64 ? (1L << bucket) - 1 : Long.MAX_VALUE;
+    }
+
+    void clear() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+}
@@ -21,12 +21,10 @@
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.core.KeywordTokenizer;
-import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.core.StopAnalyzer;
-import org.apache.lucene.analysis.core.StopFilter;
-import org.apache.lucene.analysis.miscellaneous.RemoveDuplicatesTokenFilter;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.analysis.standard.StandardFilter;
 import org.apache.lucene.analysis.standard.StandardTokenizer;
@@ -49,6 +47,28 @@ public class SKOSAnalyzer extends StopwordAnalyzerBase {
     public enum ExpansionType {
         URI, LABEL
     }
+    /**
+     * The supported ways of writing the SKOS type of expanded terms to the
+     * payload: not at all, as a 4-byte ordinal (the historic format), as a
+     * single byte ordinal, as a single byte bitmask of all types a term
+     * was reached with at the same position, or as a single byte weight
+     * derived from the type and the hierarchy distance (see {@link SKOSWeights})
+     */
+    public enum PayloadMode {
+        NONE, INT, TYPE, MASK, WEIGHT
+    }
+    /**
+     * The supported ways of expanding a token that refers to concepts: to
+     * the labels of the configured SKOS types, to the URIs of the concepts,
+     * or to the URIs of the concepts and all their broaderTransitive concepts
+     */
+    public enum ConceptIdMode {
+        NONE, CONCEPTS, ANCESTORS
+    }
+    /**
+     * Default payload mode
+     */
+    public static final PayloadMode DEFAULT_PAYLOAD_MODE = PayloadMode.INT;
     /**
      * Default expansion type
      */
@@ -80,6 +100,29 @@ public enum ExpansionType {
     private int maxTokenLength = DEFAULT_MAX_TOKEN_LENGTH;
 
     private int bufferSize;
+
+    private int maxExpansionsPerToken = AbstractSKOSFilter.UNLIMITED_EXPANSIONS;
+
+    private int maxExpansionsPerDocument = AbstractSKOSFilter.UNLIMITED_EXPANSIONS;
+
+    private PayloadMode payloadMode = DEFAULT_PAYLOAD_MODE;
+
+    private int expansionCacheSize = AbstractSKOSFilter.DEFAULT_EXPANSION_CACHE_SIZE;
+
+    private ConceptIdMode conceptIdMode = ConceptIdMode.NONE;
+
+    private SKOSWeights weights = new SKOSWeights();
+
+    private SKOSExpansionSuppressor suppressor;
+    /**
+     * Normalizes the expanded labels, shared by all filters (and the engine,
+     * if built by this analyzer)
+     */
+    private Analyzer labelAnalyzer;
+    /**
+     * The counters shared by all filters created by this analyzer
+     */
+    private final SKOSExpansionStats expansionStats = new SKOSExpansionStats();
     /**
      * An unmodifiable set containing some common English words that are usually
      * not useful for searching.
@@ -91,8 +134,23 @@ public SKOSAnalyzer(SKOSEngine skosEngine, ExpansionType expansionType) {
     }
 
     public SKOSAnalyzer(CharArraySet stopWords, SKOSEngine skosEngine, ExpansionType expansionType, int bufferSize, List<SKOSType> types) {
+        this(stopWords, skosEngine, createLabelAnalyzer(), expansionType, bufferSize, types);
+    }
+
+    /**
+     * @param stopWords the stop words
+     * @param skosEngine the engine
+     * @param labelAnalyzer the analyzer normalizing labels, should be the one
+     * the engine was built with
+     * @param expansionType whether the input holds URIs or labels
+     * @param bufferSize the length of the longest label looked up, in tokens
+     * @param types the SKOS types to expand to
+     */
+    public SKOSAnalyzer(CharArraySet stopWords, SKOSEngine skosEngine, Analyzer labelAnalyzer,
+                        ExpansionType expansionType, int bufferSize, List<SKOSType> types) {
         super(stopWords);
         this.skosEngine = skosEngine;
+        this.labelAnalyzer = labelAnalyzer;
         this.expansionType = expansionType;
         this.bufferSize = bufferSize;
         this.types = types;
@@ -101,6 +159,7 @@ public SKOSAnalyzer(CharArraySet stopWords, SKOSEngine skosEngine, ExpansionType
     public SKOSAnalyzer(CharArraySet stopWords, SKOSEngine skosEngine, ExpansionType expansionType) {
         super(stopWords);
         this.skosEngine = skosEngine;
+        this.labelAnalyzer = createLabelAnalyzer();
         this.expansionType = expansionType;
     }
 
@@ -113,7 +172,9 @@ public SKOSAnalyzer(CharArraySet stopWords,
                         ExpansionType expansionType, int bufferSize, String... languages)
             throws IOException {
         super(stopWords);
-        this.skosEngine = SKOSEngineFactory.getSKOSEngine(indexPath, skosFile, languages != null ? Arrays.asList(languages) : null);
+        this.labelAnalyzer = createLabelAnalyzer();
+        this.skosEngine = SKOSEngineFactory.getSKOSEngine(indexPath, skosFile,
+                languages != null ? Arrays.asList(languages) : null, labelAnalyzer);
         this.expansionType = expansionType;
         this.bufferSize = bufferSize;
     }
@@ -142,6 +203,31 @@ public SKOSAnalyzer(Reader stopwords,
                 expansionType, bufferSize, languages);
     }
 
+    /**
+     * Creates the default label analyzer, a StandardAnalyzer
+     * @return a new label analyzer
+     */
+    public static Analyzer createLabelAnalyzer() {
+        return new StandardAnalyzer();
+    }
+
+    /**
+     * Sets the analyzer normalizing expanded labels. It should match the one
+     * the engine was built with.
+     * @param labelAnalyzer the label analyzer
+     */
+    public void setLabelAnalyzer(Analyzer labelAnalyzer) {
+        this.labelAnalyzer = labelAnalyzer;
+    }
+
+    public Analyzer getLabelAnalyzer() {
+        return labelAnalyzer;
+    }
+
+    public SKOSEngine getSKOSEngine() {
+        return skosEngine;
+    }
+
     public List<SKOSType> getTypes() {
         return types;
     }
@@ -169,23 +255,139 @@ public int getMaxTokenLength() {
         return maxTokenLength;
     }
 
+    /**
+     * Sets the maximum number of expanded terms per input token. The filters
+     * created by this analyzer drop duplicate terms at a position before the
+     * budgets are applied, so duplicates do not count against them.
+     * @param maxExpansionsPerToken the budget
+     * @see AbstractSKOSFilter#setMaxExpansionsPerToken(int)
+     */
+    public void setMaxExpansionsPerToken(int maxExpansionsPerToken) {
+        this.maxExpansionsPerToken = maxExpansionsPerToken;
+    }
+
+    public int getMaxExpansionsPerToken() {
+        return maxExpansionsPerToken;
+    }
+
+    /**
+     * Sets the maximum number of expanded terms per field value
+     * @param maxExpansionsPerDocument the budget
+     * @see AbstractSKOSFilter#setMaxExpansionsPerDocument(int)
+     */
+    public void setMaxExpansionsPerDocument(int maxExpansionsPerDocument) {
+        this.maxExpansionsPerDocument = maxExpansionsPerDocument;
+    }
+
+    public int getMaxExpansionsPerDocument() {
+        return maxExpansionsPerDocument;
+    }
+
+    /**
+     * Sets how the SKOS types of expanded terms are written to the payload
+     * @param payloadMode the payload mode
+     * @see AbstractSKOSFilter#setPayloadMode(PayloadMode)
+     */
+    public void setPayloadMode(PayloadMode payloadMode) {
+        this.payloadMode = payloadMode;
+    }
+
+    public PayloadMode getPayloadMode() {
+        return payloadMode;
+    }
+
+    /**
+     * Sets the weights written in {@link PayloadMode#WEIGHT} mode
+     * @param weights the weights
+     */
+    public void setWeights(SKOSWeights weights) {
+        this.weights = weights;
+    }
+
+    public SKOSWeights getWeights() {
+        return weights;
+    }
+
+    /**
+     * Sets the document frequency based suppression of expanded terms
+     * @param suppressor the suppressor or null
+     * @see AbstractSKOSFilter#setSuppressor(SKOSExpansionSuppressor)
+     */
+    public void setSuppressor(SKOSExpansionSuppressor suppressor) {
+        this.suppressor = suppressor;
+    }
+
+    public SKOSExpansionSuppressor getSuppressor() {
+        return suppressor;
+    }
+
+    /**
+     * Sets the number of recent token expansions kept by each filter
+     * @param expansionCacheSize the cache size, 0 disables the cache
+     * @see AbstractSKOSFilter#setExpansionCacheSize(int)
+     */
+    public void setExpansionCacheSize(int expansionCacheSize) {
+        this.expansionCacheSize = expansionCacheSize;
+    }
+
+    public int getExpansionCacheSize() {
+        return expansionCacheSize;
+    }
+
+    /**
+     * Sets whether tokens are expanded to concept URIs instead of labels
+     * @param conceptIdMode the concept ID mode
+     * @see AbstractSKOSFilter#setConceptIdMode(ConceptIdMode)
+     */
+    public void setConceptIdMode(ConceptIdMode conceptIdMode) {
+        this.conceptIdMode = conceptIdMode;
+    }
+
+    public ConceptIdMode getConceptIdMode() {
+        return conceptIdMode;
+    }
+
+    /**
+     * Returns the counters of all filters created by this analyzer
+     * @return the expansion counters
+     */
+    public SKOSExpansionStats getExpansionStats() {
+        return expansionStats;
+    }
+
+    private <T extends AbstractSKOSFilter> T configure(T filter) {
+        filter.setMaxExpansionsPerToken(maxExpansionsPerToken);
+        filter.setMaxExpansionsPerDocument(maxExpansionsPerDocument);
+        filter.setStats(expansionStats);
+        filter.setPayloadMode(payloadMode);
+        filter.setWeights(weights);
+        filter.setSuppressor(suppressor);
+        filter.setExpansionCacheSize(expansionCacheSize);
+        filter.setConceptIdMode(conceptIdMode);
+        return filter;
+    }
+
     @Override
     protected TokenStreamComponents createComponents(String fileName) {
         if (expansionType.equals(ExpansionType.URI)) {
             final KeywordTokenizer src = new KeywordTokenizer();
-            TokenStream tok = new SKOSURIFilter(src, skosEngine, new StandardAnalyzer(), types);
-            tok = new LowerCaseFilter(tok);
-            return new TokenStreamComponents(src, tok);
+            SKOSURIFilter filter = configure(new SKOSURIFilter(src, skosEngine, labelAnalyzer, types));
+            // lower-casing and deduplication are done by the filter itself
+            filter.setLowerCase(true);
+            filter.setDeduplicate(true);
+            return new TokenStreamComponents(src, filter);
         } else {
             final StandardTokenizer src = new StandardTokenizer();
             src.setMaxTokenLength(maxTokenLength);
             TokenStream tok = new StandardFilter(src);
             // prior to this we get the classic behavior, standardfilter does it for us.
-            tok = new SKOSLabelFilter(tok, skosEngine, new StandardAnalyzer(), bufferSize, types);
-            tok = new LowerCaseFilter(tok);
-            tok = new StopFilter(tok, stopwords);
-            tok = new RemoveDuplicatesTokenFilter(tok);
-            return new TokenStreamComponents(src, tok) {
+            SKOSLabelFilter filter = configure(new SKOSLabelFilter(tok, skosEngine, labelAnalyzer, bufferSize, types));
+            // lower-casing, stop word removal and deduplication are done by the
+            // filter itself, so duplicate expansions are never emitted
+            filter.setLowerCase(true);
+            filter.setStopWords(stopwords);
+            filter.setDeduplicate(true);
+            return new TokenStreamComponents(src, filter) {
                 @Override
                 protected void setReader(final Reader reader) throws IOException {
                     src.setMaxTokenLength(maxTokenLength);
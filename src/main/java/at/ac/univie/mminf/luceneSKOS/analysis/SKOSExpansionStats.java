@@ -0,0 +1,205 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing the expansions performed by SKOS filters.
+ *
+ * A single instance is usually shared by all filters created by one
+ * {@link SKOSAnalyzer} or Solr filter factory, so the counters are thread-safe.
+ */
+public class SKOSExpansionStats {
+
+    /* number of input tokens for which at least one expansion was emitted */
+    private final AtomicLong expandedTokens = new AtomicLong();
+    /* number of expanded terms put onto the term stack */
+    private final AtomicLong expansions = new AtomicLong();
+    /* number of tokens whose expansion was cut by the per-token budget */
+    private final AtomicLong truncatedTokens = new AtomicLong();
+    /* number of tokens whose expansion was cut or skipped by the per-document budget */
+    private final AtomicLong documentTruncatedTokens = new AtomicLong();
+    /* number of tokens served from and missed in the per-filter expansion caches */
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    /* number of expanded terms skipped for being too common */
+    private final AtomicLong suppressedExpansions = new AtomicLong();
+    /* number of tokens expanded by the engine, and the time spent on them */
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+    /* microseconds per engine expansion */
+    private final Log2Histogram lookupLatency = new Log2Histogram();
+    /* expanded terms per expanded token */
+    private final Log2Histogram fanOut = new Log2Histogram();
+    /* when the counters were started or last cleared */
+    private volatile long startNanos = System.nanoTime();
+
+    void recordExpansion(int expandedTerms) {
+        if (expandedTerms > 0) {
+            expandedTokens.incrementAndGet();
+            expansions.addAndGet(expandedTerms);
+            fanOut.record(expandedTerms);
+        }
+    }
+
+    void recordLookup(long nanos) {
+        lookups.incrementAndGet();
+        lookupNanos.addAndGet(nanos);
+        lookupLatency.record(nanos / 1000);
+    }
+
+    void recordTokenTruncation() {
+        truncatedTokens.incrementAndGet();
+    }
+
+    void recordDocumentTruncation() {
+        documentTruncatedTokens.incrementAndGet();
+    }
+
+    void recordSuppression() {
+        suppressedExpansions.incrementAndGet();
+    }
+
+    void recordCacheLookups(long hits, long misses) {
+        cacheHits.addAndGet(hits);
+        cacheMisses.addAndGet(misses);
+    }
+
+    /**
+     * @return the number of input tokens that have been expanded
+     */
+    public long getExpandedTokens() {
+        return expandedTokens.get();
+    }
+
+    /**
+     * @return the total number of expanded terms
+     */
+    public long getExpansions() {
+        return expansions.get();
+    }
+
+    /**
+     * @return the number of tokens truncated by the per-token budget
+     */
+    public long getTruncatedTokens() {
+        return truncatedTokens.get();
+    }
+
+    /**
+     * @return the number of tokens truncated or skipped by the per-document
+     * budget
+     */
+    public long getDocumentTruncatedTokens() {
+        return documentTruncatedTokens.get();
+    }
+
+    /**
+     * @return the number of tokens whose expansion was served from a filter
+     * cache
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return the number of tokens that had to be expanded by the engine
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * @return the number of expanded terms skipped by the document frequency
+     * based suppression
+     */
+    public long getSuppressedExpansions() {
+        return suppressedExpansions.get();
+    }
+
+    /**
+     * @return the number of tokens expanded by the engine rather than from a
+     * cache
+     */
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * @return the number of engine lookups per second since the counters were
+     * started or cleared
+     */
+    public double getLookupsPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? lookups.get() / seconds : 0;
+    }
+
+    /**
+     * @return the total time spent on engine lookups in nanoseconds
+     */
+    public long getLookupNanos() {
+        return lookupNanos.get();
+    }
+
+    /**
+     * @param percentile the percentile, in (0, 1]
+     * @return the engine lookup latency at the percentile in microseconds,
+     * exact to within a factor of two
+     */
+    public long getLookupLatencyPercentile(double percentile) {
+        return lookupLatency.getPercentile(percentile);
+    }
+
+    /**
+     * @param percentile the percentile, in (0, 1]
+     * @return the number of expanded terms per expanded token at the
+     * percentile, exact to within a factor of two
+     */
+    public long getFanOutPercentile(double percentile) {
+        return fanOut.getPercentile(percentile);
+    }
+
+    /**
+     * Returns the histogram of expanded terms per expanded token: element i
+     * counts the tokens expanded to at most 2^i - 1 and, for i &gt; 0, at
+     * least 2^(i-1) terms
+     *
+     * @return the counts per bucket
+     */
+    public long[] getFanOutHistogram() {
+        return fanOut.getCounts();
+    }
+
+    /**
+     * Resets all counters to zero
+     */
+    public void clear() {
+        expandedTokens.set(0);
+        expansions.set(0);
+        truncatedTokens.set(0);
+        documentTruncatedTokens.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        suppressedExpansions.set(0);
+        lookups.set(0);
+        lookupNanos.set(0);
+        lookupLatency.clear();
+        fanOut.clear();
+        startNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,171 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides whether an expanded term is too common to be worth adding, based
+ * on its document frequency. Terms occurring in more than the given ratio of
+ * documents are either skipped or down-weighted.
+ *
+ * The decisions for the most recently seen terms are cached; an instance is
+ * thread-safe and usually shared by all filters of an analyzer and the query
+ * parser. Create a new instance when the statistics change.
+ */
+public class SKOSExpansionSuppressor {
+
+    /**
+     * What happens to expansions over the threshold
+     */
+    public enum Action {
+        SKIP, DOWNWEIGHT
+    }
+
+    public static final float DEFAULT_DOWN_WEIGHT = 0.1f;
+
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private final DocFreqSource docFreqSource;
+
+    private final float maxDocFreqRatio;
+
+    private Action action = Action.SKIP;
+
+    private float downWeight = DEFAULT_DOWN_WEIGHT;
+
+    /* term -> weight factor, 0 for skipped terms; least recently used first */
+    private final Map<String, Float> decisions;
+
+    /**
+     * @param docFreqSource the document frequencies
+     * @param maxDocFreqRatio the ratio of documents (in (0, 1]) a term may
+     * occur in without being suppressed
+     */
+    public SKOSExpansionSuppressor(DocFreqSource docFreqSource, float maxDocFreqRatio) {
+        this(docFreqSource, maxDocFreqRatio, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param docFreqSource the document frequencies
+     * @param maxDocFreqRatio the ratio of documents (in (0, 1]) a term may
+     * occur in without being suppressed
+     * @param cacheSize the number of decisions kept, 0 disables the cache
+     */
+    public SKOSExpansionSuppressor(DocFreqSource docFreqSource, float maxDocFreqRatio, final int cacheSize) {
+        if (!(maxDocFreqRatio > 0 && maxDocFreqRatio <= 1)) {
+            throw new IllegalArgumentException("maxDocFreqRatio must be in (0, 1]");
+        }
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must not be negative");
+        }
+        this.docFreqSource = docFreqSource;
+        this.maxDocFreqRatio = maxDocFreqRatio;
+        this.decisions = new LinkedHashMap<String, Float>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Float> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+        clearDecisions();
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * Sets the factor applied to the weight of down-weighted terms
+     *
+     * @param downWeight the factor, in (0, 1)
+     */
+    public void setDownWeight(float downWeight) {
+        if (!(downWeight > 0 && downWeight < 1)) {
+            throw new IllegalArgumentException("downWeight must be in (0, 1)");
+        }
+        this.downWeight = downWeight;
+        clearDecisions();
+    }
+
+    public float getDownWeight() {
+        return downWeight;
+    }
+
+    public float getMaxDocFreqRatio() {
+        return maxDocFreqRatio;
+    }
+
+    /**
+     * Returns the factor to apply to the weight of an expanded term
+     *
+     * @param term the (analyzed) expanded term
+     * @return 1 for terms that are kept, 0 for terms to be skipped, the down
+     * weight for terms to be down-weighted
+     * @throws IOException if the statistics can not be read
+     */
+    public float getWeight(String term) throws IOException {
+        Float weight;
+        synchronized (decisions) {
+            weight = decisions.get(term);
+        }
+        if (weight == null) {
+            weight = isTooCommon(term) ? (action == Action.SKIP ? 0f : downWeight) : 1f;
+            synchronized (decisions) {
+                decisions.put(term, weight);
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @return the settings the weights depend on, compared by value, e.g. in
+     * the keys of a cache of expanded queries
+     */
+    public List<Object> getSettingsKey() {
+        return Arrays.<Object>asList(docFreqSource, maxDocFreqRatio, action, downWeight);
+    }
+
+    /**
+     * @return the number of cached decisions
+     */
+    public int getCachedDecisions() {
+        synchronized (decisions) {
+            return decisions.size();
+        }
+    }
+
+    private void clearDecisions() {
+        synchronized (decisions) {
+            decisions.clear();
+        }
+    }
+
+    private boolean isTooCommon(String term) throws IOException {
+        int numDocs = docFreqSource.numDocs();
+        return numDocs > 0 && docFreqSource.docFreq(term) > maxDocFreqRatio * numDocs;
+    }
+}
@@ -0,0 +1,136 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * A Lucene TokenFilter that replaces concept URIs by the pre-order numbers
+ * of the concepts (see {@link ConceptIntervals}), encoded the way an
+ * IntField is indexed. All subtree members of a concept can then be found by
+ * a single {@link org.apache.lucene.search.NumericRangeQuery}, created with
+ * {@link ConceptIntervals#newSubtreeQuery(String, int, String)} and the same
+ * precision step.
+ *
+ * The numbers of a concept are emitted at the position of its URI. URIs of
+ * unknown concepts are dropped.
+ */
+public final class SKOSIntervalFilter extends TokenFilter {
+
+    public static final int DEFAULT_PRECISION_STEP = 8;
+
+    private final ConceptIntervals intervals;
+
+    private final int precisionStep;
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+    private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+
+    private final BytesRefBuilder bytes = new BytesRefBuilder();
+    /* the numbers of the current concept, null if there is none */
+    private int[] numbers;
+
+    private int numberIndex;
+
+    private int shift;
+
+    private int skippedPositions;
+
+    public SKOSIntervalFilter(TokenStream input, ConceptIntervals intervals) {
+        this(input, intervals, DEFAULT_PRECISION_STEP);
+    }
+
+    /**
+     * @param input the consumed token stream, holding concept URIs
+     * @param intervals the numbering of the concepts
+     * @param precisionStep the precision step of the numeric terms
+     */
+    public SKOSIntervalFilter(TokenStream input, ConceptIntervals intervals, int precisionStep) {
+        super(input);
+        if (precisionStep < 1) {
+            throw new IllegalArgumentException("precisionStep must be >= 1");
+        }
+        this.intervals = intervals;
+        this.precisionStep = precisionStep;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        while (true) {
+            if (numbers != null) {
+                if (shift >= 32) {
+                    numberIndex++;
+                    shift = 0;
+                }
+                if (numberIndex < numbers.length) {
+                    emit(numbers[numberIndex], shift, numberIndex == 0 && shift == 0);
+                    shift += precisionStep;
+                    return true;
+                }
+                numbers = null;
+            }
+            if (!input.incrementToken()) {
+                return false;
+            }
+            numbers = intervals.getNumbers(termAtt.toString());
+            if (numbers == null) {
+                skippedPositions += posIncrAtt.getPositionIncrement();
+            }
+            numberIndex = 0;
+            shift = 0;
+        }
+    }
+
+    private void emit(int number, int shift, boolean first) {
+        NumericUtils.intToPrefixCoded(number, shift, bytes);
+        BytesRef term = bytes.get();
+        // prefix coded numbers are 7-bit, so each byte maps to one char
+        termAtt.setEmpty();
+        for (int i = term.offset; i < term.offset + term.length; i++) {
+            termAtt.append((char) term.bytes[i]);
+        }
+        if (first) {
+            posIncrAtt.setPositionIncrement(posIncrAtt.getPositionIncrement() + skippedPositions);
+            skippedPositions = 0;
+        } else {
+            posIncrAtt.setPositionIncrement(0);
+        }
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        numbers = null;
+        skippedPositions = 0;
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        posIncrAtt.setPositionIncrement(posIncrAtt.getPositionIncrement() + skippedPositions);
+        skippedPositions = 0;
+    }
+}
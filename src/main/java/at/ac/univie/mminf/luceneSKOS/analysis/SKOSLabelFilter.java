@@ -67,28 +67,36 @@ public SKOSLabelFilter(TokenStream input, SKOSEngine engine,
      */
     @Override
     public boolean incrementToken() throws IOException {
-        // there are expanded terms for the given token
-        if (termStack.size() > 0) {
-            processTermOnStack();
-            return true;
-        }
-        while (buffer.size() < bufferSize && input.incrementToken()) {
-            buffer.add(input.captureState());
-        }
-        if (buffer.isEmpty()) {
-            return false;
-        }
-        restoreState(buffer.peek());
-        // check whether there are expanded terms for a given token
-        if (addAliasesToStack()) {
-            // if yes, capture the state of all attributes
-            current = captureState();
+        while (true) {
+            // there are expanded terms for the given token
+            if (termStack.size() > 0) {
+                processTermOnStack();
+                return true;
+            }
+            while (buffer.size() < bufferSize && input.incrementToken()) {
+                buffer.add(input.captureState());
+            }
+            if (buffer.isEmpty()) {
+                return false;
+            }
+            restoreState(buffer.peek());
+            // check whether there are expanded terms for a given token
+            if (addAliasesToStack()) {
+                // if yes, capture the state of all attributes
+                current = captureState();
+            }
+            buffer.remove();
+            // the token itself might be a stop word, its expansions are kept
+            if (acceptInputToken()) {
+                return true;
+            }
         }
-        buffer.remove();
-        return true;
     }
 
     private boolean addAliasesToStack() throws IOException {
+        if (isDocumentBudgetExhausted()) {
+            return false;
+        }
         for (int i = buffer.size(); i > 0; i--) {
             ExpandedTerm inputTokens = bufferToTerm(i);
             if (addTermsToStack(inputTokens)) {
@@ -128,35 +136,18 @@ private ExpandedTerm bufferToTerm(int noTokens) {
      * @return true if term stack is not empty
      */
     public boolean addTermsToStack(ExpandedTerm term) throws IOException {
-        Collection<String> conceptURIs = engine.getConcepts(term.getTerm());
-        for (String conceptURI : conceptURIs) {
-            if (types.contains(SKOSType.PREF)) {
-                pushLabelsToStack(term, engine.getPrefLabels(conceptURI), SKOSType.PREF);
-            }
-            if (types.contains(SKOSType.ALT)) {
-                pushLabelsToStack(term, engine.getAltLabels(conceptURI), SKOSType.ALT);
-            }
-            if (types.contains(SKOSType.HIDDEN)) {
-                pushLabelsToStack(term, engine.getHiddenLabels(conceptURI), SKOSType.HIDDEN);
-            }
-            if (types.contains(SKOSType.BROADER)) {
-                pushLabelsToStack(term, engine.getBroaderLabels(conceptURI), SKOSType.BROADER);
-            }
-            if (types.contains(SKOSType.BROADERTRANSITIVE)) {
-                pushLabelsToStack(term, engine.getBroaderTransitiveLabels(conceptURI), SKOSType.BROADERTRANSITIVE);
-            }
-            if (types.contains(SKOSType.NARROWER)) {
-                pushLabelsToStack(term, engine.getNarrowerLabels(conceptURI), SKOSType.NARROWER);
-            }
-            if (types.contains(SKOSType.NARROWERTRANSITIVE)) {
-                pushLabelsToStack(term, engine.getNarrowerTransitiveLabels(conceptURI), SKOSType.NARROWERTRANSITIVE);
-            }
-            if (types.contains(SKOSType.RELATED)) {
-                pushLabelsToStack(term, engine.getRelatedLabels(conceptURI), SKOSType.RELATED);
-            }
+        return expandToken(term);
+    }
 
-        }
-        return !termStack.isEmpty();
+    @Override
+    protected Collection<String> lookupConcepts(ExpandedTerm term) throws IOException {
+        return engine.getConcepts(term.getTerm());
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        buffer.clear();
     }
 
 }
@@ -0,0 +1,154 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.payloads.PayloadHelper;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.SmallFloat;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.PayloadMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+
+/**
+ * Encodes and decodes the payloads attached to expanded terms.
+ *
+ * All payloads are preallocated and shared between tokens; they must not be
+ * modified by consumers. Original (non-expanded) tokens carry no SKOS payload.
+ */
+public final class SKOSPayloads {
+
+    private static final SKOSType[] TYPES = SKOSType.values();
+
+    /* 4-byte ordinals, one per type */
+    private static final BytesRef[] INT_PAYLOADS = new BytesRef[TYPES.length];
+    /* single byte ordinals, one per type */
+    private static final BytesRef[] TYPE_PAYLOADS = new BytesRef[TYPES.length];
+    /* single byte bitmasks, one per combination of types */
+    private static final BytesRef[] MASK_PAYLOADS = new BytesRef[1 << TYPES.length];
+    /* single byte weights, one per encoded float */
+    private static final BytesRef[] WEIGHT_PAYLOADS = new BytesRef[256];
+
+    static {
+        for (SKOSType type : TYPES) {
+            INT_PAYLOADS[type.ordinal()] = new BytesRef(PayloadHelper.encodeInt(type.ordinal()));
+            TYPE_PAYLOADS[type.ordinal()] = new BytesRef(new byte[]{(byte) type.ordinal()});
+        }
+        for (int mask = 0; mask < MASK_PAYLOADS.length; mask++) {
+            MASK_PAYLOADS[mask] = new BytesRef(new byte[]{(byte) mask});
+        }
+        for (int b = 0; b < WEIGHT_PAYLOADS.length; b++) {
+            WEIGHT_PAYLOADS[b] = new BytesRef(new byte[]{(byte) b});
+        }
+    }
+
+    private SKOSPayloads() {
+    }
+
+    /**
+     * Returns the shared payload for an expanded term
+     *
+     * @param mode the payload mode
+     * @param type the type the term was expanded with
+     * @param typeMask the bitmask of all types the term was expanded with
+     * @return the payload or null if no payload should be written
+     */
+    public static BytesRef encode(PayloadMode mode, SKOSType type, int typeMask) {
+        switch (mode) {
+            case INT:
+                return INT_PAYLOADS[type.ordinal()];
+            case TYPE:
+                return TYPE_PAYLOADS[type.ordinal()];
+            case MASK:
+                return MASK_PAYLOADS[typeMask & (MASK_PAYLOADS.length - 1)];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the shared payload for the weight of an expanded term. The
+     * weight is stored with the 3-bit mantissa of
+     * {@link SmallFloat#floatToByte315(float)}, the precision norms use.
+     *
+     * @param weight the weight
+     * @return the payload
+     */
+    public static BytesRef encodeWeight(float weight) {
+        return WEIGHT_PAYLOADS[SmallFloat.floatToByte315(weight) & 0xFF];
+    }
+
+    /**
+     * Decodes the weight of a payload written in {@link PayloadMode#WEIGHT}
+     * mode
+     *
+     * @param payload the payload
+     * @return the weight, 1 for tokens without a weight (e.g., original
+     * tokens)
+     */
+    public static float decodeWeight(BytesRef payload) {
+        if (payload == null || payload.length != 1) {
+            return 1f;
+        }
+        return SmallFloat.byte315ToFloat(payload.bytes[payload.offset]);
+    }
+
+    /**
+     * Decodes the SKOS type of a payload written in {@link PayloadMode#INT} or
+     * {@link PayloadMode#TYPE} mode
+     *
+     * @param mode the payload mode
+     * @param payload the payload
+     * @return the SKOS type or null for payloads not written by a SKOS filter
+     */
+    public static SKOSType decodeType(PayloadMode mode, BytesRef payload) {
+        if (payload == null) {
+            return null;
+        }
+        int ordinal;
+        if (mode == PayloadMode.INT && payload.length == 4) {
+            ordinal = PayloadHelper.decodeInt(payload.bytes, payload.offset);
+        } else if (mode == PayloadMode.TYPE && payload.length == 1) {
+            ordinal = payload.bytes[payload.offset];
+        } else {
+            return null;
+        }
+        return ordinal >= 0 && ordinal < TYPES.length ? TYPES[ordinal] : null;
+    }
+
+    /**
+     * Decodes the SKOS types of a payload written in {@link PayloadMode#MASK}
+     * mode
+     *
+     * @param payload the payload
+     * @return the SKOS types, empty for payloads not written by a SKOS filter
+     */
+    public static Set<SKOSType> decodeMask(BytesRef payload) {
+        Set<SKOSType> types = EnumSet.noneOf(SKOSType.class);
+        if (payload != null && payload.length == 1) {
+            int mask = payload.bytes[payload.offset] & 0xFF;
+            for (SKOSType type : TYPES) {
+                if ((mask & (1 << type.ordinal())) != 0) {
+                    types.add(type);
+                }
+            }
+        }
+        return types;
+    }
+}
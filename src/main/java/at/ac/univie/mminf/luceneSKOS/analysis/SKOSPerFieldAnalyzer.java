@@ -0,0 +1,105 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.DelegatingAnalyzerWrapper;
+import org.apache.lucene.analysis.util.CharArraySet;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+
+/**
+ * Expands several fields, each according to its own {@link ExpansionProfile},
+ * over a single engine. All fields share the engine, the stop words and one
+ * label analyzer; fields without a profile are passed to a default analyzer.
+ */
+public class SKOSPerFieldAnalyzer extends DelegatingAnalyzerWrapper {
+
+    private final Analyzer defaultAnalyzer;
+    /* field name -> analyzer expanding the field */
+    private final Map<String, SKOSAnalyzer> fieldAnalyzers = new HashMap<>();
+
+    /**
+     * @param engine the engine shared by all fields
+     * @param defaultAnalyzer the analyzer for fields without a profile
+     * @param profiles the expansion profiles by field name
+     */
+    public SKOSPerFieldAnalyzer(SKOSEngine engine, Analyzer defaultAnalyzer,
+            Map<String, ExpansionProfile> profiles) {
+        this(SKOSAnalyzer.STOP_WORDS_SET, engine, SKOSAnalyzer.createLabelAnalyzer(), defaultAnalyzer, profiles);
+    }
+
+    /**
+     * @param stopWords the stop words removed from expanded fields
+     * @param engine the engine shared by all fields
+     * @param labelAnalyzer the analyzer normalizing labels, should be the one
+     * the engine was built with
+     * @param defaultAnalyzer the analyzer for fields without a profile
+     * @param profiles the expansion profiles by field name
+     */
+    public SKOSPerFieldAnalyzer(CharArraySet stopWords, SKOSEngine engine, Analyzer labelAnalyzer,
+            Analyzer defaultAnalyzer, Map<String, ExpansionProfile> profiles) {
+        super(PER_FIELD_REUSE_STRATEGY);
+        this.defaultAnalyzer = defaultAnalyzer;
+        for (Map.Entry<String, ExpansionProfile> entry : profiles.entrySet()) {
+            ExpansionProfile profile = entry.getValue();
+            SKOSAnalyzer analyzer = new SKOSAnalyzer(stopWords, engine, labelAnalyzer, profile.getExpansionType(),
+                    profile.getBufferSize(), profile.getTypes());
+            analyzer.setMaxExpansionsPerToken(profile.getMaxExpansionsPerToken());
+            analyzer.setMaxExpansionsPerDocument(profile.getMaxExpansionsPerDocument());
+            analyzer.setPayloadMode(profile.getPayloadMode());
+            analyzer.setWeights(profile.getWeights());
+            analyzer.setSuppressor(profile.getSuppressor());
+            analyzer.setExpansionCacheSize(profile.getExpansionCacheSize());
+            analyzer.setConceptIdMode(profile.getConceptIdMode());
+            fieldAnalyzers.put(entry.getKey(), analyzer);
+        }
+    }
+
+    @Override
+    protected Analyzer getWrappedAnalyzer(String fieldName) {
+        SKOSAnalyzer analyzer = fieldAnalyzers.get(fieldName);
+        return analyzer != null ? analyzer : defaultAnalyzer;
+    }
+
+    /**
+     * @param fieldName the field name
+     * @return the analyzer expanding the field, or null if the field has no
+     * profile
+     */
+    public SKOSAnalyzer getFieldAnalyzer(String fieldName) {
+        return fieldAnalyzers.get(fieldName);
+    }
+
+    /**
+     * @param fieldName the field name
+     * @return the expansion counters of the field, or null if the field has
+     * no profile
+     */
+    public SKOSExpansionStats getExpansionStats(String fieldName) {
+        SKOSAnalyzer analyzer = fieldAnalyzers.get(fieldName);
+        return analyzer != null ? analyzer.getExpansionStats() : null;
+    }
+
+    @Override
+    public String toString() {
+        return "SKOSPerFieldAnalyzer(" + fieldAnalyzers.keySet() + ", default=" + defaultAnalyzer + ")";
+    }
+}
@@ -17,6 +17,8 @@
  */
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -46,21 +48,25 @@ public SKOSURIFilter(TokenStream input, SKOSEngine skosEngine,
      */
     @Override
     public boolean incrementToken() throws IOException {
-        /* there are expanded terms for the given token */
-        if (termStack.size() > 0) {
-            processTermOnStack();
-            return true;
+        while (true) {
+            /* there are expanded terms for the given token */
+            if (termStack.size() > 0) {
+                processTermOnStack();
+                return true;
+            }
+            /* no more tokens on the consumed stream -> end of stream */
+            if (!input.incrementToken()) {
+                return false;
+            }
+            /* check whether there are expanded terms for a given token */
+            if (addTermsToStack(new ExpandedTerm(termAtt.toString(), null, offsettAtt.startOffset(), offsettAtt.endOffset()))) {
+                /* if yes, capture the state of all attributes */
+                current = captureState();
+            }
+            if (acceptInputToken()) {
+                return true;
+            }
         }
-        /* no more tokens on the consumed stream -> end of stream */
-        if (!input.incrementToken()) {
-            return false;
-        }
-        /* check whether there are expanded terms for a given token */
-        if (addTermsToStack(new ExpandedTerm(termAtt.toString(), null, offsettAtt.startOffset(), offsettAtt.endOffset()))) {
-            /* if yes, capture the state of all attributes */
-            current = captureState();
-        }
-        return true;
     }
 
     /**
@@ -70,27 +76,11 @@ public boolean incrementToken() throws IOException {
      * @return true if term stack is not empty
      */
     public boolean addTermsToStack(ExpandedTerm term) throws IOException {
-        if (types.contains(SKOSType.PREF)) {
-            pushLabelsToStack(term, engine.getPrefLabels(term.getTerm()), SKOSType.PREF);
-        }
-        if (types.contains(SKOSType.ALT)) {
-            pushLabelsToStack(term, engine.getAltLabels(term.getTerm()), SKOSType.ALT);
-        }
-        if (types.contains(SKOSType.BROADER)) {
-            pushLabelsToStack(term, engine.getBroaderLabels(term.getTerm()), SKOSType.BROADER);
-        }
-        if (types.contains(SKOSType.BROADERTRANSITIVE)) {
-            pushLabelsToStack(term, engine.getBroaderTransitiveLabels(term.getTerm()), SKOSType.BROADERTRANSITIVE);
-        }
-        if (types.contains(SKOSType.NARROWER)) {
-            pushLabelsToStack(term, engine.getNarrowerLabels(term.getTerm()), SKOSType.NARROWER);
-        }
-        if (types.contains(SKOSType.NARROWERTRANSITIVE)) {
-            pushLabelsToStack(term, engine.getNarrowerTransitiveLabels(term.getTerm()), SKOSType.NARROWERTRANSITIVE);
-        }
-        if (types.contains(SKOSType.RELATED)) {
-            pushLabelsToStack(term, engine.getRelatedLabels(term.getTerm()), SKOSType.RELATED);
-        }
-        return !termStack.isEmpty();
+        return expandToken(term);
+    }
+
+    @Override
+    protected Collection<String> lookupConcepts(ExpandedTerm term) {
+        return Collections.singleton(term.getTerm());
     }
 }
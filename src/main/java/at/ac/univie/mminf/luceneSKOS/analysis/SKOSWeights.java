@@ -0,0 +1,98 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+
+/**
+ * The weights written to the payload of expanded terms in
+ * {@link SKOSAnalyzer.PayloadMode#WEIGHT} mode.
+ *
+ * A term reached through a direct relation gets the weight of its SKOS type;
+ * each further hop along a transitive relation multiplies it by the decay.
+ * Labels of the expanded concept itself (pref, alt, hidden) are not decayed.
+ */
+public class SKOSWeights {
+
+    public static final float DEFAULT_DECAY = 0.5f;
+
+    /* type ordinal -> weight */
+    private final float[] typeWeights = new float[SKOSType.values().length];
+
+    private float decay = DEFAULT_DECAY;
+
+    public SKOSWeights() {
+        Arrays.fill(typeWeights, 1f);
+        typeWeights[SKOSType.ALT.ordinal()] = 0.9f;
+        typeWeights[SKOSType.HIDDEN.ordinal()] = 0.8f;
+        typeWeights[SKOSType.BROADER.ordinal()] = 0.5f;
+        typeWeights[SKOSType.NARROWER.ordinal()] = 0.5f;
+        typeWeights[SKOSType.RELATED.ordinal()] = 0.4f;
+        typeWeights[SKOSType.BROADERTRANSITIVE.ordinal()] = 0.5f;
+        typeWeights[SKOSType.NARROWERTRANSITIVE.ordinal()] = 0.5f;
+    }
+
+    /**
+     * Sets the weight of terms reached through the given type
+     *
+     * @param type the SKOS type
+     * @param weight the weight, must be positive
+     */
+    public void setWeight(SKOSType type, float weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        typeWeights[type.ordinal()] = weight;
+    }
+
+    public float getWeight(SKOSType type) {
+        return typeWeights[type.ordinal()];
+    }
+
+    /**
+     * Sets the factor applied for each hop beyond the first
+     *
+     * @param decay the decay, in (0, 1]
+     */
+    public void setDecay(float decay) {
+        if (!(decay > 0 && decay <= 1)) {
+            throw new IllegalArgumentException("decay must be in (0, 1]");
+        }
+        this.decay = decay;
+    }
+
+    public float getDecay() {
+        return decay;
+    }
+
+    /**
+     * Computes the weight of an expanded term
+     *
+     * @param type the type the term was expanded with
+     * @param distance the number of hops from the expanded concept
+     * @return the weight
+     */
+    public float getWeight(SKOSType type, int distance) {
+        float weight = typeWeights[type.ordinal()];
+        for (int hop = 1; hop < distance; hop++) {
+            weight *= decay;
+        }
+        return weight;
+    }
+}
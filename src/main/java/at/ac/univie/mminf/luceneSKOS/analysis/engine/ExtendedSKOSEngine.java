@@ -0,0 +1,46 @@
+package at.ac.univie.mminf.luceneSKOS.analysis.engine;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A SKOS engine that also lists its vocabulary and versions its data. Kept
+ * apart from {@link SKOSEngine} so that existing implementations keep
+ * compiling; callers check for it with instanceof and treat other engines as
+ * unversioned.
+ */
+public interface ExtendedSKOSEngine extends SKOSEngine {
+
+    /**
+     * Returns all concepts (URIs) of the vocabulary
+     *
+     * @return Collection<String> the concepts
+     * @throws IOException if method fails
+     */
+    Collection<String> getAllConcepts() throws IOException;
+
+    /**
+     * Returns a number that changes whenever the data delivered by the engine
+     * changes, e.g., when the vocabulary is reloaded. Allows callers to
+     * invalidate cached expansions.
+     *
+     * @return the version of the engine data
+     */
+    long getVersion();
+}
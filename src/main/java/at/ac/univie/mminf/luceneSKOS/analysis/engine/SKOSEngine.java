@@ -22,6 +22,8 @@
 /**
  * An interface to the used SKOS model. It provides accessors to all the data
  * needed for the expansion process.
+ *
+ * @see ExtendedSKOSEngine
  */
 public interface SKOSEngine {
 
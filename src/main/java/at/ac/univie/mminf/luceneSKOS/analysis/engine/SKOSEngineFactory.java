@@ -21,6 +21,8 @@
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.lucene.analysis.Analyzer;
+
 import at.ac.univie.mminf.luceneSKOS.analysis.engine.jena.SKOSEngineImpl;
 
 /**
@@ -85,6 +87,38 @@ public static SKOSEngine getSKOSEngine(InputStream inputStream, String format, L
         return new SKOSEngineImpl(inputStream, format, languages);
     }
 
+    /**
+     * Sets up a SKOS Engine from a given rdf file, normalizing labels with the
+     * given analyzer when indexing and looking them up
+     *
+     * @param indexPath     the index path
+     * @param filenameOrURI the skos file
+     * @param languages the languages to be considered
+     * @param labelAnalyzer the analyzer normalizing labels
+     * @return SKOSEngine
+     * @throws IOException if SKOS engine can not be instantiated
+     */
+    public static SKOSEngine getSKOSEngine(String indexPath, String filenameOrURI, List<String> languages,
+            Analyzer labelAnalyzer) throws IOException {
+        return new SKOSEngineImpl(indexPath, filenameOrURI, languages, labelAnalyzer);
+    }
+
+    /**
+     * Sets up a SKOS Engine from a given InputStream, normalizing labels with
+     * the given analyzer when indexing and looking them up
+     *
+     * @param inputStream the input stream
+     * @param format the serialization format (N3, RDF/XML, TURTLE)
+     * @param languages the languages to be considered
+     * @param labelAnalyzer the analyzer normalizing labels
+     * @return a new SKOSEngine instance
+     * @throws IOException if SKOS engine can not be instantiated
+     */
+    public static SKOSEngine getSKOSEngine(InputStream inputStream, String format, List<String> languages,
+            Analyzer labelAnalyzer) throws IOException {
+        return new SKOSEngineImpl(inputStream, format, languages, labelAnalyzer);
+    }
+
     public static SKOSEngine getSKOSEngine(InputStream inputStream, String format, String... languages) throws IOException {
         return new SKOSEngineImpl(inputStream, format, Arrays.asList(languages));
     }
@@ -16,7 +16,7 @@
  * limitations under the License.
  */
 
-import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
 import com.hp.hpl.jena.ontology.AnnotationProperty;
 import com.hp.hpl.jena.ontology.ObjectProperty;
 import com.hp.hpl.jena.rdf.model.Literal;
@@ -35,9 +35,12 @@
 import com.hp.hpl.jena.vocabulary.RDF;
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.*;
@@ -45,7 +48,9 @@
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.IOUtils;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -60,16 +65,49 @@
 import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SKOSEngine Implementation for Lucene.
  * Each SKOS concept is stored/indexed as a Lucene document.
  * All labels are converted to lowercase.
  */
-public class SKOSEngineImpl implements SKOSEngine {
+public class SKOSEngineImpl implements ExtendedSKOSEngine, Closeable {
 
     private final static Logger logger = Logger.getLogger(SKOSEngineImpl.class.getName());
 
+    /**
+     * Hands out a distinct version to each engine instance
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /**
+     * The estimated heap of a statement in the in-memory SKOS model
+     */
+    private static final long BYTES_PER_STATEMENT = 200;
+
+    /**
+     * The phases of building an engine
+     */
+    public enum BuildPhase {
+        /**
+         * reading the RDF serialization into the model
+         */
+        PARSE,
+        /**
+         * typing labeled resources as skos:Concept
+         */
+        ENTAIL,
+        /**
+         * writing the concept index
+         */
+        INDEX,
+        /**
+         * opening the searcher on the concept index
+         */
+        OPEN
+    }
+
     /**
      * Records the total number of matches
      */
@@ -138,6 +176,29 @@ public List<Integer> getDocs() {
      * SimpleAnalyzer = LetterTokenizer + LowerCaseFilter
      */
     private final Analyzer analyzer;
+    /**
+     * The analyzer normalizing labels when indexing and looking them up, or
+     * null to only lower-case them
+     */
+    private final Analyzer labelAnalyzer;
+    /**
+     * The version of the data held by this engine
+     */
+    private final long version = VERSIONS.incrementAndGet();
+    /**
+     * The time spent in each build phase, in ns
+     */
+    private final long[] buildNanos = new long[BuildPhase.values().length];
+    /**
+     * The start of the current build phase
+     */
+    private long phaseStart = System.nanoTime();
+    /**
+     * The number of concepts and of their pref, alt and hidden labels, counted
+     * while indexing
+     */
+    private int conceptCount;
+    private long labelCount;
 
     /**
      * This constructor loads the SKOS model from a given InputStream using the
@@ -153,12 +214,12 @@ public SKOSEngineImpl(InputStream inputStream, String lang) throws IOException {
             throw new IOException("Invalid RDF serialization format");
         }
         this.analyzer = new SimpleAnalyzer();
+        this.labelAnalyzer = null;
         this.skosModel = ModelFactory.createDefaultModel();
         skosModel.read(inputStream, null, lang);
+        endPhase(BuildPhase.PARSE);
         indexDir = new RAMDirectory();
-        entailSKOSModel();
-        indexSKOSModel();
-        searcher = new IndexSearcher(DirectoryReader.open(indexDir));
+        build();
     }
 
     /**
@@ -171,7 +232,25 @@ public SKOSEngineImpl(InputStream inputStream, String lang) throws IOException {
      * @throws IOException if indexing SKOS model fails
      */
     public SKOSEngineImpl(String indexPath, String filenameOrURI, List<String> languages) throws IOException {
+        this(indexPath, filenameOrURI, languages, null);
+    }
+
+    /**
+     * This constructor loads the SKOS model from a given filename or URI,
+     * starts the indexing process and sets up the index searcher. Labels are
+     * normalized with the given analyzer, which should be the one used to
+     * analyze the expanded text.
+     *
+     * @param indexPath index path
+     * @param filenameOrURI file name or URI
+     * @param languages the languages to be considered
+     * @param labelAnalyzer the analyzer normalizing labels or null
+     * @throws IOException if indexing SKOS model fails
+     */
+    public SKOSEngineImpl(String indexPath, String filenameOrURI, List<String> languages,
+            Analyzer labelAnalyzer) throws IOException {
         this.analyzer = new SimpleAnalyzer();
+        this.labelAnalyzer = labelAnalyzer;
         String langSig = "";
         if (languages != null ) {
             this.languages = new TreeSet<>(languages);
@@ -194,9 +273,8 @@ public SKOSEngineImpl(String indexPath, String filenameOrURI, List<String> langu
             File inputFile = new File(filenameOrURI);
             Path inputPath = Paths.get(inputFile.getParent(), inputFile.getName());
             skosModel = fileManager.loadModel(inputPath.toUri().toString());
-            entailSKOSModel();
-            indexSKOSModel();
-            searcher = new IndexSearcher(DirectoryReader.open(indexDir));
+            endPhase(BuildPhase.PARSE);
+            build();
         }
     }
 
@@ -212,6 +290,22 @@ public SKOSEngineImpl(String indexPath, String filenameOrURI, List<String> langu
      */
     public SKOSEngineImpl(InputStream inputStream, String format, List<String> languages)
             throws IOException {
+        this(inputStream, format, languages, null);
+    }
+
+    /**
+     * This constructor loads the SKOS model from a given InputStream using the
+     * given serialization language parameter, which must be either N3, RDF/XML,
+     * or TURTLE. Labels are normalized with the given analyzer.
+     *
+     * @param inputStream the input stream
+     * @param format the serialization language
+     * @param languages the languages
+     * @param labelAnalyzer the analyzer normalizing labels or null
+     * @throws IOException if the model cannot be loaded
+     */
+    public SKOSEngineImpl(InputStream inputStream, String format, List<String> languages,
+            Analyzer labelAnalyzer) throws IOException {
         if (!("N3".equals(format) || "RDF/XML".equals(format) || "TURTLE".equals(format))) {
             throw new IOException("Invalid RDF serialization format");
         }
@@ -219,12 +313,31 @@ public SKOSEngineImpl(InputStream inputStream, String format, List<String> langu
             this.languages = new TreeSet<>(languages);
         }
         analyzer = new SimpleAnalyzer();
+        this.labelAnalyzer = labelAnalyzer;
         skosModel = ModelFactory.createDefaultModel();
         skosModel.read(inputStream, null, format);
+        endPhase(BuildPhase.PARSE);
         indexDir = new RAMDirectory();
+        build();
+    }
+
+    /**
+     * Entails and indexes the parsed model and opens the searcher, timing
+     * each phase
+     */
+    private void build() throws IOException {
         entailSKOSModel();
+        endPhase(BuildPhase.ENTAIL);
         indexSKOSModel();
+        endPhase(BuildPhase.INDEX);
         searcher = new IndexSearcher(DirectoryReader.open(indexDir));
+        endPhase(BuildPhase.OPEN);
+    }
+
+    private void endPhase(BuildPhase phase) {
+        long now = System.nanoTime();
+        buildNanos[phase.ordinal()] = now - phaseStart;
+        phaseStart = now;
     }
 
     private void entailSKOSModel() {
@@ -246,7 +359,7 @@ private void entailSKOSModel() {
      * Creates lucene documents from SKOS concept. In order to allow language
      * restrictions, one document per language is created.
      */
-    private Document createDocumentsFromConcept(Resource skos_concept) {
+    private Document createDocumentsFromConcept(Resource skos_concept) throws IOException {
         Document conceptDoc = new Document();
         String conceptURI = skos_concept.getURI();
         Field uriField = new Field(FIELD_URI, conceptURI, StringField.TYPE_STORED);
@@ -296,6 +409,91 @@ public Collection<String> getAltTerms(String label) throws IOException {
         return result;
     }
 
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Estimates the heap held by the engine: the concept index if it is held
+     * in memory, and the SKOS model at a rough {@value #BYTES_PER_STATEMENT}
+     * bytes per statement
+     *
+     * @return the estimated number of bytes
+     */
+    public long ramBytesUsed() {
+        long bytes = skosModel != null ? skosModel.size() * BYTES_PER_STATEMENT : 0;
+        if (indexDir instanceof RAMDirectory) {
+            bytes += ((RAMDirectory) indexDir).ramBytesUsed();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the number of concepts in the index
+     */
+    public int getConceptCount() {
+        return conceptCount;
+    }
+
+    /**
+     * @return the number of pref, alt and hidden labels in the index
+     */
+    public long getLabelCount() {
+        return labelCount;
+    }
+
+    /**
+     * Returns the time spent in a phase of building the engine
+     *
+     * @param phase the build phase
+     * @return the time in ns, 0 if the phase did not run
+     */
+    public long getBuildNanos(BuildPhase phase) {
+        return buildNanos[phase.ordinal()];
+    }
+
+    /**
+     * Closes the concept index; the engine can not be used afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        IOUtils.close(searcher != null ? searcher.getIndexReader() : null, indexDir);
+    }
+
+    /**
+     * @return the analyzer normalizing labels, or null if labels are only
+     * lower-cased
+     */
+    public Analyzer getLabelAnalyzer() {
+        return labelAnalyzer;
+    }
+
+    /**
+     * Normalizes a label for indexing or lookup: the label analyzer's tokens
+     * joined by blanks, or the lower-cased label if there is no analyzer or
+     * it eliminates the label completely
+     */
+    private String normalizeLabel(String label) throws IOException {
+        String lowerCased = label.toLowerCase(Locale.ROOT);
+        if (labelAnalyzer == null) {
+            return lowerCased;
+        }
+        StringBuilder builder = new StringBuilder();
+        try (TokenStream ts = labelAnalyzer.tokenStream("", label)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(termAtt.buffer(), 0, termAtt.length());
+            }
+            ts.end();
+        }
+        return builder.length() > 0 ? builder.toString() : lowerCased;
+    }
+
     @Override
     public Collection<String> getHiddenLabels(String conceptURI) throws IOException {
         return readConceptFieldValues(conceptURI, FIELD_HIDDEN_LABEL);
@@ -326,8 +524,8 @@ public Collection<String> getBroaderTransitiveLabels(String conceptURI)
     @Override
     public Collection<String> getConcepts(String label) throws IOException {
         Set<String> concepts = new HashSet<>();
-        // convert the query to lower-case
-        String queryString = label.toLowerCase(Locale.ROOT);
+        // normalize the query the way the labels were indexed
+        String queryString = normalizeLabel(label);
         AllDocCollector collector = new AllDocCollector();
         DisjunctionMaxQuery query = new DisjunctionMaxQuery(0.0f);
         query.add(new TermQuery(new Term(FIELD_PREF_LABEL, queryString)));
@@ -342,6 +540,20 @@ public Collection<String> getConcepts(String label) throws IOException {
         return concepts;
     }
 
+    @Override
+    public Collection<String> getAllConcepts() throws IOException {
+        Set<String> concepts = new HashSet<>();
+        AllDocCollector collector = new AllDocCollector();
+        searcher.search(new MatchAllDocsQuery(), collector);
+        for (Integer hit : collector.getDocs()) {
+            String[] uris = searcher.doc(hit).getValues(FIELD_URI);
+            if (uris.length > 0) {
+                concepts.add(uris[0]);
+            }
+        }
+        return concepts;
+    }
+
     private Collection<String> getLabels(String conceptURI, String field)
             throws IOException {
         Set<String> labels = new HashSet<>();
@@ -391,7 +603,7 @@ public Collection<String> getRelatedLabels(String conceptURI) throws IOException
     }
 
     private void indexAnnotation(Resource skos_concept, Document conceptDoc,
-                                 AnnotationProperty property, String field) {
+                                 AnnotationProperty property, String field) throws IOException {
         StmtIterator stmt_iter = skos_concept.listProperties(property);
         while (stmt_iter.hasNext()) {
             Literal labelLiteral = stmt_iter.nextStatement().getObject().as(Literal.class);
@@ -402,8 +614,15 @@ private void indexAnnotation(Resource skos_concept, Document conceptDoc,
             }
             // converting label to lower-case
             label = label.toLowerCase(Locale.ROOT);
-            Field labelField = new Field(field, label, StringField.TYPE_STORED);
-            conceptDoc.add(labelField);
+            labelCount++;
+            if (labelAnalyzer == null) {
+                Field labelField = new Field(field, label, StringField.TYPE_STORED);
+                conceptDoc.add(labelField);
+            } else {
+                // the label is returned as is, but looked up by its normalized form
+                conceptDoc.add(new StoredField(field, label));
+                conceptDoc.add(new Field(field, normalizeLabel(label), StringField.TYPE_NOT_STORED));
+            }
         }
     }
 
@@ -429,6 +648,8 @@ private void indexObject(Resource skos_concept, Document conceptDoc,
      */
     private void indexSKOSModel() throws IOException {
         IndexWriterConfig cfg = new IndexWriterConfig(analyzer);
+        // a rebuild replaces the concepts of an earlier build in the same directory
+        cfg.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
         IndexWriter writer = new IndexWriter(indexDir, cfg);
         writer.getConfig().setRAMBufferSizeMB(48);
         /* iterate SKOS concepts, create Lucene docs and add them to the index */
@@ -437,6 +658,7 @@ private void indexSKOSModel() throws IOException {
             Resource skos_concept = concept_iter.next();
             Document concept_doc = createDocumentsFromConcept(skos_concept);
             writer.addDocument(concept_doc);
+            conceptCount++;
         }
         writer.close();
     }
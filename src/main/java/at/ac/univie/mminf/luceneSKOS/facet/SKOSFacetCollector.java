@@ -0,0 +1,209 @@
+package at.ac.univie.mminf.luceneSKOS.facet;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.SimpleCollector;
+
+/**
+ * Counts the matching documents per concept, rolled up the hierarchy, from
+ * the paths written by {@link SKOSFacetFields}.
+ *
+ * Each matching document is counted by incrementing the counters of its
+ * doc values ordinals in a single pass; the ordinals are resolved to
+ * concept paths once per segment, when the next segment is started or the
+ * counts are requested.
+ */
+public class SKOSFacetCollector extends SimpleCollector {
+
+    private final String field;
+
+    /* path -> number of documents */
+    private final Map<String, Integer> pathCounts = new HashMap<>();
+
+    private SortedSetDocValues values;
+
+    /* segment ordinal -> number of documents */
+    private int[] ordCounts;
+
+    private int totalHits;
+
+    /**
+     * @param field the doc values field written by {@link SKOSFacetFields}
+     */
+    public SKOSFacetCollector(String field) {
+        this.field = field;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        flushSegment();
+        values = DocValues.getSortedSet(context.reader(), field);
+        long valueCount = values.getValueCount();
+        if (valueCount > Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many paths in field " + field);
+        }
+        ordCounts = new int[(int) valueCount];
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        totalHits++;
+        values.setDocument(doc);
+        for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+            ordCounts[(int) ord]++;
+        }
+    }
+
+    /**
+     * Adds the counts of the current segment to the path counts
+     */
+    private void flushSegment() {
+        if (ordCounts == null) {
+            return;
+        }
+        for (int ord = 0; ord < ordCounts.length; ord++) {
+            if (ordCounts[ord] > 0) {
+                String path = values.lookupOrd(ord).utf8ToString();
+                Integer count = pathCounts.get(path);
+                pathCounts.put(path, count != null ? count + ordCounts[ord] : ordCounts[ord]);
+            }
+        }
+        ordCounts = null;
+        values = null;
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Returns the number of matching documents with the given concept, or a
+     * concept below it, at the end of the given path
+     *
+     * @param path the concept URIs from a top concept down
+     * @return the number of documents
+     */
+    public int getCount(String... path) {
+        flushSegment();
+        StringBuilder key = new StringBuilder();
+        for (String conceptURI : path) {
+            if (key.length() > 0) {
+                key.append(SKOSFacetFields.DELIMITER);
+            }
+            key.append(conceptURI);
+        }
+        Integer count = pathCounts.get(key.toString());
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Returns the counts as a tree below the top concepts, children ordered
+     * by descending count
+     *
+     * @return the top concepts of the matching documents
+     */
+    public List<FacetNode> getFacets() {
+        flushSegment();
+        FacetNode root = new FacetNode(null, 0);
+        Map<String, FacetNode> nodes = new HashMap<>();
+        // shorter paths first, so parents exist before their children
+        List<String> paths = new ArrayList<>(pathCounts.keySet());
+        Collections.sort(paths, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Integer.compare(a.length(), b.length());
+            }
+        });
+        for (String path : paths) {
+            int split = path.lastIndexOf(SKOSFacetFields.DELIMITER);
+            FacetNode parent = split < 0 ? root : nodes.get(path.substring(0, split));
+            if (parent == null) {
+                // a parent with no count can not occur, every prefix is indexed
+                continue;
+            }
+            FacetNode node = new FacetNode(path.substring(split + 1), pathCounts.get(path));
+            parent.children.add(node);
+            nodes.put(path, node);
+        }
+        root.sort();
+        return root.getChildren();
+    }
+
+    /**
+     * A concept and the number of matching documents with it, or a concept
+     * below it, on a path
+     */
+    public static final class FacetNode {
+
+        private final String conceptURI;
+
+        private final int count;
+
+        private final List<FacetNode> children = new ArrayList<>();
+
+        private FacetNode(String conceptURI, int count) {
+            this.conceptURI = conceptURI;
+            this.count = count;
+        }
+
+        private void sort() {
+            Collections.sort(children, new Comparator<FacetNode>() {
+                @Override
+                public int compare(FacetNode a, FacetNode b) {
+                    int c = Integer.compare(b.count, a.count);
+                    return c != 0 ? c : a.conceptURI.compareTo(b.conceptURI);
+                }
+            });
+            for (FacetNode child : children) {
+                child.sort();
+            }
+        }
+
+        public String getConceptURI() {
+            return conceptURI;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public List<FacetNode> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        @Override
+        public String toString() {
+            return conceptURI + " (" + count + ")";
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package at.ac.univie.mminf.luceneSKOS.facet;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.util.BytesRef;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+
+/**
+ * Adds the hierarchy paths of the concepts of a document to a
+ * SortedSetDocValues field, for hierarchical counting with
+ * {@link SKOSFacetCollector}.
+ *
+ * A path runs from a top concept (one without broader concepts) along the
+ * broader chain down to the concept; a concept with several broader
+ * concepts has several paths. Every prefix of every path is written as one
+ * value, so a document counts once for each concept on any of its paths and
+ * the counts roll up the hierarchy without any work at search time.
+ */
+public class SKOSFacetFields {
+
+    /**
+     * Separates the concept URIs of a path
+     */
+    public static final char DELIMITER = '\u001f';
+
+    private final SKOSEngine engine;
+
+    private final String field;
+
+    /* concept URI -> its paths, each joined by the delimiter */
+    private final ConcurrentHashMap<String, List<String>> paths = new ConcurrentHashMap<>();
+
+    /**
+     * @param engine the engine delivering the broader concepts
+     * @param field the doc values field
+     */
+    public SKOSFacetFields(SKOSEngine engine, String field) {
+        this.engine = engine;
+        this.field = field;
+    }
+
+    /**
+     * Adds the paths of the given concepts to a document
+     *
+     * @param doc the document
+     * @param conceptURIs the concepts of the document
+     * @throws IOException if the engine failed
+     */
+    public void addFields(Document doc, Collection<String> conceptURIs) throws IOException {
+        Set<String> values = new LinkedHashSet<>();
+        for (String conceptURI : conceptURIs) {
+            for (String path : getPaths(conceptURI)) {
+                int end = path.indexOf(DELIMITER);
+                while (end >= 0) {
+                    values.add(path.substring(0, end));
+                    end = path.indexOf(DELIMITER, end + 1);
+                }
+                values.add(path);
+            }
+        }
+        for (String value : values) {
+            doc.add(new SortedSetDocValuesField(field, new BytesRef(value)));
+        }
+    }
+
+    public void addFields(Document doc, String... conceptURIs) throws IOException {
+        addFields(doc, Arrays.asList(conceptURIs));
+    }
+
+    /**
+     * Returns the paths from the top concepts to a concept
+     *
+     * @param conceptURI the concept
+     * @return the paths, each joined by {@link #DELIMITER}
+     * @throws IOException if the engine failed
+     */
+    public List<String> getPaths(String conceptURI) throws IOException {
+        List<String> conceptPaths = paths.get(conceptURI);
+        if (conceptPaths == null) {
+            conceptPaths = Collections.unmodifiableList(buildPaths(conceptURI, new HashSet<String>()));
+            paths.putIfAbsent(conceptURI, conceptPaths);
+        }
+        return conceptPaths;
+    }
+
+    /**
+     * @param onPath the concepts below the concept, to cut cycles
+     */
+    private List<String> buildPaths(String conceptURI, Set<String> onPath) throws IOException {
+        List<String> result = new ArrayList<>();
+        onPath.add(conceptURI);
+        Collection<String> broader = engine.getBroaderConcepts(conceptURI);
+        if (broader != null) {
+            for (String broaderURI : broader) {
+                if (onPath.contains(broaderURI)) {
+                    continue;
+                }
+                for (String path : buildPaths(broaderURI, onPath)) {
+                    result.add(path + DELIMITER + conceptURI);
+                }
+            }
+        }
+        onPath.remove(conceptURI);
+        if (result.isEmpty()) {
+            result.add(conceptURI);
+        }
+        return result;
+    }
+
+    public String getField() {
+        return field;
+    }
+}
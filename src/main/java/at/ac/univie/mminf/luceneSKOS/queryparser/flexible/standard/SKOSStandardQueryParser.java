@@ -18,14 +18,22 @@
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.queryparser.flexible.core.processors.QueryNodeProcessorPipeline;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
+import org.apache.lucene.queryparser.flexible.standard.builders.StandardQueryTreeBuilder;
 import org.apache.lucene.queryparser.flexible.standard.processors.AnalyzerQueryNodeProcessor;
 
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSExpansionSuppressor;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.builders.SKOSExpansionQueryNodeBuilder;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.nodes.SKOSExpansionQueryNode;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSExpansionNodeCache;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSExpansionPlanner;
 import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSQueryNodeProcessor;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSQueryNodeProcessor.ExpansionQueryMode;
 
 public class SKOSStandardQueryParser extends StandardQueryParser {
   
@@ -43,6 +51,8 @@ public class SKOSStandardQueryParser extends StandardQueryParser {
     }
   };
   
+  private final SKOSQueryNodeProcessor skosProcessor;
+  
   public SKOSStandardQueryParser(Analyzer analyzer) {
     super();
     QueryNodeProcessorPipeline qnpp = ((QueryNodeProcessorPipeline) getQueryNodeProcessor());
@@ -55,6 +65,11 @@ public SKOSStandardQueryParser(Analyzer analyzer) {
     }
     SKOSQueryNodeProcessor qnp = new SKOSQueryNodeProcessor(analyzer);
     qnpp.add(i, qnp);
+    skosProcessor = qnp;
+    
+    // builds the nodes of the SYNONYM and TERMS expansion query modes
+    ((StandardQueryTreeBuilder) getQueryBuilder()).setBuilder(
+        SKOSExpansionQueryNode.class, new SKOSExpansionQueryNodeBuilder());
     
     // Set boost map
     qnp.setBoosts(boosts);
@@ -72,6 +87,74 @@ public void setBoost(SKOSType skosType, float boost) {
     boosts.put(skosType, boost);
   }
   
+  /**
+   * Sets the document frequency based suppression of expanded query terms
+   * @param suppressor the suppressor or null
+   * @see SKOSQueryNodeProcessor#setSuppressor(SKOSExpansionSuppressor)
+   */
+  public void setSuppressor(SKOSExpansionSuppressor suppressor) {
+    skosProcessor.setSuppressor(suppressor);
+  }
+  
+  public SKOSExpansionSuppressor getSuppressor() {
+    return skosProcessor.getSuppressor();
+  }
+  
+  /**
+   * Sets how a term and its expansions at a single position are turned into
+   * a query
+   * @param expansionQueryMode the mode
+   * @see SKOSQueryNodeProcessor#setExpansionQueryMode(ExpansionQueryMode)
+   */
+  public void setExpansionQueryMode(ExpansionQueryMode expansionQueryMode) {
+    skosProcessor.setExpansionQueryMode(expansionQueryMode);
+  }
+  
+  public ExpansionQueryMode getExpansionQueryMode() {
+    return skosProcessor.getExpansionQueryMode();
+  }
+  
+  /**
+   * Sets the cache of expanded query text, shared with other parsers if
+   * they are given the same instance
+   * @param expansionCache the cache or null to expand every query
+   * @see SKOSQueryNodeProcessor#setExpansionCache(SKOSExpansionNodeCache)
+   */
+  public void setExpansionCache(SKOSExpansionNodeCache expansionCache) {
+    skosProcessor.setExpansionCache(expansionCache);
+  }
+  
+  public SKOSExpansionNodeCache getExpansionCache() {
+    return skosProcessor.getExpansionCache();
+  }
+  
+  /**
+   * Sets the planner choosing a cheaper representation for terms with too
+   * many or too costly expansions
+   * @param planner the planner or null
+   * @see SKOSQueryNodeProcessor#setPlanner(SKOSExpansionPlanner)
+   */
+  public void setPlanner(SKOSExpansionPlanner planner) {
+    skosProcessor.setPlanner(planner);
+  }
+  
+  public SKOSExpansionPlanner getPlanner() {
+    return skosProcessor.getPlanner();
+  }
+  
+  /**
+   * Restricts the expansions to the given SKOS types
+   * @param types the types or null for all
+   * @see SKOSQueryNodeProcessor#setTypes(Set)
+   */
+  public void setTypes(Set<SKOSType> types) {
+    skosProcessor.setTypes(types);
+  }
+  
+  public Set<SKOSType> getTypes() {
+    return skosProcessor.getTypes();
+  }
+  
   public float getBoost(String type) {
     if (boosts == null) {
       return 1;
@@ -0,0 +1,113 @@
+package at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.builders;
+
+/**
+ * Copyright 2012 Flavio Martins 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.TermsQuery;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.queryparser.flexible.core.nodes.QueryNode;
+import org.apache.lucene.queryparser.flexible.standard.builders.StandardQueryBuilder;
+import org.apache.lucene.search.BlendedTermQuery;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.nodes.SKOSExpansionQueryNode;
+
+/**
+ * Builds a {@link SKOSExpansionQueryNode} into either
+ * <ul>
+ * <li>one {@link BlendedTermQuery} per distinct boost, so that the terms of
+ * a group share their document frequency (Lucene 5.3 has no SynonymQuery).
+ * It still rewrites to one scorer per term and fails with TooManyClauses
+ * beyond {@link BooleanQuery#getMaxClauseCount()} terms, so larger groups
+ * become a boosted constant-score {@link TermsQuery}, or</li>
+ * <li>a constant-score {@link TermsQuery}, ignoring the boosts.</li>
+ * </ul>
+ */
+public class SKOSExpansionQueryNodeBuilder implements StandardQueryBuilder {
+
+  @Override
+  public Query build(QueryNode queryNode) throws QueryNodeException {
+    SKOSExpansionQueryNode node = (SKOSExpansionQueryNode) queryNode;
+    String field = node.getFieldAsString();
+    List<String> terms = node.getTerms();
+
+    switch (node.getMode()) {
+      case TERMS:
+        return termsQuery(field, terms);
+
+      default:
+        // group the terms by boost, keeping the order of the first occurrence
+        Map<Float, List<String>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < terms.size(); i++) {
+          Float boost = node.getBoosts().get(i);
+          List<String> group = groups.get(boost);
+          if (group == null) {
+            group = new ArrayList<>();
+            groups.put(boost, group);
+          }
+          group.add(terms.get(i));
+        }
+
+        if (groups.size() == 1) {
+          Map.Entry<Float, List<String>> group = groups.entrySet().iterator().next();
+          return boost(groupQuery(field, group.getValue()), group.getKey());
+        }
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.setDisableCoord(true);
+        for (Map.Entry<Float, List<String>> group : groups.entrySet()) {
+          builder.add(boost(groupQuery(field, group.getValue()), group.getKey()), BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+  }
+
+  private static Query groupQuery(String field, List<String> terms) {
+    if (terms.size() > BooleanQuery.getMaxClauseCount()) {
+      return termsQuery(field, terms);
+    }
+    BlendedTermQuery.Builder builder = new BlendedTermQuery.Builder();
+    for (String term : terms) {
+      builder.add(new Term(field, term));
+    }
+    return builder.build();
+  }
+
+  private static Query termsQuery(String field, List<String> terms) {
+    List<BytesRef> bytes = new ArrayList<>(terms.size());
+    for (String term : terms) {
+      bytes.add(new BytesRef(term));
+    }
+    return new TermsQuery(field, bytes);
+  }
+
+  private static Query boost(Query query, float boost) {
+    if (boost != 1f) {
+      query.setBoost(boost);
+    }
+    return query;
+  }
+
+}
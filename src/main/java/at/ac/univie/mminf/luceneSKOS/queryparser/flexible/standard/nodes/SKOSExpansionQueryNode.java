@@ -0,0 +1,117 @@
+package at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.nodes;
+
+/**
+ * Copyright 2012 Flavio Martins 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.lucene.queryparser.flexible.core.nodes.FieldableNode;
+import org.apache.lucene.queryparser.flexible.core.nodes.QueryNode;
+import org.apache.lucene.queryparser.flexible.core.nodes.QueryNodeImpl;
+import org.apache.lucene.queryparser.flexible.core.parser.EscapeQuerySyntax;
+
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSQueryNodeProcessor.ExpansionQueryMode;
+
+/**
+ * A leaf node holding a term and its expansions at a single position, each
+ * with its boost. It is built into a single query according to its
+ * {@link ExpansionQueryMode}.
+ *
+ * @see at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.builders.SKOSExpansionQueryNodeBuilder
+ */
+public class SKOSExpansionQueryNode extends QueryNodeImpl implements FieldableNode {
+
+  private CharSequence field;
+
+  private List<String> terms;
+
+  private List<Float> boosts;
+
+  private final ExpansionQueryMode mode;
+
+  /**
+   * @param field the field
+   * @param terms the term and its expansions
+   * @param boosts the boost of each term
+   * @param mode how the node is built into a query
+   */
+  public SKOSExpansionQueryNode(CharSequence field, List<String> terms,
+      List<Float> boosts, ExpansionQueryMode mode) {
+    this.field = field;
+    this.terms = terms;
+    this.boosts = boosts;
+    this.mode = mode;
+  }
+
+  @Override
+  public CharSequence getField() {
+    return field;
+  }
+
+  @Override
+  public void setField(CharSequence field) {
+    this.field = field;
+  }
+
+  public String getFieldAsString() {
+    return field != null ? field.toString() : null;
+  }
+
+  public List<String> getTerms() {
+    return terms;
+  }
+
+  public List<Float> getBoosts() {
+    return boosts;
+  }
+
+  public ExpansionQueryMode getMode() {
+    return mode;
+  }
+
+  @Override
+  public CharSequence toQueryString(EscapeQuerySyntax escapeSyntaxParser) {
+    StringBuilder sb = new StringBuilder("(");
+    for (int i = 0; i < terms.size(); i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(field).append(':').append(
+          escapeSyntaxParser.escape(terms.get(i), Locale.ROOT, EscapeQuerySyntax.Type.NORMAL));
+      if (boosts.get(i) != 1f) {
+        sb.append('^').append(boosts.get(i));
+      }
+    }
+    return sb.append(')');
+  }
+
+  @Override
+  public String toString() {
+    return "<skosExpansion field='" + field + "' mode='" + mode + "' terms='" + terms
+        + "' boosts='" + boosts + "'/>";
+  }
+
+  @Override
+  public QueryNode cloneTree() throws CloneNotSupportedException {
+    SKOSExpansionQueryNode clone = (SKOSExpansionQueryNode) super.cloneTree();
+    clone.terms = new ArrayList<>(terms);
+    clone.boosts = new ArrayList<>(boosts);
+    return clone;
+  }
+
+}
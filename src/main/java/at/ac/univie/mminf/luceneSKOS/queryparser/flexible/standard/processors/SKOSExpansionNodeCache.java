@@ -0,0 +1,199 @@
+package at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors;
+
+/**
+ * Copyright 2012 Flavio Martins 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.queryparser.flexible.core.nodes.QueryNode;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+
+/**
+ * A bounded cache of the node subtrees {@link SKOSQueryNodeProcessor}
+ * expands query text into, so repeated queries do not run the analyzer and
+ * the engine lookups again.
+ * 
+ * Entries are keyed on the field, the text, the boosts and the version of the
+ * engine the text was expanded with; after the engine is reloaded the old
+ * entries are no longer hit and age out. Nodes are cloned when they are put
+ * into and taken from the cache. The cache is thread-safe and may be shared
+ * by several parsers.
+ */
+public class SKOSExpansionNodeCache {
+  
+  public static final int DEFAULT_SIZE = 1024;
+  
+  private final Map<Key,QueryNode> nodes;
+  
+  private final AtomicLong hits = new AtomicLong();
+  
+  private final AtomicLong misses = new AtomicLong();
+  
+  public SKOSExpansionNodeCache() {
+    this(DEFAULT_SIZE);
+  }
+  
+  /**
+   * @param maxSize the maximum number of cached expansions
+   */
+  public SKOSExpansionNodeCache(final int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    nodes = new LinkedHashMap<Key,QueryNode>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key,QueryNode> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+  
+  /**
+   * @return a copy of the cached expansion, or null on a miss
+   */
+  QueryNode get(Key key) {
+    QueryNode node;
+    synchronized (nodes) {
+      node = nodes.get(key);
+    }
+    if (node == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return copy(node);
+  }
+  
+  void put(Key key, QueryNode node) {
+    QueryNode copy = copy(node);
+    if (copy != null) {
+      synchronized (nodes) {
+        nodes.put(key, copy);
+      }
+    }
+  }
+  
+  private static QueryNode copy(QueryNode node) {
+    try {
+      QueryNode copy = node.cloneTree();
+      copy.removeFromParent();
+      copyTags(node, copy);
+      return copy;
+    } catch (CloneNotSupportedException e) {
+      return null;
+    }
+  }
+  
+  /**
+   * Cloning drops the tags, e.g. the expansion strategy of each position,
+   * so they are copied over the whole cloned tree
+   */
+  private static void copyTags(QueryNode node, QueryNode copy) {
+    for (Map.Entry<String,Object> tag : node.getTagMap().entrySet()) {
+      copy.setTag(tag.getKey(), tag.getValue());
+    }
+    List<QueryNode> children = node.getChildren();
+    List<QueryNode> copies = copy.getChildren();
+    if (children != null && copies != null) {
+      for (int i = 0; i < children.size() && i < copies.size(); i++) {
+        copyTags(children.get(i), copies.get(i));
+      }
+    }
+  }
+  
+  public int size() {
+    synchronized (nodes) {
+      return nodes.size();
+    }
+  }
+  
+  public void clear() {
+    synchronized (nodes) {
+      nodes.clear();
+    }
+  }
+  
+  public long getHits() {
+    return hits.get();
+  }
+  
+  public long getMisses() {
+    return misses.get();
+  }
+  
+  /**
+   * The inputs an expansion depends on. Besides field, text, boosts and
+   * engine version these are the processor settings that change the shape
+   * of the expanded subtree.
+   */
+  static final class Key {
+    
+    private final String field;
+    
+    private final String text;
+    
+    private final Map<SKOSType,Float> boosts;
+    
+    private final long engineVersion;
+    
+    private final Object[] settings;
+    
+    private final int hash;
+    
+    Key(String field, String text, Map<SKOSType,Float> boosts,
+        long engineVersion, Object... settings) {
+      this.field = field;
+      this.text = text;
+      // copied, the boosts of a parser can be changed between queries
+      this.boosts = boosts == null || boosts.isEmpty() ? null : new EnumMap<>(boosts);
+      this.engineVersion = engineVersion;
+      this.settings = settings;
+      this.hash = Objects.hash(field, text, this.boosts, engineVersion, Arrays.hashCode(settings));
+    }
+    
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash
+          && engineVersion == other.engineVersion
+          && Objects.equals(field, other.field)
+          && Objects.equals(text, other.text)
+          && Objects.equals(boosts, other.boosts)
+          && Arrays.equals(settings, other.settings);
+    }
+  }
+  
+}
@@ -0,0 +1,254 @@
+package at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors;
+
+/**
+ * Copyright 2012 Flavio Martins 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.lucene.search.BooleanQuery;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.DocFreqSource;
+
+/**
+ * Decides how the expansions of a query term are represented when
+ * expanding them all would exceed a clause or cost budget, e.g. for the
+ * narrowerTransitive labels of a broad concept.
+ * 
+ * A term and its expansions are kept as they are ({@link Strategy#ALL}) as
+ * long as their number stays within the clause budget and, if a document
+ * frequency source is set, the sum of their document frequencies stays
+ * within the cost budget. Otherwise the fallback strategy is used. The
+ * strategy chosen is set as {@link #STRATEGY_TAG} tag on the node built for
+ * the term.
+ */
+public class SKOSExpansionPlanner {
+  
+  public enum Strategy {
+    /** all expansions, as configured */
+    ALL,
+    /** the expansions with the highest boost, rarer ones first on ties */
+    TOP_K,
+    /** all expansions in a constant-score terms query */
+    TERMS,
+    /** the term and the IDs of the concepts it labels */
+    CONCEPT_ID
+  }
+  
+  /**
+   * The tag holding the {@link Strategy} chosen for a term
+   */
+  public static final String STRATEGY_TAG = "skosExpansionStrategy";
+  
+  /**
+   * No limit; for the clause budget the current
+   * {@link BooleanQuery#getMaxClauseCount()} applies
+   */
+  public static final int UNLIMITED = -1;
+  
+  private int maxClauses = UNLIMITED;
+  
+  private long maxCost = UNLIMITED;
+  
+  private DocFreqSource docFreqs;
+  
+  private Strategy fallback = Strategy.TERMS;
+  
+  private String conceptField;
+  
+  /**
+   * Chooses the strategy for a term and its expansions. For
+   * {@link Strategy#TOP_K} the terms and boosts are reduced in place.
+   * 
+   * @param terms the term and its expansions
+   * @param boosts the boost of each term
+   * @return the strategy
+   */
+  public Strategy plan(List<String> terms, List<Float> boosts) {
+    long[] costs = costs(terms);
+    if (withinBudget(terms.size(), costs, terms.size())) {
+      return Strategy.ALL;
+    }
+    switch (fallback) {
+      case TOP_K:
+        selectTopK(terms, boosts, costs);
+        return Strategy.TOP_K;
+      case CONCEPT_ID:
+        return conceptField != null ? Strategy.CONCEPT_ID : Strategy.TERMS;
+      default:
+        return fallback;
+    }
+  }
+  
+  private boolean withinBudget(int clauses, long[] costs, int count) {
+    int clauseLimit = maxClauses != UNLIMITED ? maxClauses : BooleanQuery.getMaxClauseCount();
+    if (clauses > clauseLimit) {
+      return false;
+    }
+    if (costs == null) {
+      return true;
+    }
+    long cost = 0;
+    for (int i = 0; i < count; i++) {
+      cost += costs[i];
+    }
+    return cost <= maxCost;
+  }
+  
+  /**
+   * @return the document frequency of each term, or null if there is no
+   * cost budget
+   */
+  private long[] costs(List<String> terms) {
+    if (maxCost == UNLIMITED || docFreqs == null) {
+      return null;
+    }
+    long[] costs = new long[terms.size()];
+    try {
+      for (int i = 0; i < costs.length; i++) {
+        costs[i] = docFreqs.docFreq(terms.get(i));
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return costs;
+  }
+  
+  /**
+   * Keeps the first term (the original one) and the expansions with the
+   * highest boosts that fit into the budgets
+   */
+  private void selectTopK(List<String> terms, final List<Float> boosts, final long[] costs) {
+    Integer[] order = new Integer[terms.size() - 1];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i + 1;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        int c = Float.compare(boosts.get(b), boosts.get(a));
+        if (c == 0 && costs != null) {
+          c = Long.compare(costs[a], costs[b]);
+        }
+        return c;
+      }
+    });
+    
+    List<String> selectedTerms = new ArrayList<>();
+    List<Float> selectedBoosts = new ArrayList<>();
+    long[] selectedCosts = costs != null ? new long[terms.size()] : null;
+    selectedTerms.add(terms.get(0));
+    selectedBoosts.add(boosts.get(0));
+    if (costs != null) {
+      selectedCosts[0] = costs[0];
+    }
+    for (int i : order) {
+      if (selectedCosts != null) {
+        selectedCosts[selectedTerms.size()] = costs[i];
+      }
+      if (!withinBudget(selectedTerms.size() + 1, selectedCosts, selectedTerms.size() + 1)) {
+        break;
+      }
+      selectedTerms.add(terms.get(i));
+      selectedBoosts.add(boosts.get(i));
+    }
+    
+    terms.clear();
+    terms.addAll(selectedTerms);
+    boosts.clear();
+    boosts.addAll(selectedBoosts);
+  }
+  
+  /**
+   * Sets the maximum number of clauses for a term and its expansions
+   * 
+   * @param maxClauses the maximum, or {@link #UNLIMITED} for the current
+   * {@link BooleanQuery#getMaxClauseCount()}
+   */
+  public void setMaxClauses(int maxClauses) {
+    if (maxClauses < 1 && maxClauses != UNLIMITED) {
+      throw new IllegalArgumentException("maxClauses must be positive");
+    }
+    this.maxClauses = maxClauses;
+  }
+  
+  public int getMaxClauses() {
+    return maxClauses;
+  }
+  
+  /**
+   * Sets the maximum sum of the document frequencies of a term and its
+   * expansions
+   * 
+   * @param maxCost the maximum, or {@link #UNLIMITED}
+   * @param docFreqs the source of the document frequencies
+   */
+  public void setMaxCost(long maxCost, DocFreqSource docFreqs) {
+    if (maxCost < 0 && maxCost != UNLIMITED) {
+      throw new IllegalArgumentException("maxCost must not be negative");
+    }
+    this.maxCost = maxCost;
+    this.docFreqs = docFreqs;
+  }
+  
+  public long getMaxCost() {
+    return maxCost;
+  }
+  
+  /**
+   * Sets the strategy used when the budgets are exceeded
+   * 
+   * @param fallback any strategy but {@link Strategy#ALL}
+   */
+  public void setFallback(Strategy fallback) {
+    if (fallback == Strategy.ALL) {
+      throw new IllegalArgumentException("the fallback must reduce the expansions");
+    }
+    this.fallback = fallback;
+  }
+  
+  public Strategy getFallback() {
+    return fallback;
+  }
+  
+  /**
+   * Sets the field holding the IDs of the concepts of a document, used by
+   * {@link Strategy#CONCEPT_ID}. Without it, that strategy falls back to
+   * {@link Strategy#TERMS}.
+   * 
+   * @param conceptField the field or null
+   */
+  public void setConceptField(String conceptField) {
+    this.conceptField = conceptField;
+  }
+  
+  public String getConceptField() {
+    return conceptField;
+  }
+  
+  /**
+   * @return the settings the chosen strategies depend on, compared by value
+   * in the keys of {@link SKOSExpansionNodeCache}
+   */
+  List<Object> getSettingsKey() {
+    int clauseLimit = maxClauses != UNLIMITED ? maxClauses : BooleanQuery.getMaxClauseCount();
+    return Arrays.<Object>asList(clauseLimit, maxCost, docFreqs, fallback, conceptField);
+  }
+  
+}
@@ -19,13 +19,15 @@
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.CachingTokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
@@ -51,9 +53,19 @@
 import org.apache.lucene.queryparser.flexible.standard.nodes.RegexpQueryNode;
 import org.apache.lucene.queryparser.flexible.standard.nodes.StandardBooleanQueryNode;
 import org.apache.lucene.queryparser.flexible.standard.nodes.WildcardQueryNode;
+import org.apache.lucene.search.BooleanQuery;
 
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ConceptIdMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSExpansionSuppressor;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSPerFieldAnalyzer;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.builders.SKOSExpansionQueryNodeBuilder;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.nodes.SKOSExpansionQueryNode;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSExpansionPlanner.Strategy;
 
 /**
  * This processor verifies if {@link ConfigurationKeys#ANALYZER}
@@ -79,6 +91,15 @@
  */
 public class SKOSQueryNodeProcessor extends QueryNodeProcessorImpl {
 
+  /**
+   * How a term and its expansions at a single position are turned into a
+   * query: a boolean query with one clause per term, one blended query per
+   * distinct boost (synonym-style scoring), or a constant-score terms query
+   */
+  public enum ExpansionQueryMode {
+    BOOLEAN, SYNONYM, TERMS
+  }
+
   private Analyzer analyzer;
 
   private boolean positionIncrementsEnabled;
@@ -87,6 +108,19 @@ public class SKOSQueryNodeProcessor extends QueryNodeProcessorImpl {
 
   private Map<SKOSType,Float> boosts;
 
+  private Set<SKOSType> types;
+
+  private SKOSExpansionSuppressor suppressor;
+
+  private ExpansionQueryMode expansionQueryMode = ExpansionQueryMode.BOOLEAN;
+
+  private SKOSExpansionNodeCache expansionCache;
+
+  private SKOSExpansionPlanner planner = new SKOSExpansionPlanner();
+
+  /* the tokens of the text being expanded */
+  private final TokenBuffer tokens = new TokenBuffer();
+
   public SKOSQueryNodeProcessor(Analyzer analyzer) {
     this.analyzer = analyzer;
   }
@@ -122,269 +156,203 @@ protected QueryNode postProcessNode(QueryNode node) throws QueryNodeException {
         && !(node.getParent() instanceof RangeQueryNode)) {
 
       FieldQueryNode fieldNode = ((FieldQueryNode) node);
-      String text = fieldNode.getTextAsString();
-      String field = fieldNode.getFieldAsString();
-
-      CachingTokenFilter buffer = null;
-      PositionIncrementAttribute posIncrAtt = null;
-      int numTokens = 0;
-      int positionCount = 0;
-      boolean severalTokensAtSamePosition = false;
-      
+
+      if (expansionCache == null) {
+        return expand(fieldNode);
+      }
+
+      SKOSExpansionNodeCache.Key key = new SKOSExpansionNodeCache.Key(
+          fieldNode.getFieldAsString(), fieldNode.getTextAsString(), boosts,
+          getEngineVersion(fieldNode.getFieldAsString()),
+          node instanceof QuotedFieldQueryNode, positionIncrementsEnabled,
+          defaultOperator, expansionQueryMode,
+          suppressor != null ? suppressor.getSettingsKey() : null,
+          planner != null ? planner.getSettingsKey() : null, types);
+      QueryNode expanded = expansionCache.get(key);
+      if (expanded == null) {
+        expanded = expand(fieldNode);
+        expansionCache.put(key, expanded);
+      }
+      return expanded;
+    }
+
+    return node;
+  }
+
+  /**
+   * Applies the analyzer to the text of a node and builds the node subtree
+   * of the resulting terms. The tokens are read once into a
+   * {@link TokenBuffer}; the shape of the subtree is decided when the stream
+   * is exhausted.
+   */
+  private QueryNode expand(FieldQueryNode fieldNode) {
+    String text = fieldNode.getTextAsString();
+    String field = fieldNode.getFieldAsString();
+
+    tokens.clear();
+    // boosts are only applied to the output of SKOS filters
+    boolean typed;
+    
+    try (TokenStream source = this.analyzer.tokenStream(field, text)) {
+      source.reset();
+
+      if (!source.hasAttribute(CharTermAttribute.class)) {
+        return new NoTokenFoundQueryNode();
+      }
+
+      CharTermAttribute termAtt = source.getAttribute(CharTermAttribute.class);
+      PositionIncrementAttribute posIncrAtt = source.hasAttribute(PositionIncrementAttribute.class)
+          ? source.getAttribute(PositionIncrementAttribute.class) : null;
+      SKOSTypeAttribute skosAttr = source.hasAttribute(SKOSTypeAttribute.class)
+          ? source.getAttribute(SKOSTypeAttribute.class) : null;
+      typed = skosAttr != null;
+      // a query for a concept matches documents indexed with the concept as
+      // ancestor, the ancestors of the query concept are not searched
+      boolean skipAncestors = typed && getConceptIdMode(field) == ConceptIdMode.ANCESTORS;
+
       try {
-        try (TokenStream source = this.analyzer.tokenStream(field, text)) {
-          buffer = new CachingTokenFilter(source);
-          buffer.reset();
 
-          if (buffer.hasAttribute(PositionIncrementAttribute.class)) {
-            posIncrAtt = buffer.getAttribute(PositionIncrementAttribute.class);
+        while (source.incrementToken()) {
+          if (skipAncestors && skosAttr.getSkosType() == SKOSType.BROADERTRANSITIVE
+              && (posIncrAtt == null || posIncrAtt.getPositionIncrement() == 0)) {
+            continue;
           }
-  
-          try {
-  
-            while (buffer.incrementToken()) {
-              numTokens++;
-              int positionIncrement = (posIncrAtt != null) ? posIncrAtt
-                  .getPositionIncrement() : 1;
-              if (positionIncrement != 0) {
-                positionCount += positionIncrement;
-  
-              } else {
-                severalTokensAtSamePosition = true;
-              }
-  
-            }
-  
-          } catch (IOException e) {
-            // ignore
+          if (types != null && typed && skosAttr.getSkosType() != null
+              && !types.contains(skosAttr.getSkosType())) {
+            continue;
           }
-
-          // rewind the buffer stream
-          buffer.reset();//will never through on subsequent reset calls
-        } catch (IOException e) {
-          throw new RuntimeException(e);
+          tokens.add(termAtt,
+              posIncrAtt != null ? posIncrAtt.getPositionIncrement() : 1,
+              skosAttr != null ? skosAttr.getSkosType() : null);
         }
+        source.end();
 
-        if (!buffer.hasAttribute(CharTermAttribute.class)) {
-          return new NoTokenFoundQueryNode();
-        }
-  
-        CharTermAttribute termAtt = buffer.getAttribute(CharTermAttribute.class);
-  
-        if (numTokens == 0) {
-          return new NoTokenFoundQueryNode();
-  
-        } else if (numTokens == 1) {
-          String term = null;
-          try {
-            boolean hasNext;
-            hasNext = buffer.incrementToken();
-            assert hasNext == true;
-            term = termAtt.toString();
-  
-          } catch (IOException e) {
-            // safe to ignore, because we know the number of tokens
-          }
-  
-          fieldNode.setText(term);
-  
-          return fieldNode;
-  
-        } else if (severalTokensAtSamePosition || !(node instanceof QuotedFieldQueryNode)) {
-          if (positionCount == 1 || !(node instanceof QuotedFieldQueryNode)) {
-            // no phrase query:
-            
-            if (positionCount == 1) {
-              // simple case: only one position, with synonyms
-              LinkedList<QueryNode> children = new LinkedList<>();
-              
-              for (int i = 0; i < numTokens; i++) {
-                String term = null;
-                try {
-                  boolean hasNext = buffer.incrementToken();
-                  assert hasNext == true;
-                  term = termAtt.toString();
-                  
-                } catch (IOException e) {
-                  // safe to ignore, because we know the number of tokens
-                }
-
-                if (buffer.hasAttribute(SKOSTypeAttribute.class) && boosts != null) {
-
-                  SKOSTypeAttribute skosAttr = buffer.getAttribute(SKOSTypeAttribute.class);
-
-                  children.add(new BoostQueryNode(new FieldQueryNode(field, term, -1, -1), getBoost(skosAttr.getSkosType())));
-
-                } else {
-
-                  children.add(new FieldQueryNode(field, term, -1, -1));
-
-                }
-                
-              }
-              return new GroupQueryNode(
-                  new StandardBooleanQueryNode(children, positionCount==1));
-            } else {
-              // multiple positions
-              QueryNode q = new StandardBooleanQueryNode(Collections.<QueryNode>emptyList(),false);
-              QueryNode currentQuery = null;
-              for (int i = 0; i < numTokens; i++) {
-                String term = null;
-                try {
-                  boolean hasNext = buffer.incrementToken();
-                  assert hasNext == true;
-                  term = termAtt.toString();
-                } catch (IOException e) {
-                  // safe to ignore, because we know the number of tokens
-                }
-                if (posIncrAtt != null && posIncrAtt.getPositionIncrement() == 0) {
-                  if (!(currentQuery instanceof BooleanQueryNode)) {
-                    QueryNode t = currentQuery;
-                    currentQuery = new StandardBooleanQueryNode(Collections.<QueryNode>emptyList(), true);
-                    ((BooleanQueryNode)currentQuery).add(t);
-                  }
-                  ((BooleanQueryNode)currentQuery).add(new FieldQueryNode(field, term, -1, -1));
-                } else {
-                  if (currentQuery != null) {
-                    if (this.defaultOperator == Operator.OR) {
-                      q.add(currentQuery);
-                    } else {
-                      q.add(new ModifierQueryNode(currentQuery, Modifier.MOD_REQ));
-                    }
-                  }
-                  currentQuery = new FieldQueryNode(field, term, -1, -1);
-                }
-              }
-              if (this.defaultOperator == Operator.OR) {
-                q.add(currentQuery);
-              } else {
-                q.add(new ModifierQueryNode(currentQuery, Modifier.MOD_REQ));
-              }
-              
-              if (q instanceof BooleanQueryNode) {
-                q = new GroupQueryNode(q);
-              }
-              return q;
+      } catch (IOException e) {
+        // ignore
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+
+    int numTokens = tokens.size();
+    int positionCount = tokens.getPositionCount();
+
+    if (numTokens == 0) {
+      return new NoTokenFoundQueryNode();
+
+    } else if (numTokens == 1) {
+      fieldNode.setText(tokens.getTerm(0));
+
+      return fieldNode;
+
+    } else if (tokens.hasSeveralTokensAtSamePosition() || !(fieldNode instanceof QuotedFieldQueryNode)) {
+      if (positionCount == 1 || !(fieldNode instanceof QuotedFieldQueryNode)) {
+        // no phrase query:
+        
+        if (positionCount == 1) {
+          // simple case: only one position, with synonyms
+          return expand(field, tokens, 0, numTokens, typed);
+        } else {
+          // multiple positions, each planned like a single one
+          QueryNode q = new StandardBooleanQueryNode(Collections.<QueryNode>emptyList(),false);
+          int start = 0;
+          while (start < numTokens) {
+            int end = start + 1;
+            while (end < numTokens && tokens.getPositionIncrement(end) == 0) {
+              end++;
             }
-          } else {
-            // phrase query:
-            MultiPhraseQueryNode mpq = new MultiPhraseQueryNode();
-  
-            List<FieldQueryNode> multiTerms = new ArrayList<>();
-            int position = -1;
-            int i = 0;
-            int termGroupCount = 0;
-            for (; i < numTokens; i++) {
-              String term = null;
-              int positionIncrement = 1;
-              try {
-                boolean hasNext = buffer.incrementToken();
-                assert hasNext == true;
-                term = termAtt.toString();
-                if (posIncrAtt != null) {
-                  positionIncrement = posIncrAtt.getPositionIncrement();
-                }
-  
-              } catch (IOException e) {
-                // safe to ignore, because we know the number of tokens
-              }
-  
-              if (positionIncrement > 0 && multiTerms.size() > 0) {
-  
-                for (FieldQueryNode termNode : multiTerms) {
-  
-                  if (this.positionIncrementsEnabled) {
-                    termNode.setPositionIncrement(position);
-                  } else {
-                    termNode.setPositionIncrement(termGroupCount);
-                  }
-  
-                  mpq.add(termNode);
-  
-                }
-  
-                // Only increment once for each "group" of
-                // terms that were in the same position:
-                termGroupCount++;
-  
-                multiTerms.clear();
-  
-              }
-  
-              position += positionIncrement;
-              multiTerms.add(new FieldQueryNode(field, term, -1, -1));
-  
+            QueryNode currentQuery = expand(field, tokens, start, end, typed);
+            if (this.defaultOperator == Operator.OR) {
+              q.add(currentQuery);
+            } else {
+              q.add(new ModifierQueryNode(currentQuery, Modifier.MOD_REQ));
             }
-  
+            start = end;
+          }
+          
+          if (q instanceof BooleanQueryNode) {
+            q = new GroupQueryNode(q);
+          }
+          return q;
+        }
+      } else {
+        // phrase query:
+        MultiPhraseQueryNode mpq = new MultiPhraseQueryNode();
+
+        List<FieldQueryNode> multiTerms = new ArrayList<>();
+        int position = -1;
+        int termGroupCount = 0;
+        for (int i = 0; i < numTokens; i++) {
+          int positionIncrement = tokens.getPositionIncrement(i);
+
+          if (positionIncrement > 0 && multiTerms.size() > 0) {
+
             for (FieldQueryNode termNode : multiTerms) {
-  
+
               if (this.positionIncrementsEnabled) {
                 termNode.setPositionIncrement(position);
-  
               } else {
                 termNode.setPositionIncrement(termGroupCount);
               }
-  
+
               mpq.add(termNode);
-  
-            }
-  
-            return mpq;
-  
-          }
-  
-        } else {
-  
-          TokenizedPhraseQueryNode pq = new TokenizedPhraseQueryNode();
-  
-          int position = -1;
-  
-          for (int i = 0; i < numTokens; i++) {
-            String term = null;
-            int positionIncrement = 1;
-  
-            try {
-              boolean hasNext = buffer.incrementToken();
-              assert hasNext == true;
-              term = termAtt.toString();
-  
-              if (posIncrAtt != null) {
-                positionIncrement = posIncrAtt.getPositionIncrement();
-              }
-  
-            } catch (IOException e) {
-              // safe to ignore, because we know the number of tokens
-            }
-  
-            FieldQueryNode newFieldNode = new FieldQueryNode(field, term, -1, -1);
-  
-            if (this.positionIncrementsEnabled) {
-              position += positionIncrement;
-              newFieldNode.setPositionIncrement(position);
-  
-            } else {
-              newFieldNode.setPositionIncrement(i);
+
             }
-  
-            pq.add(newFieldNode);
-  
+
+            // Only increment once for each "group" of
+            // terms that were in the same position:
+            termGroupCount++;
+
+            multiTerms.clear();
+
           }
-  
-          return pq;
-  
+
+          position += positionIncrement;
+          multiTerms.add(new FieldQueryNode(field, tokens.getTerm(i), -1, -1));
+
         }
-      } finally {
-        if (buffer != null) {
-          try {
-            buffer.close();
-          } catch (IOException e) {
-            // safe to ignore
+
+        for (FieldQueryNode termNode : multiTerms) {
+
+          if (this.positionIncrementsEnabled) {
+            termNode.setPositionIncrement(position);
+
+          } else {
+            termNode.setPositionIncrement(termGroupCount);
           }
+
+          mpq.add(termNode);
+
+        }
+
+        return mpq;
+
+      }
+
+    } else {
+
+      TokenizedPhraseQueryNode pq = new TokenizedPhraseQueryNode();
+
+      int position = -1;
+
+      for (int i = 0; i < numTokens; i++) {
+        FieldQueryNode newFieldNode = new FieldQueryNode(field, tokens.getTerm(i), -1, -1);
+
+        if (this.positionIncrementsEnabled) {
+          position += tokens.getPositionIncrement(i);
+          newFieldNode.setPositionIncrement(position);
+
+        } else {
+          newFieldNode.setPositionIncrement(i);
         }
+
+        pq.add(newFieldNode);
+
       }
-    }
 
-    return node;
+      return pq;
+
+    }
   }
 
   @Override
@@ -402,6 +370,219 @@ protected List<QueryNode> setChildrenOrder(List<QueryNode> children)
 
   }
 
+  /**
+   * Builds the query for the tokens at one position, a term and its
+   * expansions, with the strategy chosen by the planner
+   */
+  private QueryNode expand(String field, TokenBuffer tokens, int start, int end, boolean typed) {
+    if (end - start == 1) {
+      return new FieldQueryNode(field, tokens.getTerm(start), -1, -1);
+    }
+    ConceptIdMode conceptIdMode = getConceptIdMode(field);
+    List<String> terms = new ArrayList<>(end - start);
+    List<Float> termBoosts = new ArrayList<>(end - start);
+    
+    for (int i = start; i < end; i++) {
+      String term = tokens.getTerm(i);
+      SKOSType type = tokens.getType(i);
+      float weight = getSuppressionWeight(term, type);
+
+      if (weight == 0) {
+        // too common expansion
+        continue;
+      }
+
+      terms.add(term);
+      // concept IDs are not boosted by type
+      termBoosts.add(typed && boosts != null && conceptIdMode == ConceptIdMode.NONE
+          ? getBoost(type) * weight : weight);
+      
+    }
+    
+    Strategy strategy = planner != null ? planner.plan(terms, termBoosts) : Strategy.ALL;
+    Collection<String> conceptIds = strategy == Strategy.CONCEPT_ID
+        ? getConceptIds(field, terms.get(0)) : null;
+    if (conceptIds != null && conceptIds.isEmpty()) {
+      strategy = Strategy.TERMS;
+    }
+    
+    QueryNode expansion;
+    if (strategy == Strategy.TERMS) {
+      expansion = new SKOSExpansionQueryNode(field, terms, termBoosts, ExpansionQueryMode.TERMS);
+    } else if (strategy == Strategy.CONCEPT_ID) {
+      LinkedList<QueryNode> children = new LinkedList<>();
+      children.add(new FieldQueryNode(field, terms.get(0), -1, -1));
+      for (String conceptId : conceptIds) {
+        children.add(new FieldQueryNode(planner.getConceptField(), conceptId, -1, -1));
+      }
+      expansion = new GroupQueryNode(new StandardBooleanQueryNode(children, true));
+    } else if (expansionQueryMode != ExpansionQueryMode.BOOLEAN) {
+      expansion = new SKOSExpansionQueryNode(field, terms, termBoosts, expansionQueryMode);
+    } else {
+      LinkedList<QueryNode> children = new LinkedList<>();
+      for (int i = 0; i < terms.size(); i++) {
+        QueryNode termNode = new FieldQueryNode(field, terms.get(i), -1, -1);
+        float boost = termBoosts.get(i);
+        children.add(boost != 1 ? new BoostQueryNode(termNode, boost) : termNode);
+      }
+      expansion = new GroupQueryNode(new StandardBooleanQueryNode(children, true));
+    }
+    
+    if (planner != null) {
+      expansion.setTag(SKOSExpansionPlanner.STRATEGY_TAG, strategy);
+    }
+    return expansion;
+  }
+
+  /**
+   * Returns the weight factor of an expanded term, 1 for original terms or
+   * if no suppressor is set
+   */
+  private float getSuppressionWeight(String term, SKOSType type) {
+    if (suppressor == null || type == null) {
+      return 1;
+    }
+    try {
+      return suppressor.getWeight(term);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Sets the document frequency based suppression of expanded terms. Too
+   * common expansions are dropped from (or down-weighted in) the generated
+   * boolean queries; phrase queries are left as they are.
+   *
+   * @param suppressor the suppressor or null
+   */
+  public void setSuppressor(SKOSExpansionSuppressor suppressor) {
+    this.suppressor = suppressor;
+  }
+
+  public SKOSExpansionSuppressor getSuppressor() {
+    return suppressor;
+  }
+
+  /**
+   * Sets how a term and its expansions at a single position are turned into
+   * a query. Modes other than {@link ExpansionQueryMode#BOOLEAN} create a
+   * {@link SKOSExpansionQueryNode}, which needs the
+   * {@link SKOSExpansionQueryNodeBuilder} to be registered with the query
+   * builder.
+   *
+   * @param expansionQueryMode the mode
+   */
+  public void setExpansionQueryMode(ExpansionQueryMode expansionQueryMode) {
+    this.expansionQueryMode = expansionQueryMode;
+  }
+
+  public ExpansionQueryMode getExpansionQueryMode() {
+    return expansionQueryMode;
+  }
+
+  /**
+   * Returns the analyzer expanding a field, or null if it is not known
+   */
+  private SKOSAnalyzer getSKOSAnalyzer(String field) {
+    if (analyzer instanceof SKOSAnalyzer) {
+      return (SKOSAnalyzer) analyzer;
+    } else if (analyzer instanceof SKOSPerFieldAnalyzer) {
+      return ((SKOSPerFieldAnalyzer) analyzer).getFieldAnalyzer(field);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the engine expanding a field, or null if the analyzer does not
+   * expose its engine
+   */
+  private SKOSEngine getEngine(String field) {
+    SKOSAnalyzer skosAnalyzer = getSKOSAnalyzer(field);
+    return skosAnalyzer != null ? skosAnalyzer.getSKOSEngine() : null;
+  }
+
+  private ConceptIdMode getConceptIdMode(String field) {
+    SKOSAnalyzer skosAnalyzer = getSKOSAnalyzer(field);
+    return skosAnalyzer != null ? skosAnalyzer.getConceptIdMode() : ConceptIdMode.NONE;
+  }
+
+  /**
+   * Returns the version of the engine expanding a field, or -1 if the
+   * analyzer does not expose its engine
+   */
+  private long getEngineVersion(String field) {
+    SKOSEngine engine = getEngine(field);
+    return engine instanceof ExtendedSKOSEngine ? ((ExtendedSKOSEngine) engine).getVersion() : -1;
+  }
+
+  /**
+   * Returns the IDs of the concepts labeled with a term, empty if the
+   * engine is unknown
+   */
+  private Collection<String> getConceptIds(String field, String term) {
+    SKOSEngine engine = getEngine(field);
+    if (engine == null) {
+      return Collections.emptySet();
+    }
+    try {
+      return engine.getConcepts(term);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Sets the planner choosing a cheaper representation for terms with too
+   * many or too costly expansions; null expands all terms as configured,
+   * which may exceed {@link BooleanQuery#getMaxClauseCount()}.
+   *
+   * @param planner the planner or null
+   */
+  public void setPlanner(SKOSExpansionPlanner planner) {
+    this.planner = planner;
+  }
+
+  public SKOSExpansionPlanner getPlanner() {
+    return planner;
+  }
+
+  /**
+   * Sets the cache of expanded node subtrees. Entries are keyed on the
+   * version of the engine, which is only known if the analyzer is a
+   * {@link SKOSAnalyzer} or {@link SKOSPerFieldAnalyzer}; with other
+   * analyzers the cache has to be cleared when the engine is reloaded.
+   *
+   * @param expansionCache the cache or null
+   */
+  public void setExpansionCache(SKOSExpansionNodeCache expansionCache) {
+    this.expansionCache = expansionCache;
+  }
+
+  public SKOSExpansionNodeCache getExpansionCache() {
+    return expansionCache;
+  }
+
+  /**
+   * Restricts the expansions to the given SKOS types; terms of other types
+   * emitted by the analyzer are left out of the query
+   *
+   * @param types the types or null for all
+   */
+  public void setTypes(Set<SKOSType> types) {
+    if (types != null) {
+      // a copy, it is part of the keys of cached expansions
+      this.types = EnumSet.noneOf(SKOSType.class);
+      this.types.addAll(types);
+    } else {
+      this.types = null;
+    }
+  }
+
+  public Set<SKOSType> getTypes() {
+    return types;
+  }
+
   public void setBoosts(Map<SKOSType,Float> boosts) {
     this.boosts = boosts;
   }
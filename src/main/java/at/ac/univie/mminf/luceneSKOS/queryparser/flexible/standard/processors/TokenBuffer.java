@@ -0,0 +1,126 @@
+package at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors;
+
+/**
+ * Copyright 2012 Flavio Martins 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+
+/**
+ * The tokens of an analyzed query text, kept in primitive arrays: the chars
+ * of all terms back to back, and per token the term bounds, the position
+ * increment and the SKOS type.
+ * 
+ * The buffer is meant to be reused: {@link #clear()} keeps the arrays, they
+ * are only reallocated when they have to grow.
+ */
+final class TokenBuffer {
+  
+  private static final int INITIAL_CAPACITY = 16;
+  
+  private static final SKOSType[] TYPES = SKOSType.values();
+  
+  private char[] chars = new char[256];
+  
+  private int charsLength;
+  
+  /* token -> term start, term length, position increment, type ordinal or -1 */
+  private int[] starts = new int[INITIAL_CAPACITY];
+  
+  private int[] lengths = new int[INITIAL_CAPACITY];
+  
+  private int[] positionIncrements = new int[INITIAL_CAPACITY];
+  
+  private byte[] types = new byte[INITIAL_CAPACITY];
+  
+  private int size;
+  
+  private int positionCount;
+  
+  private boolean severalTokensAtSamePosition;
+  
+  void clear() {
+    size = 0;
+    charsLength = 0;
+    positionCount = 0;
+    severalTokensAtSamePosition = false;
+  }
+  
+  /**
+   * Appends the current token
+   * 
+   * @param termAtt the term
+   * @param positionIncrement the position increment
+   * @param type the SKOS type, or null for original terms
+   */
+  void add(CharTermAttribute termAtt, int positionIncrement, SKOSType type) {
+    int length = termAtt.length();
+    if (size == starts.length) {
+      int capacity = size * 2;
+      starts = Arrays.copyOf(starts, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      positionIncrements = Arrays.copyOf(positionIncrements, capacity);
+      types = Arrays.copyOf(types, capacity);
+    }
+    if (charsLength + length > chars.length) {
+      chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsLength + length));
+    }
+    System.arraycopy(termAtt.buffer(), 0, chars, charsLength, length);
+    starts[size] = charsLength;
+    lengths[size] = length;
+    positionIncrements[size] = positionIncrement;
+    types[size] = type != null ? (byte) type.ordinal() : -1;
+    charsLength += length;
+    size++;
+    
+    if (positionIncrement != 0) {
+      positionCount += positionIncrement;
+    } else {
+      severalTokensAtSamePosition = true;
+    }
+  }
+  
+  int size() {
+    return size;
+  }
+  
+  int getPositionCount() {
+    return positionCount;
+  }
+  
+  boolean hasSeveralTokensAtSamePosition() {
+    return severalTokensAtSamePosition;
+  }
+  
+  String getTerm(int token) {
+    return new String(chars, starts[token], lengths[token]);
+  }
+  
+  int getPositionIncrement(int token) {
+    return positionIncrements[token];
+  }
+  
+  /**
+   * @return the SKOS type, or null for original terms
+   */
+  SKOSType getType(int token) {
+    return types[token] >= 0 ? TYPES[types[token]] : null;
+  }
+  
+}
@@ -0,0 +1,35 @@
+package at.ac.univie.mminf.luceneSKOS.search;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.util.BytesRef;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSPayloads;
+
+/**
+ * A DefaultSimilarity that reads the weights written by the SKOS filters in
+ * WEIGHT payload mode. Set it on the IndexSearcher to let
+ * {@link SKOSWeightedTermQuery} score expanded terms by their weight.
+ */
+public class SKOSWeightSimilarity extends DefaultSimilarity {
+
+    @Override
+    public float scorePayload(int doc, int start, int end, BytesRef payload) {
+        return SKOSPayloads.decodeWeight(payload);
+    }
+}
@@ -0,0 +1,43 @@
+package at.ac.univie.mminf.luceneSKOS.search;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.payloads.MaxPayloadFunction;
+import org.apache.lucene.search.payloads.PayloadScoreQuery;
+import org.apache.lucene.search.spans.SpanTermQuery;
+
+/**
+ * A term query scoring matches by the weight in the payload of the matching
+ * term, as written by the SKOS filters in WEIGHT payload mode. Original
+ * tokens carry no weight and score as full matches, expanded terms are
+ * graded by their SKOS type and hierarchy distance. If a term occurs several
+ * times in a document the highest weight counts. The weight is multiplied
+ * with the usual term score.
+ *
+ * The weights are read by {@link SKOSWeightSimilarity}, which has to be set
+ * on the IndexSearcher.
+ */
+public class SKOSWeightedTermQuery extends PayloadScoreQuery {
+
+    /**
+     * @param term the term
+     */
+    public SKOSWeightedTermQuery(Term term) {
+        super(new SpanTermQuery(term), new MaxPayloadFunction());
+    }
+}
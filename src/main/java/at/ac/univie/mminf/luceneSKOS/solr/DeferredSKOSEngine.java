@@ -0,0 +1,379 @@
+package at.ac.univie.mminf.luceneSKOS.solr;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+
+/**
+ * An engine standing in for a registered one, which may still be built in
+ * the background or be replaced by a reloaded one. Until the build is done,
+ * lookups follow the {@link Policy}; afterwards they go to the built engine.
+ *
+ * The version changes when the build is done or the engine is replaced, so
+ * filters drop the expansions they cached before.
+ *
+ * Each lookup holds a reference on the lease it runs against. A replaced
+ * lease is closed once the lookups in progress on it are done, so token
+ * streams and query parsers never see the previous engine closed under them.
+ */
+public class DeferredSKOSEngine implements ExtendedSKOSEngine, Closeable {
+
+    /**
+     * What lookups do while the engine is not ready
+     */
+    public enum Policy {
+        /** wait for the build */
+        BLOCK,
+        /** find nothing, tokens pass through unexpanded */
+        PASSTHROUGH,
+        /** throw an IOException */
+        FAIL
+    }
+
+    private static final long NOT_READY_VERSION = -1;
+
+    private volatile LeaseRef current;
+
+    private final Policy policy;
+
+    private boolean closed;
+
+    /**
+     * @param lease the lease on the engine being built
+     * @param policy the policy while the engine is not ready
+     */
+    public DeferredSKOSEngine(SKOSEngineRegistry.Lease lease, Policy policy) {
+        this.current = new LeaseRef(lease);
+        this.policy = policy;
+    }
+
+    /**
+     * Switches to another engine. The previous lease is closed as soon as
+     * the lookups in progress on it are done.
+     *
+     * @param lease the lease on the new engine
+     * @return false if this engine has been closed; the lease is then closed
+     * at once
+     */
+    public synchronized boolean setLease(SKOSEngineRegistry.Lease lease) {
+        if (closed) {
+            lease.close();
+            return false;
+        }
+        LeaseRef previous = current;
+        current = new LeaseRef(lease);
+        previous.decRef();
+        return true;
+    }
+
+    /**
+     * @return the lease on the current engine
+     */
+    public SKOSEngineRegistry.Lease getLease() {
+        return current.lease;
+    }
+
+    /**
+     * Gives up the current lease once the lookups in progress are done;
+     * further lookups fail
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            current.decRef();
+        }
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Takes a reference on the current lease, retrying if it is replaced
+     * concurrently
+     */
+    private LeaseRef acquire() throws IOException {
+        while (true) {
+            LeaseRef ref = current;
+            if (ref.tryIncRef()) {
+                return ref;
+            }
+            if (ref == current) {
+                throw new IOException("The SKOS engine for " + ref.lease.getKey() + " has been closed");
+            }
+        }
+    }
+
+    /**
+     * @return the built engine, or null if lookups should find nothing
+     */
+    private SKOSEngine engine(SKOSEngineRegistry.Lease lease) throws IOException {
+        SKOSEngine engine = lease.getEngine();
+        if (engine != null) {
+            return engine;
+        }
+        switch (lease.getState()) {
+            case FAILED:
+                // a failed build is reported with any policy
+                return lease.awaitEngine();
+            case READY:
+                return lease.getEngine();
+            default:
+                break;
+        }
+        switch (policy) {
+            case BLOCK:
+                return lease.awaitEngine();
+            case FAIL:
+                throw new IOException("The SKOS engine for " + lease.getKey() + " is not ready, building for "
+                    + lease.getBuildTime() + " ms");
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Collection<String> getPrefLabels(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getPrefLabels(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getAltLabels(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getAltLabels(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getHiddenLabels(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getHiddenLabels(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getRelatedLabels(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getRelatedLabels(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getRelatedConcepts(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getRelatedConcepts(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getBroaderConcepts(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getBroaderConcepts(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getNarrowerConcepts(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getNarrowerConcepts(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getBroaderLabels(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getBroaderLabels(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getNarrowerLabels(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getNarrowerLabels(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getBroaderTransitiveConcepts(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getBroaderTransitiveConcepts(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getNarrowerTransitiveConcepts(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getNarrowerTransitiveConcepts(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getBroaderTransitiveLabels(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getBroaderTransitiveLabels(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getNarrowerTransitiveLabels(String conceptURI) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getNarrowerTransitiveLabels(conceptURI) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getConcepts(String label) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getConcepts(label) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getAllConcepts() throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            if (engine != null && !(engine instanceof ExtendedSKOSEngine)) {
+                throw new UnsupportedOperationException("The SKOS engine does not list its concepts");
+            }
+            return engine != null ? ((ExtendedSKOSEngine) engine).getAllConcepts() : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public Collection<String> getAltTerms(String label) throws IOException {
+        LeaseRef ref = acquire();
+        try {
+            SKOSEngine engine = engine(ref.lease);
+            return engine != null ? engine.getAltTerms(label) : Collections.<String>emptyList();
+        } finally {
+            ref.decRef();
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        SKOSEngine engine = current.lease.getEngine();
+        if (engine == null) {
+            return NOT_READY_VERSION;
+        }
+        // engines without versions are assumed not to change
+        return engine instanceof ExtendedSKOSEngine ? ((ExtendedSKOSEngine) engine).getVersion() : 0;
+    }
+
+    /**
+     * A lease and the number of its users: one for being the current lease
+     * plus one per lookup in progress
+     */
+    private static final class LeaseRef {
+
+        private final SKOSEngineRegistry.Lease lease;
+
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        private LeaseRef(SKOSEngineRegistry.Lease lease) {
+            this.lease = lease;
+        }
+
+        /**
+         * @return false if the lease is already closed
+         */
+        private boolean tryIncRef() {
+            int count;
+            while ((count = refCount.get()) > 0) {
+                if (refCount.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void decRef() {
+            if (refCount.decrementAndGet() == 0) {
+                lease.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,626 @@
+package at.ac.univie.mminf.luceneSKOS.solr;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngineFactory;
+
+/**
+ * A process-wide, reference-counted registry of SKOS engines.
+ *
+ * Field types and cores referencing the same vocabulary share one engine
+ * instead of parsing and indexing the vocabulary once each. Every user
+ * {@link #acquire acquires} a {@link Lease} and closes it when done; the
+ * engine is closed and dropped when its last lease is closed.
+ *
+ * Engines are built either by the first caller, or with
+ * {@link #acquireAsync} on a background thread while the caller goes on.
+ *
+ * Each registered engine gets an index directory of its own below the
+ * index path of its key, named after the checksum, the languages and the
+ * label analyzer. No two registered engines share a directory, so a rebuild
+ * never overwrites an index that is still read, and the directory is deleted
+ * when the engine is dropped.
+ *
+ * Engines handed to filters and processors are wrapped with
+ * {@link #createEngine}; {@link #reload} switches all of them from one
+ * version of a vocabulary to the next, in every core.
+ */
+public final class SKOSEngineRegistry {
+
+    private final static Logger logger = Logger.getLogger(SKOSEngineRegistry.class.getName());
+
+    private static final SKOSEngineRegistry INSTANCE = new SKOSEngineRegistry();
+
+    /**
+     * Builds the engine for a key not yet in the registry
+     */
+    public interface EngineLoader {
+        /**
+         * @param indexDirectory the directory reserved for the index of the
+         * engine, ending with a separator; deleted when the engine is dropped
+         * @return the engine
+         * @throws IOException if the engine could not be built
+         */
+        SKOSEngine load(String indexDirectory) throws IOException;
+    }
+
+    /**
+     * The build state of a registered engine; CLOSED once the lease on it
+     * has been given up
+     */
+    public enum State {
+        BUILDING, READY, FAILED, CLOSED
+    }
+
+    private final Map<Key, Entry> entries = new HashMap<>();
+
+    /* the engines switched by reload(); dropped when closed or no longer referenced */
+    private final Set<DeferredSKOSEngine> engines =
+        Collections.newSetFromMap(new WeakHashMap<DeferredSKOSEngine, Boolean>());
+
+    /* the index directories of the registered engines, including dropped ones not yet deleted */
+    private final Set<String> indexDirectories = new HashSet<>();
+
+    private final ExecutorService buildExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "skos-engine-build-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * @return the registry shared by the whole JVM
+     */
+    public static SKOSEngineRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a loader building an engine from a vocabulary file
+     *
+     * @param file the vocabulary file
+     * @param languages the languages considered, or null for all
+     * @param labelAnalyzer the analyzer normalizing the labels
+     * @return the loader
+     */
+    public static EngineLoader fileLoader(final String file, final List<String> languages,
+            final Analyzer labelAnalyzer) {
+        return new EngineLoader() {
+            @Override
+            public SKOSEngine load(String indexDirectory) throws IOException {
+                return SKOSEngineFactory.getSKOSEngine(indexDirectory, file, languages, labelAnalyzer);
+            }
+        };
+    }
+
+    /**
+     * Returns a lease on the engine registered for the given key, building
+     * the engine with the loader if there is none. Concurrent callers for the
+     * same key wait for a single build.
+     *
+     * @param key the key identifying the engine
+     * @param loader builds the engine if needed
+     * @return a lease, to be closed when the engine is no longer used
+     * @throws IOException if the engine could not be built
+     */
+    public Lease acquire(Key key, EngineLoader loader) throws IOException {
+        Lease lease = register(key);
+        if (lease.owner) {
+            build(lease.entry, loader);
+        }
+        try {
+            lease.awaitEngine();
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        return lease;
+    }
+
+    /**
+     * Returns a lease on the engine registered for the given key at once; if
+     * there is none, it is built with the loader on a background thread.
+     *
+     * @param key the key identifying the engine
+     * @param loader builds the engine if needed
+     * @return a lease, to be closed when the engine is no longer used
+     */
+    public Lease acquireAsync(Key key, final EngineLoader loader) {
+        final Lease lease = register(key);
+        if (lease.owner) {
+            buildExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    build(lease.entry, loader);
+                }
+            });
+        }
+        return lease;
+    }
+
+    /**
+     * Wraps a lease in an engine that is switched to the new version of the
+     * vocabulary by {@link #reload}
+     *
+     * @param lease the lease, closed with the engine
+     * @param policy the policy while the engine is not ready
+     * @return the engine
+     */
+    public DeferredSKOSEngine createEngine(Lease lease, DeferredSKOSEngine.Policy policy) {
+        DeferredSKOSEngine engine = new DeferredSKOSEngine(lease, policy);
+        synchronized (this) {
+            engines.add(engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Builds the engine for a new version of a vocabulary and switches every
+     * engine created by {@link #createEngine} on the previous version to it,
+     * in all cores. The previous engine is dropped once the lookups in
+     * progress on it are done.
+     *
+     * @param previous the key of the previous version
+     * @param key the key of the new version
+     * @param loader builds the new engine
+     * @return the number of engines switched, 0 if the keys are equal
+     * @throws IOException if the new engine could not be built; the engines
+     * keep the previous version
+     */
+    public int reload(Key previous, Key key, EngineLoader loader) throws IOException {
+        if (previous.equals(key)) {
+            return 0;
+        }
+        List<DeferredSKOSEngine> switched = new ArrayList<>();
+        try (Lease build = acquire(key, loader)) {
+            synchronized (this) {
+                for (DeferredSKOSEngine engine : engines) {
+                    if (engine.getLease().getKey().equals(previous)) {
+                        switched.add(engine);
+                    }
+                }
+            }
+            int count = 0;
+            for (DeferredSKOSEngine engine : switched) {
+                if (engine.setLease(register(key))) {
+                    count++;
+                }
+            }
+            logger.info("Reloaded " + count + " SKOS engines from " + key);
+            return count;
+        }
+    }
+
+    private synchronized Lease register(Key key) {
+        Entry entry = entries.get(key);
+        boolean owner = entry == null;
+        if (owner) {
+            entry = new Entry(key, reserveIndexDirectory(key));
+            entries.put(key, entry);
+        }
+        entry.refCount++;
+        return new Lease(entry, owner);
+    }
+
+    /**
+     * Picks a directory for the index of a new engine, not used by any other
+     */
+    private String reserveIndexDirectory(Key key) {
+        String name = key.getIndexPath() + key.getDirectoryName();
+        String indexDirectory = name + File.separator;
+        for (int i = 2; !indexDirectories.add(indexDirectory); i++) {
+            indexDirectory = name + "-" + i + File.separator;
+        }
+        return indexDirectory;
+    }
+
+    private void build(Entry entry, EngineLoader loader) {
+        entry.buildStart = System.nanoTime();
+        SKOSEngine engine = null;
+        Throwable failure = null;
+        try {
+            engine = loader.load(entry.indexDirectory);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+        boolean released;
+        synchronized (this) {
+            entry.buildNanos = System.nanoTime() - entry.buildStart;
+            entry.engine = engine;
+            entry.failure = failure;
+            released = entry.refCount == 0;
+            if (failure != null && entries.get(entry.key) == entry) {
+                // later callers try again
+                entries.remove(entry.key);
+            }
+            // under the lock, so release() sees either the engine or a running build
+            entry.built.countDown();
+        }
+        if (failure != null) {
+            logger.error("Could not build SKOS engine for " + entry.key, failure);
+            deleteIndexDirectory(entry);
+        } else {
+            logger.info("Built SKOS engine for " + entry.key + " in " + entry.buildNanos / 1000000 + " ms");
+            if (released) {
+                // all leases were closed during the build
+                close(entry);
+            }
+        }
+    }
+
+    private void release(Entry entry) {
+        synchronized (this) {
+            if (--entry.refCount > 0) {
+                return;
+            }
+            if (entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+            }
+            if (entry.built.getCount() > 0) {
+                // closed by the build when done
+                return;
+            }
+        }
+        close(entry);
+    }
+
+    private void close(Entry entry) {
+        if (entry.engine instanceof Closeable) {
+            try {
+                ((Closeable) entry.engine).close();
+            } catch (IOException e) {
+                logger.warn("Could not close SKOS engine for " + entry.key, e);
+            }
+        }
+        deleteIndexDirectory(entry);
+    }
+
+    /**
+     * Deletes the index directory of a dropped or failed engine; it is only
+     * handed out again once deleted
+     */
+    private void deleteIndexDirectory(Entry entry) {
+        if (!entry.directoryDeleted.compareAndSet(false, true)) {
+            return;
+        }
+        Path directory = Paths.get(entry.indexDirectory);
+        try {
+            if (Files.exists(directory)) {
+                Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        Files.delete(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                        if (e != null) {
+                            throw e;
+                        }
+                        Files.delete(dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+        } catch (IOException e) {
+            logger.warn("Could not delete the index directory " + directory + " of SKOS engine for " + entry.key, e);
+        }
+        synchronized (this) {
+            indexDirectories.remove(entry.indexDirectory);
+        }
+    }
+
+    /**
+     * @return the number of engines currently registered
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param key the key identifying the engine
+     * @return the number of open leases on the engine, 0 if there is none
+     */
+    public synchronized int getReferenceCount(Key key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.refCount : 0;
+    }
+
+    private static final class Entry {
+
+        private final Key key;
+
+        private final String indexDirectory;
+
+        private final AtomicBoolean directoryDeleted = new AtomicBoolean();
+
+        /* guarded by the registry */
+        private int refCount;
+
+        private final CountDownLatch built = new CountDownLatch(1);
+
+        /* set before built is counted down */
+        private volatile SKOSEngine engine;
+
+        private volatile Throwable failure;
+
+        private volatile long buildStart;
+
+        private volatile long buildNanos = -1;
+
+        private Entry(Key key, String indexDirectory) {
+            this.key = key;
+            this.indexDirectory = indexDirectory;
+        }
+    }
+
+    /**
+     * A reference to a registered engine
+     */
+    public final class Lease implements Closeable {
+
+        private final Entry entry;
+
+        /* whether this lease has to build the engine */
+        private final boolean owner;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Entry entry, boolean owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        /**
+         * @return the engine, or null if it is not built (yet)
+         */
+        public SKOSEngine getEngine() {
+            return entry.engine;
+        }
+
+        /**
+         * Waits for the engine to be built
+         *
+         * @return the engine
+         * @throws IOException if the build failed or the wait was interrupted
+         */
+        public SKOSEngine awaitEngine() throws IOException {
+            try {
+                entry.built.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the SKOS engine", e);
+            }
+            if (entry.failure != null) {
+                throw new IOException("Could not build SKOS engine for " + entry.key, entry.failure);
+            }
+            return entry.engine;
+        }
+
+        public State getState() {
+            if (closed.get()) {
+                return State.CLOSED;
+            }
+            if (entry.built.getCount() > 0) {
+                return State.BUILDING;
+            }
+            return entry.failure != null ? State.FAILED : State.READY;
+        }
+
+        /**
+         * @return the cause of a failed build, or null
+         */
+        public Throwable getFailure() {
+            return entry.failure;
+        }
+
+        /**
+         * @return the duration of the build in milliseconds, or the time
+         * elapsed so far while building, 0 if the build has not started
+         */
+        public long getBuildTime() {
+            long nanos = entry.buildNanos;
+            if (nanos < 0) {
+                long start = entry.buildStart;
+                nanos = start != 0 ? System.nanoTime() - start : 0;
+            }
+            return nanos / 1000000;
+        }
+
+        public Key getKey() {
+            return entry.key;
+        }
+
+        /**
+         * @return the directory reserved for the index of the engine
+         */
+        public String getIndexDirectory() {
+            return entry.indexDirectory;
+        }
+
+        /**
+         * Gives up the reference; closing a lease twice has no effect
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * Identifies an engine by the vocabulary file and everything else the
+     * built engine depends on
+     */
+    public static final class Key {
+
+        private final String file;
+
+        private final long checksum;
+
+        private final List<String> languages;
+
+        private final String indexPath;
+
+        private final String labelAnalyzer;
+
+        /**
+         * @param file the resolved vocabulary file
+         * @param checksum the checksum of the file contents
+         * @param languages the languages considered, or null for all
+         * @param indexPath the index path, or null
+         * @param labelAnalyzer the class name of the label analyzer, or null
+         * for the default
+         */
+        public Key(String file, long checksum, List<String> languages, String indexPath, String labelAnalyzer) {
+            this.file = file;
+            this.checksum = checksum;
+            if (languages != null) {
+                List<String> sorted = new ArrayList<>(languages);
+                Collections.sort(sorted);
+                this.languages = sorted;
+            } else {
+                this.languages = null;
+            }
+            this.indexPath = indexPath != null ? indexPath : "";
+            this.labelAnalyzer = labelAnalyzer;
+        }
+
+        /**
+         * Creates the key for a vocabulary file, resolving the path and
+         * computing the checksum of its contents
+         *
+         * @param file the vocabulary file
+         * @param languages the languages considered, or null for all
+         * @param indexPath the index path, or null
+         * @param labelAnalyzer the class name of the label analyzer, or null
+         * for the default
+         * @return the key
+         * @throws IOException if the file can not be read
+         */
+        public static Key forFile(Path file, List<String> languages, String indexPath, String labelAnalyzer)
+                throws IOException {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[8192];
+            try (InputStream in = Files.newInputStream(file)) {
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    crc.update(buffer, 0, read);
+                }
+            }
+            return new Key(file.toRealPath().toString(), crc.getValue(), languages, indexPath, labelAnalyzer);
+        }
+
+        /**
+         * @return the index path, empty for the working directory
+         */
+        public String getIndexPath() {
+            return indexPath;
+        }
+
+        /**
+         * @return the name of the index directory of the engine: the
+         * checksum of the file contents, the languages and the label analyzer
+         */
+        String getDirectoryName() {
+            StringBuilder name = new StringBuilder(String.format(Locale.ROOT, "skos-%08x", checksum));
+            name.append('-').append(languages != null ? join(languages) : "all");
+            name.append('-').append(labelAnalyzer != null
+                ? labelAnalyzer.substring(labelAnalyzer.lastIndexOf('.') + 1) : "default");
+            return name.toString().replaceAll("[^A-Za-z0-9._-]", "_");
+        }
+
+        private static String join(List<String> values) {
+            StringBuilder joined = new StringBuilder();
+            for (String value : values) {
+                if (joined.length() > 0) {
+                    joined.append('_');
+                }
+                joined.append(value);
+            }
+            return joined.toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return file.equals(other.file)
+                && checksum == other.checksum
+                && (languages != null ? languages.equals(other.languages) : other.languages == null)
+                && indexPath.equals(other.indexPath)
+                && (labelAnalyzer != null ? labelAnalyzer.equals(other.labelAnalyzer) : other.labelAnalyzer == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = file.hashCode();
+            result = 31 * result + (int) (checksum ^ (checksum >>> 32));
+            result = 31 * result + (languages != null ? languages.hashCode() : 0);
+            result = 31 * result + indexPath.hashCode();
+            result = 31 * result + (labelAnalyzer != null ? labelAnalyzer.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return file + " (checksum " + Long.toHexString(checksum) + ", languages "
+                + (languages != null ? languages : "all") + ")";
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package at.ac.univie.mminf.luceneSKOS.solr;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.solr.core.AbstractSolrEventListener;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.IndexSchema;
+
+/**
+ * Releases the shared SKOS engines of a core's field types when the core is
+ * closed, so an engine is dropped once the last core using it is gone.
+ *
+ * Solr does not notify analysis factories of the end of their core; register
+ * the listener in solrconfig.xml:
+ *
+ * <pre>
+ * &lt;listener event="firstSearcher" class="at.ac.univie.mminf.luceneSKOS.solr.SKOSEngineReleaseListener"/&gt;
+ * </pre>
+ */
+public class SKOSEngineReleaseListener extends AbstractSolrEventListener {
+
+    public SKOSEngineReleaseListener(SolrCore core) {
+        super(core);
+        core.addCloseHook(new CloseHook() {
+            @Override
+            public void preClose(SolrCore core) {
+            }
+
+            @Override
+            public void postClose(SolrCore core) {
+                release(core.getLatestSchema());
+            }
+        });
+    }
+
+    /**
+     * Closes all SKOS filter factories of the given schema
+     *
+     * @param schema the schema
+     */
+    public static void release(IndexSchema schema) {
+        for (FieldType fieldType : schema.getFieldTypes().values()) {
+            release(fieldType.getIndexAnalyzer());
+            release(fieldType.getQueryAnalyzer());
+        }
+    }
+
+    private static void release(Analyzer analyzer) {
+        for (SKOSFilterFactory factory : SKOSFilterFactory.getFactories(analyzer)) {
+            factory.close();
+        }
+    }
+}
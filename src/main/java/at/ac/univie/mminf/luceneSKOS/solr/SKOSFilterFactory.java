@@ -16,21 +16,36 @@
  * limitations under the License.
  */
 
+import at.ac.univie.mminf.luceneSKOS.analysis.AbstractSKOSFilter;
+import at.ac.univie.mminf.luceneSKOS.analysis.DocFreqSnapshot;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ConceptIdMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.PayloadMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSExpansionStats;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSExpansionSuppressor;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSLabelFilter;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSURIFilter;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSWeights;
 import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
 import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngineFactory;
 import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.solr.analysis.TokenizerChain;
 import org.apache.solr.core.SolrResourceLoader;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -40,7 +55,7 @@
 /**
  * A factory for plugging SKOS filters into Apache Solr
  */
-public class SKOSFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
+public class SKOSFilterFactory extends TokenFilterFactory implements ResourceLoaderAware, Closeable {
 
     private final static Logger logger = Logger.getLogger(SKOSFilterFactory.class.getName());
 
@@ -50,11 +65,42 @@ public class SKOSFilterFactory extends TokenFilterFactory implements ResourceLoa
     private String typeString;
     private String languageString;
     private String indexPath;
+    private String maxExpansionsPerTokenString;
+    private String maxExpansionsPerDocumentString;
+    private String payloadModeString;
+    private String expansionCacheSizeString;
+    private String weightsString;
+    private String weightDecayString;
+    private String docFreqSnapshotFile;
+    private String maxDocFreqRatioString;
+    private String suppressionActionString;
+    private String downWeightString;
+    private String labelAnalyzerClass;
+    private String conceptIdModeString;
+    private String notReadyPolicyString;
+    private boolean asyncBuild;
+    private String stopWordFiles;
+    private boolean ignoreCase;
+    private boolean deduplicate;
+    private boolean lowerCase;
+    private CharArraySet stopWords;
     private ExpansionType expansionType;
     private List<SKOSType> type;
-    private SKOSEngine skosEngine;
+    private String engineFile;
+    private volatile DeferredSKOSEngine skosEngine;
+    /* the lease given up by close(), still reported by the statistics */
+    private volatile SKOSEngineRegistry.Lease closedLease;
     private int bufferSize;
-
+    private int maxExpansionsPerToken = AbstractSKOSFilter.UNLIMITED_EXPANSIONS;
+    private int maxExpansionsPerDocument = AbstractSKOSFilter.UNLIMITED_EXPANSIONS;
+    private PayloadMode payloadMode = SKOSAnalyzer.DEFAULT_PAYLOAD_MODE;
+    private int expansionCacheSize = AbstractSKOSFilter.DEFAULT_EXPANSION_CACHE_SIZE;
+    private final SKOSWeights weights = new SKOSWeights();
+    private SKOSExpansionSuppressor suppressor;
+    private Analyzer labelAnalyzer;
+    private ConceptIdMode conceptIdMode = ConceptIdMode.NONE;
+    private DeferredSKOSEngine.Policy notReadyPolicy = DeferredSKOSEngine.Policy.BLOCK;
+    private final SKOSExpansionStats expansionStats = new SKOSExpansionStats();
 
     public SKOSFilterFactory(Map<String, String> args) {
         super(args);
@@ -64,27 +110,67 @@ public SKOSFilterFactory(Map<String, String> args) {
         typeString = get(args, "type");
         languageString = get(args, "language");
         indexPath = get(args, "indexPath");
+        maxExpansionsPerTokenString = get(args, "maxExpansionsPerToken");
+        maxExpansionsPerDocumentString = get(args, "maxExpansionsPerDocument");
+        payloadModeString = get(args, "payloadMode");
+        expansionCacheSizeString = get(args, "expansionCacheSize");
+        weightsString = get(args, "weights");
+        weightDecayString = get(args, "weightDecay");
+        docFreqSnapshotFile = get(args, "docFreqSnapshot");
+        maxDocFreqRatioString = get(args, "maxDocFreqRatio");
+        suppressionActionString = get(args, "suppressionAction");
+        downWeightString = get(args, "downWeight");
+        labelAnalyzerClass = get(args, "labelAnalyzer");
+        conceptIdModeString = get(args, "conceptIdMode");
+        asyncBuild = getBoolean(args, "asyncBuild", false);
+        notReadyPolicyString = get(args, "notReadyPolicy");
+        deduplicate = getBoolean(args, "deduplicate", false);
+        lowerCase = getBoolean(args, "lowerCase", false);
+        stopWordFiles = get(args, "stopWords");
+        ignoreCase = getBoolean(args, "ignoreCase", false);
 
         logger.info("Passed arguments: " + skosFile + " Type: "
             + expansionTypeString + " bufferSize: "
             + (bufferSizeString != null ? bufferSizeString : "Default")
             + " language: " + (languageString != null ? languageString : "All")
-            + " type: " + (typeString != null ? typeString : "Default"));
+            + " type: " + (typeString != null ? typeString : "Default")
+            + " maxExpansionsPerToken: " + (maxExpansionsPerTokenString != null ? maxExpansionsPerTokenString : "Unlimited")
+            + " maxExpansionsPerDocument: " + (maxExpansionsPerDocumentString != null ? maxExpansionsPerDocumentString : "Unlimited")
+            + " payloadMode: " + (payloadModeString != null ? payloadModeString : "Default")
+            + " expansionCacheSize: " + (expansionCacheSizeString != null ? expansionCacheSizeString : "Default"));
     }
 
     @Override
     public void inform(ResourceLoader loader) {
+        // one label analyzer for the engine and all filters of this factory
+        labelAnalyzer = labelAnalyzerClass != null
+            ? loader.newInstance(labelAnalyzerClass, Analyzer.class)
+            : SKOSAnalyzer.createLabelAnalyzer();
+        if (notReadyPolicyString != null) {
+            try {
+                notReadyPolicy = DeferredSKOSEngine.Policy.valueOf(notReadyPolicyString.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "The property 'notReadyPolicy' must be one of BLOCK, PASSTHROUGH or FAIL");
+            }
+        }
         try {
             if (skosFile.endsWith(".n3") || skosFile.endsWith(".rdf")
                 || skosFile.endsWith(".ttl") || skosFile.endsWith(".zip")) {
-                skosEngine = SKOSEngineFactory.getSKOSEngine(
-                    indexPath != null ? indexPath : "",
-                    ((SolrResourceLoader) loader).getConfigDir() + skosFile,
-                    languageString != null ? Arrays.asList(languageString.split(" ")) : null);
+                engineFile = ((SolrResourceLoader) loader).getConfigDir() + skosFile;
+                close();
+                // filters always see the stand-in, so the engine can be replaced on reload
+                skosEngine = SKOSEngineRegistry.getInstance().createEngine(acquireEngine(asyncBuild), notReadyPolicy);
             } else {
                 throw new IOException(
                     "Allowed file suffixes are: .n3 (N3), .rdf (RDF/XML), .ttl (TURTLE) and .zip (ZIP)");
             }
+            if (stopWordFiles != null) {
+                stopWords = getWordSet(loader, stopWordFiles, ignoreCase);
+            }
+            if (docFreqSnapshotFile != null) {
+                suppressor = createSuppressor(loader);
+            }
 
         } catch (IOException e) {
             throw new RuntimeException("Could not instantiate SKOS engine", e);
@@ -108,6 +194,71 @@ public void inform(ResourceLoader loader) {
             }
         }
 
+        if (maxExpansionsPerTokenString != null) {
+            maxExpansionsPerToken = Integer.parseInt(maxExpansionsPerTokenString);
+            if (maxExpansionsPerToken < 1) {
+                throw new IllegalArgumentException(
+                    "The property 'maxExpansionsPerToken' must be a positive integer");
+            }
+        }
+
+        if (maxExpansionsPerDocumentString != null) {
+            maxExpansionsPerDocument = Integer.parseInt(maxExpansionsPerDocumentString);
+            if (maxExpansionsPerDocument < 1) {
+                throw new IllegalArgumentException(
+                    "The property 'maxExpansionsPerDocument' must be a positive integer");
+            }
+        }
+
+        if (payloadModeString != null) {
+            try {
+                payloadMode = PayloadMode.valueOf(payloadModeString.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "The property 'payloadMode' must be one of NONE, INT, TYPE, MASK or WEIGHT");
+            }
+        }
+
+        if (conceptIdModeString != null) {
+            try {
+                conceptIdMode = ConceptIdMode.valueOf(conceptIdModeString.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "The property 'conceptIdMode' must be one of NONE, CONCEPTS or ANCESTORS");
+            }
+        }
+
+        if (weightsString != null) {
+            // e.g. "broader:0.5 related:0.3"
+            for (String s : weightsString.split(" ")) {
+                String[] typeWeight = s.split(":");
+                try {
+                    weights.setWeight(SKOSType.valueOf(typeWeight[0].toUpperCase(Locale.ROOT)),
+                        Float.parseFloat(typeWeight[1]));
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(
+                        "The property 'weights' must be a list of type:weight pairs with positive weights");
+                }
+            }
+        }
+
+        if (weightDecayString != null) {
+            try {
+                weights.setDecay(Float.parseFloat(weightDecayString));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "The property 'weightDecay' must be a number in (0, 1]");
+            }
+        }
+
+        if (expansionCacheSizeString != null) {
+            expansionCacheSize = Integer.parseInt(expansionCacheSizeString);
+            if (expansionCacheSize < 0) {
+                throw new IllegalArgumentException(
+                    "The property 'expansionCacheSize' must be a non-negative integer");
+            }
+        }
+
         if (typeString != null) {
             List<SKOSType> types = new ArrayList<>();
             for (String s : typeString.split(" ")) {
@@ -120,15 +271,185 @@ public void inform(ResourceLoader loader) {
         }
     }
 
+    /**
+     * Acquires the engine for the current contents of the vocabulary file;
+     * factories of all field types and cores share one engine per vocabulary
+     */
+    private SKOSEngineRegistry.Lease acquireEngine(boolean async) throws IOException {
+        SKOSEngineRegistry.Key key = engineKey();
+        if (async) {
+            // the core loads on while the engine is built
+            return SKOSEngineRegistry.getInstance().acquireAsync(key, engineLoader());
+        }
+        return SKOSEngineRegistry.getInstance().acquire(key, engineLoader());
+    }
+
+    private SKOSEngineRegistry.Key engineKey() throws IOException {
+        return SKOSEngineRegistry.Key.forFile(Paths.get(engineFile), languages(), indexPath, labelAnalyzerClass);
+    }
+
+    private SKOSEngineRegistry.EngineLoader engineLoader() {
+        return SKOSEngineRegistry.fileLoader(engineFile, languages(), labelAnalyzer);
+    }
+
+    private List<String> languages() {
+        return languageString != null ? Arrays.asList(languageString.split(" ")) : null;
+    }
+
+    private SKOSExpansionSuppressor createSuppressor(ResourceLoader loader) throws IOException {
+        if (maxDocFreqRatioString == null) {
+            throw new IllegalArgumentException(
+                "The property 'maxDocFreqRatio' is required with 'docFreqSnapshot'");
+        }
+        DocFreqSnapshot snapshot;
+        try (Reader reader = new InputStreamReader(loader.openResource(docFreqSnapshotFile), StandardCharsets.UTF_8)) {
+            snapshot = DocFreqSnapshot.read(reader);
+        }
+        SKOSExpansionSuppressor result;
+        try {
+            result = new SKOSExpansionSuppressor(snapshot, Float.parseFloat(maxDocFreqRatioString));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                "The property 'maxDocFreqRatio' must be a number in (0, 1]");
+        }
+        if (suppressionActionString != null) {
+            try {
+                result.setAction(SKOSExpansionSuppressor.Action.valueOf(
+                    suppressionActionString.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "The property 'suppressionAction' must be either SKIP or DOWNWEIGHT");
+            }
+        }
+        if (downWeightString != null) {
+            try {
+                result.setDownWeight(Float.parseFloat(downWeightString));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "The property 'downWeight' must be a number in (0, 1)");
+            }
+        }
+        return result;
+    }
+
     @Override
     public TokenStream create(TokenStream input) {
-
+        AbstractSKOSFilter filter;
         if (expansionType.equals(ExpansionType.LABEL)) {
-            return new SKOSLabelFilter(input, skosEngine, new StandardAnalyzer(), bufferSize, type);
+            filter = new SKOSLabelFilter(input, skosEngine, labelAnalyzer, bufferSize, type);
 
         } else {
-            return new SKOSURIFilter(input, skosEngine, new StandardAnalyzer(), type);
+            filter = new SKOSURIFilter(input, skosEngine, labelAnalyzer, type);
         }
+        filter.setMaxExpansionsPerToken(maxExpansionsPerToken);
+        filter.setMaxExpansionsPerDocument(maxExpansionsPerDocument);
+        filter.setStats(expansionStats);
+        filter.setPayloadMode(payloadMode);
+        filter.setWeights(weights);
+        filter.setSuppressor(suppressor);
+        filter.setDeduplicate(deduplicate);
+        filter.setLowerCase(lowerCase);
+        filter.setStopWords(stopWords);
+        filter.setExpansionCacheSize(expansionCacheSize);
+        filter.setConceptIdMode(conceptIdMode);
+        return filter;
+    }
+
+    /**
+     * Releases the engine of this factory; it is closed once no other
+     * factory shares it. Solr does not close analysis factories, see
+     * {@link SKOSEngineReleaseListener}.
+     */
+    @Override
+    public synchronized void close() {
+        if (skosEngine != null) {
+            closedLease = skosEngine.getLease();
+            skosEngine.close();
+            skosEngine = null;
+        }
+    }
+
+    /**
+     * Rebuilds the engine from the current contents of the vocabulary file
+     * and switches all filters and processors using the previous version to
+     * it, in every core, without reloading the cores. Nothing is rebuilt if
+     * the file has not changed. The switch happens once the new engine is
+     * complete; the previous one is released when the lookups in progress
+     * on it are done.
+     *
+     * @return whether the engine was replaced, false if the factory has
+     * been closed or was already switched by another reload
+     * @throws IOException if the new engine could not be built; the filters
+     * keep the previous one
+     */
+    public synchronized boolean reloadEngine() throws IOException {
+        if (skosEngine == null) {
+            return false;
+        }
+        SKOSEngineRegistry.Key previous = skosEngine.getLease().getKey();
+        return SKOSEngineRegistry.getInstance().reload(previous, engineKey(), engineLoader()) > 0;
+    }
+
+    /**
+     * Returns the SKOS filter factories of an analyzer, e.g. the index or
+     * query analyzer of a field type
+     *
+     * @param analyzer the analyzer
+     * @return the factories in chain order, empty unless the analyzer is a
+     * {@link TokenizerChain}
+     */
+    public static List<SKOSFilterFactory> getFactories(Analyzer analyzer) {
+        List<SKOSFilterFactory> factories = new ArrayList<>();
+        if (analyzer instanceof TokenizerChain) {
+            for (TokenFilterFactory factory : ((TokenizerChain) analyzer).getTokenFilterFactories()) {
+                if (factory instanceof SKOSFilterFactory) {
+                    factories.add((SKOSFilterFactory) factory);
+                }
+            }
+        }
+        return factories;
+    }
+
+    /**
+     * @return the engine handed to the filters, or null once the factory is
+     * closed
+     */
+    public SKOSEngine getSKOSEngine() {
+        return skosEngine;
+    }
+
+    /**
+     * @return the lease on the current engine, the last one once the factory
+     * is closed, or null before the factory is informed
+     */
+    public SKOSEngineRegistry.Lease getEngineLease() {
+        DeferredSKOSEngine engine = skosEngine;
+        return engine != null ? engine.getLease() : closedLease;
+    }
+
+    /**
+     * @return the build state of the engine, e.g. BUILDING with asyncBuild,
+     * or CLOSED once the factory is closed
+     */
+    public SKOSEngineRegistry.State getEngineState() {
+        DeferredSKOSEngine engine = skosEngine;
+        return engine != null ? engine.getLease().getState() : SKOSEngineRegistry.State.CLOSED;
+    }
+
+    /**
+     * @return the build duration of the engine in milliseconds, or the time
+     * elapsed so far while it is building, 0 before the factory is informed
+     */
+    public long getEngineBuildTime() {
+        SKOSEngineRegistry.Lease lease = getEngineLease();
+        return lease != null ? lease.getBuildTime() : 0;
+    }
 
+    /**
+     * Returns the counters of all filters created by this factory
+     * @return the expansion counters
+     */
+    public SKOSExpansionStats getExpansionStats() {
+        return expansionStats;
     }
 }
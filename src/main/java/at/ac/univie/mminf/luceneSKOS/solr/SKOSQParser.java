@@ -0,0 +1,160 @@
+package at.ac.univie.mminf.luceneSKOS.solr;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.queryparser.flexible.standard.config.StandardQueryConfigHandler.Operator;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.QueryParsing;
+import org.apache.solr.search.SyntaxError;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.SKOSStandardQueryParser;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSQueryNodeProcessor.ExpansionQueryMode;
+
+/**
+ * Parses a query with {@link SKOSStandardQueryParser}, expanding its terms
+ * with the query analyzers of the schema. The expansion is tuned per request
+ * with local or request parameters:
+ *
+ * <ul>
+ * <li>types: the SKOS types to expand to, e.g. "pref alt broader"</li>
+ * <li>boost.&lt;type&gt;: the boost of terms of a type, e.g. boost.broader=0.3</li>
+ * <li>mode: BOOLEAN, SYNONYM or TERMS, see {@link ExpansionQueryMode}</li>
+ * <li>df and q.op: the default field and operator</li>
+ * </ul>
+ *
+ * e.g. <code>q={!skos types="pref alt" boost.alt=0.5 df=subject}weapons</code>
+ */
+public class SKOSQParser extends QParser {
+
+    public static final String TYPES = "types";
+
+    public static final String BOOST_PREFIX = "boost.";
+
+    public static final String MODE = "mode";
+
+    private final SKOSQParserPlugin plugin;
+
+    public SKOSQParser(String qstr, SolrParams localParams, SolrParams params, SolrQueryRequest req,
+            SKOSQParserPlugin plugin) {
+        super(qstr, localParams, params, req);
+        this.plugin = plugin;
+    }
+
+    @Override
+    public Query parse() throws SyntaxError {
+        SKOSStandardQueryParser parser = new SKOSStandardQueryParser(req.getSchema().getQueryAnalyzer());
+        parser.setExpansionCache(plugin.getExpansionCache(req.getSchema()));
+
+        String modeString = getParam(MODE);
+        parser.setExpansionQueryMode(modeString != null ? parseMode(modeString) : plugin.getMode());
+        for (Map.Entry<SKOSType, Float> boost : plugin.getBoosts().entrySet()) {
+            parser.setBoost(boost.getKey(), boost.getValue());
+        }
+        for (SKOSType type : SKOSType.values()) {
+            String boost = getParam(BOOST_PREFIX + type.name().toLowerCase(Locale.ROOT));
+            if (boost != null) {
+                parser.setBoost(type, parseBoost(type, boost));
+            }
+        }
+        String types = getParam(TYPES);
+        if (types == null) {
+            types = plugin.getTypes();
+        }
+        if (types != null) {
+            parser.setTypes(parseTypes(types));
+        }
+        String op = getParam(QueryParsing.OP);
+        if (op != null) {
+            parser.setDefaultOperator("AND".equalsIgnoreCase(op) ? Operator.AND : Operator.OR);
+        }
+
+        String defaultField = getParam(CommonParams.DF);
+        if (defaultField == null) {
+            defaultField = req.getSchema().getDefaultSearchFieldName();
+        }
+        try {
+            return parser.parse(getString(), defaultField);
+        } catch (QueryNodeException e) {
+            throw new SyntaxError(e.getMessage(), e);
+        }
+    }
+
+    static ExpansionQueryMode parseMode(String mode) {
+        try {
+            return ExpansionQueryMode.valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                "The parameter '" + MODE + "' must be one of BOOLEAN, SYNONYM or TERMS");
+        }
+    }
+
+    static float parseBoost(SKOSType type, String boost) {
+        try {
+            float value = Float.parseFloat(boost);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+            "The parameter '" + BOOST_PREFIX + type.name().toLowerCase(Locale.ROOT)
+                + "' must be a non-negative number");
+    }
+
+    static Set<SKOSType> parseTypes(String types) {
+        try {
+            return splitTypes(types);
+        } catch (IllegalArgumentException e) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                "The parameter '" + TYPES + "' must be a list of SKOS types, " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parses SKOS type names separated by blanks or commas, as accepted by
+     * the query parser and the update processor
+     *
+     * @throws IllegalArgumentException naming the first unknown type
+     */
+    static Set<SKOSType> splitTypes(String types) {
+        Set<SKOSType> result = EnumSet.noneOf(SKOSType.class);
+        for (String s : types.split("[\\s,]+")) {
+            if (s.isEmpty()) {
+                continue;
+            }
+            try {
+                result.add(SKOSType.valueOf(s.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown type: " + s);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+package at.ac.univie.mminf.luceneSKOS.solr;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.QParserPlugin;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSExpansionNodeCache;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSQueryNodeProcessor.ExpansionQueryMode;
+
+/**
+ * A query parser plugin expanding queries with the SKOS filters of the query
+ * analyzers of the schema, see {@link SKOSQParser}.
+ *
+ * Expanded query text is cached across requests; the cache is cleared when
+ * the engine of any SKOS filter changes. The init args set the defaults of
+ * the request parameters and the cache size:
+ *
+ * <pre>
+ * &lt;queryParser name="skos" class="at.ac.univie.mminf.luceneSKOS.solr.SKOSQParserPlugin"&gt;
+ *   &lt;str name="mode"&gt;SYNONYM&lt;/str&gt;
+ *   &lt;float name="boost.alt"&gt;0.8&lt;/float&gt;
+ *   &lt;int name="cacheSize"&gt;1024&lt;/int&gt;
+ * &lt;/queryParser&gt;
+ * </pre>
+ */
+public class SKOSQParserPlugin extends QParserPlugin {
+
+    public static final String NAME = "skos";
+
+    public static final String CACHE_SIZE = "cacheSize";
+
+    private SKOSExpansionNodeCache expansionCache;
+
+    private ExpansionQueryMode mode = ExpansionQueryMode.BOOLEAN;
+
+    private final Map<SKOSType, Float> boosts = new EnumMap<>(SKOSType.class);
+
+    private String types;
+
+    /* the combined versions of the engines the cached expansions were built with */
+    private long engineGeneration;
+
+    @Override
+    public void init(NamedList args) {
+        SolrParams params = SolrParams.toSolrParams(args);
+        int cacheSize = params.getInt(CACHE_SIZE, SKOSExpansionNodeCache.DEFAULT_SIZE);
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("The property '" + CACHE_SIZE + "' must be a non-negative integer");
+        }
+        expansionCache = cacheSize > 0 ? new SKOSExpansionNodeCache(cacheSize) : null;
+        String modeString = params.get(SKOSQParser.MODE);
+        if (modeString != null) {
+            mode = SKOSQParser.parseMode(modeString);
+        }
+        for (SKOSType type : SKOSType.values()) {
+            String boost = params.get(SKOSQParser.BOOST_PREFIX + type.name().toLowerCase(Locale.ROOT));
+            if (boost != null) {
+                boosts.put(type, SKOSQParser.parseBoost(type, boost));
+            }
+        }
+        types = params.get(SKOSQParser.TYPES);
+        if (types != null) {
+            // fail at startup rather than on the first request
+            SKOSQParser.parseTypes(types);
+        }
+    }
+
+    @Override
+    public QParser createParser(String qstr, SolrParams localParams, SolrParams params, SolrQueryRequest req) {
+        return new SKOSQParser(qstr, localParams, params, req, this);
+    }
+
+    /**
+     * Returns the cache of expanded query text, cleared first if an engine
+     * changed since the cached expansions were built
+     */
+    SKOSExpansionNodeCache getExpansionCache(IndexSchema schema) {
+        if (expansionCache == null) {
+            return null;
+        }
+        long generation = 17;
+        for (FieldType fieldType : schema.getFieldTypes().values()) {
+            for (SKOSFilterFactory factory : SKOSFilterFactory.getFactories(fieldType.getQueryAnalyzer())) {
+                SKOSEngine engine = factory.getSKOSEngine();
+                if (engine instanceof ExtendedSKOSEngine) {
+                    // null once the factory has been closed, e.g. during a core reload
+                    generation = 31 * generation + ((ExtendedSKOSEngine) engine).getVersion();
+                }
+            }
+        }
+        synchronized (this) {
+            if (generation != engineGeneration) {
+                expansionCache.clear();
+                engineGeneration = generation;
+            }
+        }
+        return expansionCache;
+    }
+
+    ExpansionQueryMode getMode() {
+        return mode;
+    }
+
+    Map<SKOSType, Float> getBoosts() {
+        return boosts;
+    }
+
+    String getTypes() {
+        return types;
+    }
+}
@@ -0,0 +1,331 @@
+package at.ac.univie.mminf.luceneSKOS.solr;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.PluginInfo;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.handler.RequestHandlerBase;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.update.processor.UpdateRequestProcessorChain;
+import org.apache.solr.update.processor.UpdateRequestProcessorFactory;
+import org.apache.solr.util.plugin.SolrCoreAware;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSExpansionStats;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.jena.SKOSEngineImpl;
+
+/**
+ * A request handler for inspecting and reloading the SKOS engines of the
+ * field types of a core:
+ *
+ * <ul>
+ * <li>action=stats (default): build state and time, concept and label
+ * counts, estimated heap and expansion cache statistics per filter</li>
+ * <li>action=reload: rebuilds the engines whose vocabulary file changed and
+ * switches the filters to them, without a core reload; engines are shared
+ * per vocabulary, so the filters and processors of other cores using the
+ * same vocabulary are switched as well. Without a fieldType parameter, the
+ * SKOS update processors of the core are reloaded too.</li>
+ * <li>action=expand&amp;term=...&amp;term=...: looks up the concepts of
+ * one or more labels or concept URIs and their related labels and concepts</li>
+ * </ul>
+ *
+ * All actions apply to the field type given by the fieldType parameter, or
+ * to all field types with SKOS filters.
+ *
+ * The statistics of the handler, shown by the mbeans handler and over JMX,
+ * hold the expansion metrics of each SKOS filter, named
+ * fieldType.analyzer.metric: engine lookups per second, lookup latency
+ * percentiles, the fan-out of expanded tokens, cache statistics, truncated
+ * expansions and the engine build time.
+ *
+ * <pre>
+ * &lt;requestHandler name="/skos" class="at.ac.univie.mminf.luceneSKOS.solr.SKOSRequestHandler"/&gt;
+ * </pre>
+ */
+public class SKOSRequestHandler extends RequestHandlerBase implements SolrCoreAware {
+
+    public static final String ACTION = "action";
+
+    public static final String FIELD_TYPE = "fieldType";
+
+    public static final String TERM = "term";
+
+    private volatile SolrCore core;
+
+    @Override
+    public void inform(SolrCore core) {
+        this.core = core;
+    }
+
+    @Override
+    public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
+        SolrParams params = req.getParams();
+        String action = params.get(ACTION, "stats").toLowerCase(Locale.ROOT);
+        Map<String, Map<String, SKOSFilterFactory>> factories = getFactories(req.getSchema(), params.get(FIELD_TYPE));
+        switch (action) {
+            case "stats":
+                for (Map.Entry<String, Map<String, SKOSFilterFactory>> e : factories.entrySet()) {
+                    NamedList<Object> stats = new SimpleOrderedMap<>();
+                    for (Map.Entry<String, SKOSFilterFactory> f : e.getValue().entrySet()) {
+                        stats.add(f.getKey(), getStats(f.getValue()));
+                    }
+                    rsp.add(e.getKey(), stats);
+                }
+                break;
+            case "reload":
+                for (Map.Entry<String, Map<String, SKOSFilterFactory>> e : factories.entrySet()) {
+                    NamedList<Object> reloads = new SimpleOrderedMap<>();
+                    for (Map.Entry<String, SKOSFilterFactory> f : e.getValue().entrySet()) {
+                        SKOSFilterFactory factory = f.getValue();
+                        NamedList<Object> reload = new SimpleOrderedMap<>();
+                        reload.add("reloaded", factory.reloadEngine());
+                        SKOSEngineRegistry.Lease lease = factory.getEngineLease();
+                        if (lease != null) {
+                            reload.add("engine", lease.getKey().toString());
+                        }
+                        reload.add("buildTime", factory.getEngineBuildTime());
+                        reloads.add(f.getKey(), reload);
+                    }
+                    rsp.add(e.getKey(), reloads);
+                }
+                if (params.get(FIELD_TYPE) == null) {
+                    NamedList<Object> reloads = new SimpleOrderedMap<>();
+                    for (Map.Entry<String, SKOSUpdateProcessorFactory> p : getUpdateProcessorFactories().entrySet()) {
+                        SKOSUpdateProcessorFactory factory = p.getValue();
+                        NamedList<Object> reload = new SimpleOrderedMap<>();
+                        reload.add("reloaded", factory.reloadEngine());
+                        SKOSEngineRegistry.Lease lease = factory.getEngineLease();
+                        if (lease != null) {
+                            reload.add("engine", lease.getKey().toString());
+                        }
+                        reloads.add(p.getKey(), reload);
+                    }
+                    if (reloads.size() > 0) {
+                        rsp.add("updateProcessors", reloads);
+                    }
+                }
+                break;
+            case "expand":
+                String[] terms = params.getParams(TERM);
+                if (terms == null) {
+                    throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                        "The parameter '" + TERM + "' is required with action=expand");
+                }
+                for (Map.Entry<String, Map<String, SKOSFilterFactory>> e : factories.entrySet()) {
+                    // the factories of a field type normally share one engine
+                    SKOSEngine engine = e.getValue().values().iterator().next().getSKOSEngine();
+                    if (engine == null) {
+                        // the factory has been closed, e.g. during a core reload
+                        continue;
+                    }
+                    NamedList<Object> expansions = new SimpleOrderedMap<>();
+                    for (String term : terms) {
+                        expansions.add(term, expand(engine, term));
+                    }
+                    rsp.add(e.getKey(), expansions);
+                }
+                break;
+            default:
+                throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                    "The parameter '" + ACTION + "' must be one of stats, reload or expand");
+        }
+    }
+
+    /**
+     * Returns the SKOS filter factories of the index and query analyzers of
+     * the field types, each factory once, by field type and analyzer name
+     * (index or query, numbered if an analyzer has several SKOS filters)
+     */
+    private Map<String, Map<String, SKOSFilterFactory>> getFactories(IndexSchema schema, String fieldTypeName) {
+        Map<String, FieldType> fieldTypes = schema.getFieldTypes();
+        if (fieldTypeName != null) {
+            FieldType fieldType = fieldTypes.get(fieldTypeName);
+            if (fieldType == null) {
+                throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                    "Unknown field type: " + fieldTypeName);
+            }
+            fieldTypes = Collections.singletonMap(fieldTypeName, fieldType);
+        }
+        Map<String, Map<String, SKOSFilterFactory>> result = new TreeMap<>();
+        for (Map.Entry<String, FieldType> e : fieldTypes.entrySet()) {
+            Set<SKOSFilterFactory> seen = Collections.newSetFromMap(new IdentityHashMap<SKOSFilterFactory, Boolean>());
+            Map<String, SKOSFilterFactory> factories = new LinkedHashMap<>();
+            addFactories(factories, seen, "index", e.getValue().getIndexAnalyzer());
+            addFactories(factories, seen, "query", e.getValue().getQueryAnalyzer());
+            if (!factories.isEmpty()) {
+                result.put(e.getKey(), factories);
+            }
+        }
+        if (fieldTypeName != null && result.isEmpty()) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+                "The field type " + fieldTypeName + " has no SKOS filter");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the SKOS update processor factories of the update chains of
+     * the core, by chain name (numbered if a chain has several)
+     */
+    private Map<String, SKOSUpdateProcessorFactory> getUpdateProcessorFactories() {
+        Map<String, SKOSUpdateProcessorFactory> result = new TreeMap<>();
+        List<PluginInfo> chains = core.getSolrConfig().getPluginInfos(UpdateRequestProcessorChain.class.getName());
+        for (PluginInfo info : chains) {
+            UpdateRequestProcessorChain chain = core.getUpdateProcessingChain(info.name);
+            if (chain == null) {
+                continue;
+            }
+            int count = 0;
+            for (UpdateRequestProcessorFactory factory : chain.getProcessors()) {
+                if (factory instanceof SKOSUpdateProcessorFactory) {
+                    String name = info.name != null ? info.name : "default";
+                    result.put(count++ == 0 ? name : name + count, (SKOSUpdateProcessorFactory) factory);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addFactories(Map<String, SKOSFilterFactory> factories, Set<SKOSFilterFactory> seen,
+            String name, Analyzer analyzer) {
+        int count = 0;
+        for (SKOSFilterFactory factory : SKOSFilterFactory.getFactories(analyzer)) {
+            // the index and query analyzers are one instance unless configured apart
+            if (seen.add(factory)) {
+                factories.put(count++ == 0 ? name : name + count, factory);
+            }
+        }
+    }
+
+    private NamedList<Object> getStats(SKOSFilterFactory factory) throws IOException {
+        NamedList<Object> stats = new SimpleOrderedMap<>();
+        SKOSEngineRegistry.Lease lease = factory.getEngineLease();
+        SKOSEngineRegistry.State state = factory.getEngineState();
+        if (lease != null) {
+            stats.add("engine", lease.getKey().toString());
+        }
+        stats.add("state", state.toString());
+        stats.add("buildTime", factory.getEngineBuildTime());
+        SKOSEngine engine = lease != null && state == SKOSEngineRegistry.State.READY ? lease.getEngine() : null;
+        if (engine instanceof SKOSEngineImpl) {
+            // counted once while the engine was built
+            SKOSEngineImpl engineImpl = (SKOSEngineImpl) engine;
+            stats.add("concepts", engineImpl.getConceptCount());
+            stats.add("labels", engineImpl.getLabelCount());
+            stats.add("ramBytesUsed", engineImpl.ramBytesUsed());
+        }
+        SKOSExpansionStats expansionStats = factory.getExpansionStats();
+        long lookups = expansionStats.getCacheHits() + expansionStats.getCacheMisses();
+        stats.add("expandedTokens", expansionStats.getExpandedTokens());
+        stats.add("expansions", expansionStats.getExpansions());
+        stats.add("cacheHits", expansionStats.getCacheHits());
+        stats.add("cacheMisses", expansionStats.getCacheMisses());
+        stats.add("cacheHitRate", lookups > 0 ? (double) expansionStats.getCacheHits() / lookups : 0d);
+        return stats;
+    }
+
+    /**
+     * Looks up a concept URI, or the concepts of a label
+     */
+    private NamedList<Object> expand(SKOSEngine engine, String term) throws IOException {
+        Collection<String> concepts = size(engine.getPrefLabels(term)) == 0
+            ? engine.getConcepts(term)
+            : Collections.singletonList(term);
+        NamedList<Object> result = new SimpleOrderedMap<>();
+        if (concepts == null) {
+            return result;
+        }
+        for (String conceptURI : concepts) {
+            NamedList<Object> concept = new SimpleOrderedMap<>();
+            concept.add("prefLabel", engine.getPrefLabels(conceptURI));
+            concept.add("altLabel", engine.getAltLabels(conceptURI));
+            concept.add("hiddenLabel", engine.getHiddenLabels(conceptURI));
+            concept.add("broader", engine.getBroaderConcepts(conceptURI));
+            concept.add("narrower", engine.getNarrowerConcepts(conceptURI));
+            concept.add("related", engine.getRelatedConcepts(conceptURI));
+            result.add(conceptURI, concept);
+        }
+        return result;
+    }
+
+    private static int size(Collection<String> values) {
+        return values != null ? values.size() : 0;
+    }
+
+    @Override
+    public NamedList<Object> getStatistics() {
+        NamedList<Object> statistics = super.getStatistics();
+        SolrCore core = this.core;
+        if (core == null) {
+            return statistics;
+        }
+        Map<String, Map<String, SKOSFilterFactory>> factories = getFactories(core.getLatestSchema(), null);
+        for (Map.Entry<String, Map<String, SKOSFilterFactory>> e : factories.entrySet()) {
+            for (Map.Entry<String, SKOSFilterFactory> f : e.getValue().entrySet()) {
+                String prefix = e.getKey() + "." + f.getKey() + ".";
+                SKOSFilterFactory factory = f.getValue();
+                SKOSExpansionStats stats = factory.getExpansionStats();
+                long lookups = stats.getCacheHits() + stats.getCacheMisses();
+                statistics.add(prefix + "lookups", stats.getLookups());
+                statistics.add(prefix + "lookupsPerSecond", stats.getLookupsPerSecond());
+                statistics.add(prefix + "lookupLatencyP50Micros", stats.getLookupLatencyPercentile(0.5));
+                statistics.add(prefix + "lookupLatencyP95Micros", stats.getLookupLatencyPercentile(0.95));
+                statistics.add(prefix + "lookupLatencyP99Micros", stats.getLookupLatencyPercentile(0.99));
+                statistics.add(prefix + "expandedTokens", stats.getExpandedTokens());
+                statistics.add(prefix + "expansions", stats.getExpansions());
+                statistics.add(prefix + "fanOutP50", stats.getFanOutPercentile(0.5));
+                statistics.add(prefix + "fanOutP99", stats.getFanOutPercentile(0.99));
+                statistics.add(prefix + "fanOutHistogram", Arrays.toString(stats.getFanOutHistogram()));
+                statistics.add(prefix + "cacheHits", stats.getCacheHits());
+                statistics.add(prefix + "cacheMisses", stats.getCacheMisses());
+                statistics.add(prefix + "cacheHitRate", lookups > 0 ? (double) stats.getCacheHits() / lookups : 0d);
+                statistics.add(prefix + "truncatedTokens", stats.getTruncatedTokens());
+                statistics.add(prefix + "documentTruncatedTokens", stats.getDocumentTruncatedTokens());
+                statistics.add(prefix + "suppressedExpansions", stats.getSuppressedExpansions());
+                statistics.add(prefix + "engineState", factory.getEngineState().toString());
+                statistics.add(prefix + "engineBuildTime", factory.getEngineBuildTime());
+            }
+        }
+        return statistics;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Inspects and reloads the SKOS engines of the field types";
+    }
+}
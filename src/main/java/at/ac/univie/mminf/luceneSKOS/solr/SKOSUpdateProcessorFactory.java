@@ -0,0 +1,388 @@
+package at.ac.univie.mminf.luceneSKOS.solr;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.update.processor.UpdateRequestProcessorFactory;
+import org.apache.solr.util.plugin.SolrCoreAware;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.facet.SKOSFacetFields;
+
+/**
+ * An update processor factory resolving the labels or concept URIs of
+ * source fields against a SKOS engine and writing the expanded labels, the
+ * concept URIs, the ancestor URIs and the hierarchy paths of the concepts to
+ * other fields, before the documents are analyzed.
+ *
+ * Placed before the DistributedUpdateProcessorFactory, the enrichment is
+ * done once on the node receiving the update, and the replicas index the
+ * stored values with plain analyzers. Each distinct value is looked up once
+ * per update request. The engine is shared with the SKOS filters of the same
+ * vocabulary and switched with them by the reload action of the
+ * {@link SKOSRequestHandler}.
+ *
+ * <pre>
+ * &lt;processor class="at.ac.univie.mminf.luceneSKOS.solr.SKOSUpdateProcessorFactory"&gt;
+ *   &lt;str name="skosFile"&gt;ukat_examples.n3&lt;/str&gt;
+ *   &lt;str name="source"&gt;subject&lt;/str&gt;
+ *   &lt;str name="expansionType"&gt;LABEL&lt;/str&gt;
+ *   &lt;str name="type"&gt;PREF ALT BROADER&lt;/str&gt;
+ *   &lt;str name="labelField"&gt;subject_expanded&lt;/str&gt;
+ *   &lt;str name="conceptField"&gt;subject_concept&lt;/str&gt;
+ *   &lt;str name="ancestorField"&gt;subject_ancestor&lt;/str&gt;
+ *   &lt;str name="pathField"&gt;subject_path&lt;/str&gt;
+ * &lt;/processor&gt;
+ * </pre>
+ */
+public class SKOSUpdateProcessorFactory extends UpdateRequestProcessorFactory implements SolrCoreAware {
+
+    private final static Logger logger = Logger.getLogger(SKOSUpdateProcessorFactory.class.getName());
+
+    public static final String DEFAULT_PATH_SEPARATOR = "|";
+
+    /* the number of distinct values an update request remembers the resolution of */
+    private static final int MAX_RESOLVED_VALUES = 10000;
+
+    private String skosFile;
+    private String languageString;
+    private String indexPath;
+    private String labelAnalyzerClass;
+    private List<String> sourceFields;
+    private ExpansionType expansionType = ExpansionType.LABEL;
+    private List<SKOSType> types = Arrays.asList(SKOSAnalyzer.DEFAULT_SKOS_TYPES);
+    private String labelField;
+    private String conceptField;
+    private String ancestorField;
+    private String pathField;
+    private String pathSeparator = DEFAULT_PATH_SEPARATOR;
+
+    private String engineFile;
+    private Analyzer labelAnalyzer;
+
+    private volatile DeferredSKOSEngine engine;
+
+    /* the paths of the engine behind a lease, rebuilt when the engine is switched */
+    private volatile FacetPaths facetPaths;
+
+    @Override
+    public void init(NamedList args) {
+        SolrParams params = SolrParams.toSolrParams(args);
+        skosFile = params.get("skosFile");
+        if (skosFile == null) {
+            throw new IllegalArgumentException("The property 'skosFile' is required");
+        }
+        String source = params.get("source");
+        if (source == null) {
+            throw new IllegalArgumentException("The property 'source' is required");
+        }
+        sourceFields = Arrays.asList(source.split(" "));
+        languageString = params.get("language");
+        indexPath = params.get("indexPath");
+        labelAnalyzerClass = params.get("labelAnalyzer");
+        String expansionTypeString = params.get("expansionType");
+        if (expansionTypeString != null) {
+            try {
+                expansionType = ExpansionType.valueOf(expansionTypeString.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "The property 'expansionType' must be either URI or LABEL");
+            }
+        }
+        String typeString = params.get("type");
+        if (typeString != null) {
+            try {
+                types = new ArrayList<>(SKOSQParser.splitTypes(typeString));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "The property 'type' must be a list of SKOS types, " + e.getMessage());
+            }
+        }
+        labelField = params.get("labelField");
+        conceptField = params.get("conceptField");
+        ancestorField = params.get("ancestorField");
+        pathField = params.get("pathField");
+        pathSeparator = params.get("pathSeparator", DEFAULT_PATH_SEPARATOR);
+        if (labelField == null && conceptField == null && ancestorField == null && pathField == null) {
+            throw new IllegalArgumentException(
+                "At least one of the properties 'labelField', 'conceptField', 'ancestorField' or 'pathField' is required");
+        }
+    }
+
+    @Override
+    public void inform(SolrCore core) {
+        engineFile = core.getResourceLoader().getConfigDir() + skosFile;
+        labelAnalyzer = labelAnalyzerClass != null
+            ? core.getResourceLoader().newInstance(labelAnalyzerClass, Analyzer.class)
+            : SKOSAnalyzer.createLabelAnalyzer();
+        try {
+            // shared with the SKOS filters using the same vocabulary
+            setEngineLease(SKOSEngineRegistry.getInstance().acquire(engineKey(), engineLoader()));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not instantiate SKOS engine", e);
+        }
+        core.addCloseHook(new CloseHook() {
+            @Override
+            public void preClose(SolrCore core) {
+            }
+
+            @Override
+            public void postClose(SolrCore core) {
+                close();
+            }
+        });
+        logger.info("Enriching " + sourceFields + " with concepts of " + engine.getLease().getKey());
+    }
+
+    /**
+     * Enriches the documents with the engine of the given lease instead of
+     * the one of the vocabulary file
+     *
+     * @param lease the lease, closed with the factory
+     */
+    public void setEngineLease(SKOSEngineRegistry.Lease lease) {
+        close();
+        engine = SKOSEngineRegistry.getInstance().createEngine(lease, DeferredSKOSEngine.Policy.BLOCK);
+    }
+
+    /**
+     * @return the lease on the engine, or null once the factory is closed
+     */
+    public SKOSEngineRegistry.Lease getEngineLease() {
+        DeferredSKOSEngine current = engine;
+        return current != null ? current.getLease() : null;
+    }
+
+    /**
+     * Rebuilds the engine from the current contents of the vocabulary file,
+     * see {@link SKOSFilterFactory#reloadEngine()}
+     *
+     * @return whether the engine was replaced
+     * @throws IOException if the new engine could not be built
+     */
+    public synchronized boolean reloadEngine() throws IOException {
+        DeferredSKOSEngine current = engine;
+        if (current == null || engineFile == null) {
+            return false;
+        }
+        SKOSEngineRegistry.Key previous = current.getLease().getKey();
+        return SKOSEngineRegistry.getInstance().reload(previous, engineKey(), engineLoader()) > 0;
+    }
+
+    /**
+     * Releases the engine
+     */
+    public synchronized void close() {
+        if (engine != null) {
+            engine.close();
+            engine = null;
+        }
+    }
+
+    private SKOSEngineRegistry.Key engineKey() throws IOException {
+        return SKOSEngineRegistry.Key.forFile(Paths.get(engineFile), languages(), indexPath, labelAnalyzerClass);
+    }
+
+    private SKOSEngineRegistry.EngineLoader engineLoader() {
+        return SKOSEngineRegistry.fileLoader(engineFile, languages(), labelAnalyzer);
+    }
+
+    private List<String> languages() {
+        return languageString != null ? Arrays.asList(languageString.split(" ")) : null;
+    }
+
+    /**
+     * Returns the facet paths of the current engine; the paths cached for a
+     * previous engine are dropped
+     */
+    private SKOSFacetFields getFacetFields(DeferredSKOSEngine engine) {
+        SKOSEngineRegistry.Lease lease = engine.getLease();
+        FacetPaths current = facetPaths;
+        if (current == null || current.lease != lease) {
+            current = new FacetPaths(lease, new SKOSFacetFields(engine, pathField));
+            facetPaths = current;
+        }
+        return current.facetFields;
+    }
+
+    private static final class FacetPaths {
+
+        private final SKOSEngineRegistry.Lease lease;
+        private final SKOSFacetFields facetFields;
+
+        private FacetPaths(SKOSEngineRegistry.Lease lease, SKOSFacetFields facetFields) {
+            this.lease = lease;
+            this.facetFields = facetFields;
+        }
+    }
+
+    @Override
+    public UpdateRequestProcessor getInstance(SolrQueryRequest req, SolrQueryResponse rsp,
+            UpdateRequestProcessor next) {
+        return new SKOSUpdateProcessor(next);
+    }
+
+    /**
+     * The concepts a source value refers to and what is written for them
+     */
+    private static final class Resolution {
+
+        private final Set<String> labels = new LinkedHashSet<>();
+        private final Set<String> concepts = new LinkedHashSet<>();
+        private final Set<String> ancestors = new LinkedHashSet<>();
+        private final Set<String> paths = new LinkedHashSet<>();
+    }
+
+    private class SKOSUpdateProcessor extends UpdateRequestProcessor {
+
+        /* source value -> resolution, for the documents of one update request */
+        private final Map<String, Resolution> resolved = new HashMap<>();
+
+        private SKOSUpdateProcessor(UpdateRequestProcessor next) {
+            super(next);
+        }
+
+        @Override
+        public void processAdd(AddUpdateCommand cmd) throws IOException {
+            SolrInputDocument doc = cmd.getSolrInputDocument();
+            Set<String> labels = new LinkedHashSet<>();
+            Set<String> concepts = new LinkedHashSet<>();
+            Set<String> ancestors = new LinkedHashSet<>();
+            Set<String> paths = new LinkedHashSet<>();
+            for (String sourceField : sourceFields) {
+                Collection<Object> values = doc.getFieldValues(sourceField);
+                if (values == null) {
+                    continue;
+                }
+                for (Object value : values) {
+                    Resolution resolution = resolve(value.toString());
+                    labels.addAll(resolution.labels);
+                    concepts.addAll(resolution.concepts);
+                    ancestors.addAll(resolution.ancestors);
+                    paths.addAll(resolution.paths);
+                }
+            }
+            addValues(doc, labelField, labels);
+            addValues(doc, conceptField, concepts);
+            addValues(doc, ancestorField, ancestors);
+            addValues(doc, pathField, paths);
+            super.processAdd(cmd);
+        }
+
+        private Resolution resolve(String value) throws IOException {
+            Resolution resolution = resolved.get(value);
+            if (resolution != null) {
+                return resolution;
+            }
+            DeferredSKOSEngine engine = SKOSUpdateProcessorFactory.this.engine;
+            if (engine == null) {
+                throw new IOException("The SKOS engine has been closed");
+            }
+            resolution = new Resolution();
+            Collection<String> conceptURIs = expansionType == ExpansionType.LABEL
+                ? engine.getConcepts(value)
+                : Arrays.asList(value);
+            if (conceptURIs != null) {
+                for (String conceptURI : conceptURIs) {
+                    resolution.concepts.add(conceptURI);
+                    if (labelField != null) {
+                        for (SKOSType type : types) {
+                            addAll(resolution.labels, getLabels(engine, conceptURI, type));
+                        }
+                    }
+                    if (ancestorField != null) {
+                        addAll(resolution.ancestors, engine.getBroaderTransitiveConcepts(conceptURI));
+                    }
+                    if (pathField != null) {
+                        for (String path : getFacetFields(engine).getPaths(conceptURI)) {
+                            resolution.paths.add(path.replace(String.valueOf(SKOSFacetFields.DELIMITER), pathSeparator));
+                        }
+                    }
+                }
+            }
+            if (resolved.size() >= MAX_RESOLVED_VALUES) {
+                resolved.clear();
+            }
+            resolved.put(value, resolution);
+            return resolution;
+        }
+    }
+
+    private static Collection<String> getLabels(SKOSEngine engine, String conceptURI, SKOSType type)
+            throws IOException {
+        switch (type) {
+            case PREF:
+                return engine.getPrefLabels(conceptURI);
+            case ALT:
+                return engine.getAltLabels(conceptURI);
+            case HIDDEN:
+                return engine.getHiddenLabels(conceptURI);
+            case BROADER:
+                return engine.getBroaderLabels(conceptURI);
+            case NARROWER:
+                return engine.getNarrowerLabels(conceptURI);
+            case RELATED:
+                return engine.getRelatedLabels(conceptURI);
+            case BROADERTRANSITIVE:
+                return engine.getBroaderTransitiveLabels(conceptURI);
+            case NARROWERTRANSITIVE:
+                return engine.getNarrowerTransitiveLabels(conceptURI);
+            default:
+                return null;
+        }
+    }
+
+    private static void addAll(Set<String> target, Collection<String> values) {
+        if (values != null) {
+            target.addAll(values);
+        }
+    }
+
+    private static void addValues(SolrInputDocument doc, String field, Set<String> values) {
+        if (field == null) {
+            return;
+        }
+        for (String value : values) {
+            doc.addField(field, value);
+        }
+    }
+}
@@ -17,7 +17,7 @@
  */
 
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
-import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -29,7 +29,7 @@
 /**
  * A mock that simulates the behavior of a SKOS engine for testing purposes
  */
-public class SKOSEngineMock implements SKOSEngine {
+public class SKOSEngineMock implements ExtendedSKOSEngine {
 
     /**
      * A data structure holding a SKOS Model
@@ -39,6 +39,10 @@ public class SKOSEngineMock implements SKOSEngine {
      * Stores the maximum number of terms contained in a prefLabel
      */
     private int maxPrefLabelTerms = -1;
+    /**
+     * Changes whenever entries are added
+     */
+    private long version;
 
     /**
      * Method for feeding mock with data
@@ -48,6 +52,7 @@ public class SKOSEngineMock implements SKOSEngine {
      * @param values the values
      */
     public void addEntry(String conceptURI, SKOSType type, String... values) {
+        version++;
         if (!conceptMap.containsKey(conceptURI)) {
             conceptMap.put(conceptURI, new HashMap<SKOSType, List<String>>());
         }
@@ -98,6 +103,16 @@ public List<String> getAltTerms(String label) {
         return altTerms;
     }
 
+    @Override
+    public List<String> getAllConcepts() {
+        return new ArrayList<>(conceptMap.keySet());
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
     @Override
     public List<String> getHiddenLabels(String conceptURI) {
         return readConceptFieldValues(conceptURI, SKOSType.HIDDEN);
@@ -203,7 +218,8 @@ public List<String> getRelatedLabels(String conceptURI) {
      * Returns the values of a given field for a given concept
      */
     private List<String> readConceptFieldValues(String conceptURI, SKOSType type) {
-        List<String> labels = conceptMap.get(conceptURI).get(type);
+        Map<SKOSType, List<String>> entryMap = conceptMap.get(conceptURI);
+        List<String> labels = entryMap != null ? entryMap.get(type) : null;
         if (labels != null) {
             return labels;
         }
@@ -0,0 +1,161 @@
+package at.ac.univie.mminf.luceneSKOS.skos.generator;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator.Concept;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator.Label;
+
+/**
+ * Generates text documents matching a {@link SKOSVocabularyGenerator}
+ * vocabulary.
+ *
+ * A document is a sequence of phrases. With the hit rate, a phrase is a
+ * label of a random concept of the vocabulary, otherwise it is a filler word
+ * that is no part of any label. Like the vocabulary, each document is
+ * derived from the seed and its number alone.
+ */
+public class SKOSCorpusGenerator {
+
+    /* the number of distinct filler words */
+    private static final int FILLER_WORDS = 10000;
+
+    private final SKOSVocabularyGenerator vocabulary;
+
+    private final long seed;
+
+    private double hitRate = 0.1;
+
+    private int documentLength = 100;
+
+    private boolean altLabels = true;
+
+    /**
+     * @param vocabulary the vocabulary to draw labels from
+     * @param seed the seed all documents are derived from
+     */
+    public SKOSCorpusGenerator(SKOSVocabularyGenerator vocabulary, long seed) {
+        this.vocabulary = vocabulary;
+        this.seed = seed;
+    }
+
+    public SKOSVocabularyGenerator getVocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * Sets the fraction of phrases that are labels of the vocabulary
+     *
+     * @param hitRate the hit rate, in [0, 1]
+     */
+    public void setHitRate(double hitRate) {
+        if (!(hitRate >= 0 && hitRate <= 1)) {
+            throw new IllegalArgumentException("hitRate must be in [0, 1]");
+        }
+        this.hitRate = hitRate;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    /**
+     * Sets the number of phrases per document
+     */
+    public void setDocumentLength(int documentLength) {
+        if (documentLength < 1) {
+            throw new IllegalArgumentException("documentLength must be positive");
+        }
+        this.documentLength = documentLength;
+    }
+
+    public int getDocumentLength() {
+        return documentLength;
+    }
+
+    /**
+     * Sets whether hits are drawn from the altLabels too, not only from the
+     * prefLabels
+     */
+    public void setAltLabels(boolean altLabels) {
+        this.altLabels = altLabels;
+    }
+
+    public boolean isAltLabels() {
+        return altLabels;
+    }
+
+    /**
+     * Derives a document
+     *
+     * @param document the number of the document
+     * @return the text of the document
+     */
+    public String getDocument(int document) {
+        Random random = new Random(SKOSVocabularyGenerator.mix(seed, document));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < documentLength; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            if (random.nextDouble() < hitRate) {
+                text.append(label(random));
+            } else {
+                text.append(SKOSVocabularyGenerator.fillerWord(random.nextInt(FILLER_WORDS)));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes documents to a file in UTF-8, one per line
+     */
+    public void write(Path file, int documents) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(out, documents);
+        }
+    }
+
+    /**
+     * Writes documents, one per line
+     */
+    public void write(Writer out, int documents) throws IOException {
+        for (int i = 0; i < documents; i++) {
+            out.write(getDocument(i));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private String label(Random random) {
+        Concept concept = vocabulary.getConcept(random.nextInt(vocabulary.getSize()));
+        List<Label> prefLabels = concept.getPrefLabels();
+        List<Label> alts = concept.getAltLabels();
+        int labels = prefLabels.size() + (altLabels ? alts.size() : 0);
+        int label = random.nextInt(labels);
+        return label < prefLabels.size() ? prefLabels.get(label).getText()
+                : alts.get(label - prefLabels.size()).getText();
+    }
+}
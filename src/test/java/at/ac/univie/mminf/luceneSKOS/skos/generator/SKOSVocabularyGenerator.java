@@ -0,0 +1,619 @@
+package at.ac.univie.mminf.luceneSKOS.skos.generator;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates synthetic SKOS vocabularies of arbitrary size.
+ *
+ * The concepts form a forest numbered breadth-first: the first concepts are
+ * the top concepts and the primary children of concept p are the concepts
+ * roots + p * branching, ..., roots + p * branching + branching - 1. The
+ * number of top concepts is chosen such that no tree is deeper than the
+ * configured depth. With the polyhierarchy ratio, a concept gets a second
+ * broader concept on the same or a higher level.
+ *
+ * Every concept is derived from the seed and its number alone, so
+ * vocabularies of millions of concepts are written as a stream and
+ * {@link #getConcept(int)} returns the same data that was written. The last
+ * word of every label is unique to the label; the other words of multi-word
+ * labels come from a small pool shared by all labels.
+ */
+public class SKOSVocabularyGenerator {
+
+    /**
+     * The serialization formats
+     */
+    public enum Format {
+        N3("N3"), TURTLE("TURTLE"), RDFXML("RDF/XML");
+
+        private final String lang;
+
+        Format(String lang) {
+            this.lang = lang;
+        }
+
+        /**
+         * @return the name of the format as used by Jena and
+         * {@link at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngineFactory}
+         */
+        public String getLang() {
+            return lang;
+        }
+    }
+
+    public static final String DEFAULT_BASE_URI = "http://example.com/concept/";
+
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+
+    private static final String SKOS_NS = "http://www.w3.org/2004/02/skos/core#";
+
+    private static final String[] SYLLABLES;
+
+    static {
+        String consonants = "bdfgklmnprstvz";
+        String vowels = "aeiou";
+        SYLLABLES = new String[consonants.length() * vowels.length()];
+        int i = 0;
+        for (char consonant : consonants.toCharArray()) {
+            for (char vowel : vowels.toCharArray()) {
+                SYLLABLES[i++] = new String(new char[]{consonant, vowel});
+            }
+        }
+    }
+
+    /* the number of words shared by multi-word labels */
+    private static final int COMMON_WORDS = 1024;
+
+    private final int size;
+
+    private final long seed;
+
+    private String baseURI = DEFAULT_BASE_URI;
+
+    private int branching = 10;
+
+    private int depth = 6;
+
+    private double polyhierarchyRatio = 0;
+
+    private Map<String, Double> languages = Collections.singletonMap("en", 1d);
+
+    private int minAltLabels = 0;
+
+    private int maxAltLabels = 2;
+
+    private int minLabelWords = 1;
+
+    private int maxLabelWords = 3;
+
+    private boolean transitive;
+
+    /**
+     * @param size the number of concepts
+     * @param seed the seed all concepts are derived from
+     */
+    public SKOSVocabularyGenerator(int size, long seed) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        this.size = size;
+        this.seed = seed;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setBaseURI(String baseURI) {
+        this.baseURI = baseURI;
+    }
+
+    public String getBaseURI() {
+        return baseURI;
+    }
+
+    /**
+     * Sets the number of primary children of a concept
+     *
+     * @param branching the branching factor, at least 1
+     */
+    public void setBranching(int branching) {
+        if (branching < 1) {
+            throw new IllegalArgumentException("branching must be positive");
+        }
+        this.branching = branching;
+    }
+
+    public int getBranching() {
+        return branching;
+    }
+
+    /**
+     * Sets the maximal number of levels of the concept trees
+     *
+     * @param depth the depth, 1 for a flat list of concepts
+     */
+    public void setDepth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be positive");
+        }
+        this.depth = depth;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Sets the fraction of concepts that get a second broader concept
+     *
+     * @param polyhierarchyRatio the ratio, in [0, 1]
+     */
+    public void setPolyhierarchyRatio(double polyhierarchyRatio) {
+        if (!(polyhierarchyRatio >= 0 && polyhierarchyRatio <= 1)) {
+            throw new IllegalArgumentException("polyhierarchyRatio must be in [0, 1]");
+        }
+        this.polyhierarchyRatio = polyhierarchyRatio;
+    }
+
+    public double getPolyhierarchyRatio() {
+        return polyhierarchyRatio;
+    }
+
+    /**
+     * Sets the label languages. Every concept is labeled in the first
+     * language; it is labeled in each other language with the given
+     * probability.
+     *
+     * @param languages the language tags mapped to their probabilities
+     */
+    public void setLanguages(Map<String, Double> languages) {
+        if (languages.isEmpty()) {
+            throw new IllegalArgumentException("at least one language is required");
+        }
+        for (Double probability : languages.values()) {
+            if (!(probability >= 0 && probability <= 1)) {
+                throw new IllegalArgumentException("language probabilities must be in [0, 1]");
+            }
+        }
+        this.languages = new LinkedHashMap<>(languages);
+    }
+
+    public Map<String, Double> getLanguages() {
+        return Collections.unmodifiableMap(languages);
+    }
+
+    /**
+     * Sets the range of the number of altLabels per concept and language
+     */
+    public void setAltLabels(int min, int max) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("altLabels must satisfy 0 <= min <= max");
+        }
+        this.minAltLabels = min;
+        this.maxAltLabels = max;
+    }
+
+    public int getMinAltLabels() {
+        return minAltLabels;
+    }
+
+    public int getMaxAltLabels() {
+        return maxAltLabels;
+    }
+
+    /**
+     * Sets the range of the number of words per label
+     */
+    public void setLabelWords(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("labelWords must satisfy 1 <= min <= max");
+        }
+        this.minLabelWords = min;
+        this.maxLabelWords = max;
+    }
+
+    public int getMinLabelWords() {
+        return minLabelWords;
+    }
+
+    public int getMaxLabelWords() {
+        return maxLabelWords;
+    }
+
+    /**
+     * Sets whether skos:broaderTransitive and skos:narrowerTransitive are
+     * written as well, the engine does not infer them
+     */
+    public void setTransitive(boolean transitive) {
+        this.transitive = transitive;
+    }
+
+    public boolean isTransitive() {
+        return transitive;
+    }
+
+    /**
+     * @return the number of top concepts
+     */
+    public int getRoots() {
+        long capacity = 0;
+        long level = 1;
+        for (int i = 0; i < depth && capacity < size; i++) {
+            capacity += level;
+            level = Math.min(level * branching, size);
+        }
+        return (int) ((size + capacity - 1) / capacity);
+    }
+
+    public String getConceptURI(int concept) {
+        return baseURI + concept;
+    }
+
+    /**
+     * Derives a concept
+     *
+     * @param concept the number of the concept, in [0, size)
+     * @return the concept
+     */
+    public Concept getConcept(int concept) {
+        checkConcept(concept);
+        Random random = random(concept);
+        int[] parents = parents(concept, random);
+        List<Label> prefLabels = new ArrayList<>();
+        List<Label> altLabels = new ArrayList<>();
+        int language = 0;
+        int labelsPerLanguage = maxAltLabels + 1;
+        for (Map.Entry<String, Double> entry : languages.entrySet()) {
+            if (language == 0 || random.nextDouble() < entry.getValue()) {
+                long labelId = ((long) concept * languages.size() + language) * labelsPerLanguage;
+                prefLabels.add(new Label(label(random, labelId), entry.getKey()));
+                int alts = minAltLabels + random.nextInt(maxAltLabels - minAltLabels + 1);
+                for (int alt = 1; alt <= alts; alt++) {
+                    altLabels.add(new Label(label(random, labelId + alt), entry.getKey()));
+                }
+            }
+            language++;
+        }
+        return new Concept(concept, getConceptURI(concept), parents, prefLabels, altLabels);
+    }
+
+    /**
+     * Returns the numbers of the broader concepts of a concept, the primary
+     * one first
+     */
+    public int[] getParents(int concept) {
+        checkConcept(concept);
+        return parents(concept, random(concept));
+    }
+
+    /**
+     * Returns the numbers of the primary narrower concepts of a concept
+     */
+    public int[] getChildren(int concept) {
+        checkConcept(concept);
+        long first = getRoots() + (long) concept * branching;
+        if (first >= size) {
+            return new int[0];
+        }
+        int count = (int) Math.min(branching, size - first);
+        int[] children = new int[count];
+        for (int i = 0; i < count; i++) {
+            children[i] = (int) first + i;
+        }
+        return children;
+    }
+
+    /**
+     * Returns the numbers of all broader concepts reachable from a concept
+     */
+    public int[] getAncestors(int concept) {
+        checkConcept(concept);
+        TreeSet<Integer> ancestors = new TreeSet<>();
+        List<Integer> pending = new ArrayList<>();
+        pending.add(concept);
+        while (!pending.isEmpty()) {
+            for (int parent : getParents(pending.remove(pending.size() - 1))) {
+                if (ancestors.add(parent)) {
+                    pending.add(parent);
+                }
+            }
+        }
+        int[] result = new int[ancestors.size()];
+        int i = 0;
+        for (int ancestor : ancestors) {
+            result[i++] = ancestor;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the vocabulary to a file in UTF-8
+     */
+    public void write(Path file, Format format) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(out, format);
+        }
+    }
+
+    /**
+     * Writes the vocabulary, one concept at a time
+     */
+    public void write(Writer out, Format format) throws IOException {
+        if (format == Format.RDFXML) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<rdf:RDF xmlns:rdf=\"" + RDF_NS + "\" xmlns:skos=\"" + SKOS_NS + "\">\n");
+        } else {
+            // N3 is a superset of Turtle, both are written as Turtle
+            out.write("@prefix rdf: <" + RDF_NS + "> .\n");
+            out.write("@prefix skos: <" + SKOS_NS + "> .\n\n");
+        }
+        for (int i = 0; i < size; i++) {
+            Concept concept = getConcept(i);
+            int[] children = getChildren(i);
+            int[] ancestors = transitive ? getAncestors(i) : new int[0];
+            if (format == Format.RDFXML) {
+                writeRDFXML(out, concept, children, ancestors);
+            } else {
+                writeTurtle(out, concept, children, ancestors);
+            }
+        }
+        if (format == Format.RDFXML) {
+            out.write("</rdf:RDF>\n");
+        }
+        out.flush();
+    }
+
+    private void writeTurtle(Writer out, Concept concept, int[] children, int[] ancestors) throws IOException {
+        String uri = "<" + concept.getURI() + ">";
+        out.write(uri + " rdf:type skos:Concept");
+        for (Label label : concept.getPrefLabels()) {
+            out.write(" ;\n    skos:prefLabel " + turtleLiteral(label));
+        }
+        for (Label label : concept.getAltLabels()) {
+            out.write(" ;\n    skos:altLabel " + turtleLiteral(label));
+        }
+        int[] parents = concept.getParents();
+        for (int parent : parents) {
+            out.write(" ;\n    skos:broader <" + getConceptURI(parent) + ">");
+        }
+        for (int child : children) {
+            out.write(" ;\n    skos:narrower <" + getConceptURI(child) + ">");
+        }
+        for (int ancestor : ancestors) {
+            out.write(" ;\n    skos:broaderTransitive <" + getConceptURI(ancestor) + ">");
+        }
+        out.write(" .\n");
+        // the inverse statements the parent and ancestors do not know about
+        for (int i = 1; i < parents.length; i++) {
+            out.write("<" + getConceptURI(parents[i]) + "> skos:narrower " + uri + " .\n");
+        }
+        for (int ancestor : ancestors) {
+            out.write("<" + getConceptURI(ancestor) + "> skos:narrowerTransitive " + uri + " .\n");
+        }
+    }
+
+    private void writeRDFXML(Writer out, Concept concept, int[] children, int[] ancestors) throws IOException {
+        String about = xmlEscape(concept.getURI());
+        out.write("  <skos:Concept rdf:about=\"" + about + "\">\n");
+        for (Label label : concept.getPrefLabels()) {
+            writeRDFXMLLabel(out, "skos:prefLabel", label);
+        }
+        for (Label label : concept.getAltLabels()) {
+            writeRDFXMLLabel(out, "skos:altLabel", label);
+        }
+        int[] parents = concept.getParents();
+        for (int parent : parents) {
+            writeRDFXMLResource(out, "skos:broader", parent);
+        }
+        for (int child : children) {
+            writeRDFXMLResource(out, "skos:narrower", child);
+        }
+        for (int ancestor : ancestors) {
+            writeRDFXMLResource(out, "skos:broaderTransitive", ancestor);
+        }
+        out.write("  </skos:Concept>\n");
+        for (int i = 1; i < parents.length; i++) {
+            out.write("  <rdf:Description rdf:about=\"" + xmlEscape(getConceptURI(parents[i])) + "\">\n");
+            out.write("    <skos:narrower rdf:resource=\"" + about + "\"/>\n");
+            out.write("  </rdf:Description>\n");
+        }
+        for (int ancestor : ancestors) {
+            out.write("  <rdf:Description rdf:about=\"" + xmlEscape(getConceptURI(ancestor)) + "\">\n");
+            out.write("    <skos:narrowerTransitive rdf:resource=\"" + about + "\"/>\n");
+            out.write("  </rdf:Description>\n");
+        }
+    }
+
+    private void writeRDFXMLLabel(Writer out, String property, Label label) throws IOException {
+        out.write("    <" + property + " xml:lang=\"" + xmlEscape(label.getLanguage()) + "\">"
+                + xmlEscape(label.getText()) + "</" + property + ">\n");
+    }
+
+    private void writeRDFXMLResource(Writer out, String property, int concept) throws IOException {
+        out.write("    <" + property + " rdf:resource=\"" + xmlEscape(getConceptURI(concept)) + "\"/>\n");
+    }
+
+    private int[] parents(int concept, Random random) {
+        int roots = getRoots();
+        if (concept < roots) {
+            return new int[0];
+        }
+        int parent = (concept - roots) / branching;
+        // concepts are numbered breadth-first, a lower number is never on a deeper level
+        if (parent > 0 && random.nextDouble() < polyhierarchyRatio) {
+            return new int[]{parent, random.nextInt(parent)};
+        }
+        return new int[]{parent};
+    }
+
+    private String label(Random random, long labelId) {
+        int words = minLabelWords + random.nextInt(maxLabelWords - minLabelWords + 1);
+        StringBuilder label = new StringBuilder();
+        for (int i = 1; i < words; i++) {
+            label.append(commonWord(random.nextInt(COMMON_WORDS))).append(' ');
+        }
+        return label.append(uniqueWord(labelId)).toString();
+    }
+
+    private Random random(int concept) {
+        return new Random(mix(seed, concept));
+    }
+
+    private void checkConcept(int concept) {
+        if (concept < 0 || concept >= size) {
+            throw new IllegalArgumentException("concept must be in [0, " + size + ")");
+        }
+    }
+
+    /**
+     * Derives a well-spread seed from a base seed and a number, so that
+     * neighbouring numbers do not get correlated random sequences
+     */
+    static long mix(long seed, long number) {
+        long z = seed + (number + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Spells a number as a word of syllables. Distinct numbers give distinct
+     * words; the words always end with a vowel and have at least two
+     * syllables, so that they are never English stop words.
+     */
+    static String uniqueWord(long number) {
+        StringBuilder word = new StringBuilder();
+        for (long n = number + SYLLABLES.length; n >= 0; n = n / SYLLABLES.length - 1) {
+            word.append(SYLLABLES[(int) (n % SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    /**
+     * The words shared by multi-word labels, never equal to a unique word
+     */
+    static String commonWord(int number) {
+        return uniqueWord(number) + "r";
+    }
+
+    /**
+     * The words of a corpus that are not part of any label
+     */
+    static String fillerWord(int number) {
+        return uniqueWord(number) + "sh";
+    }
+
+    private static String turtleLiteral(Label label) {
+        return "\"" + label.getText().replace("\\", "\\\\").replace("\"", "\\\"") + "\"@" + label.getLanguage();
+    }
+
+    private static String xmlEscape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * A generated concept
+     */
+    public static final class Concept {
+
+        private final int number;
+
+        private final String uri;
+
+        private final int[] parents;
+
+        private final List<Label> prefLabels;
+
+        private final List<Label> altLabels;
+
+        Concept(int number, String uri, int[] parents, List<Label> prefLabels, List<Label> altLabels) {
+            this.number = number;
+            this.uri = uri;
+            this.parents = parents;
+            this.prefLabels = Collections.unmodifiableList(prefLabels);
+            this.altLabels = Collections.unmodifiableList(altLabels);
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getURI() {
+            return uri;
+        }
+
+        public int[] getParents() {
+            return Arrays.copyOf(parents, parents.length);
+        }
+
+        public List<Label> getPrefLabels() {
+            return prefLabels;
+        }
+
+        public List<Label> getAltLabels() {
+            return altLabels;
+        }
+    }
+
+    /**
+     * A label and its language
+     */
+    public static final class Label {
+
+        private final String text;
+
+        private final String language;
+
+        Label(String text, String language) {
+            this.text = text;
+            this.language = language;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getLanguage() {
+            return language;
+        }
+
+        @Override
+        public String toString() {
+            return text + "@" + language;
+        }
+    }
+}
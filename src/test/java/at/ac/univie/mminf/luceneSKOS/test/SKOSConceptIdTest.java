@@ -0,0 +1,114 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+
+import org.junit.Before;
+import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ConceptIdMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.SKOSStandardQueryParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Testing the expansion of tokens to concept IDs
+ */
+public class SKOSConceptIdTest extends AbstractFilterTest {
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.PREF, "movement");
+        skosEngine.addEntry("http://example.com/concept/1", SKOSType.BROADERTRANSITIVE,
+                "http://example.com/concept/8");
+        skosAnalyzer = new SKOSAnalyzer(skosEngine, ExpansionType.LABEL);
+    }
+
+    @Test
+    public void labelsAreExpandedToConceptIds() throws IOException {
+        skosAnalyzer.setConceptIdMode(ConceptIdMode.CONCEPTS);
+        assertEquals(Arrays.asList("fox", "leaps", "http://example.com/concept/1"), analyze("fox leaps"));
+    }
+
+    @Test
+    public void ancestorIdsAreAdded() throws IOException {
+        skosAnalyzer.setConceptIdMode(ConceptIdMode.ANCESTORS);
+        List<String> terms = analyze("leaps");
+        assertEquals(Arrays.asList("leaps", "http://example.com/concept/8", "http://example.com/concept/1"), terms);
+        assertFalse(terms.contains("jumps"));
+    }
+
+    @Test
+    public void queriesResolveToConceptIds() throws IOException, QueryNodeException {
+        skosAnalyzer.setConceptIdMode(ConceptIdMode.ANCESTORS);
+        writer = new IndexWriter(directory, new IndexWriterConfig(skosAnalyzer));
+        Document doc = new Document();
+        doc.add(new Field("content", "The quick brown fox leaps over the lazy dog",
+                TextField.TYPE_STORED));
+        writer.addDocument(doc);
+        searcher = new IndexSearcher(DirectoryReader.open(writer, false));
+
+        SKOSStandardQueryParser parser = new SKOSStandardQueryParser(skosAnalyzer);
+
+        // an alt label of the same concept
+        Query query = parser.parse("hops", "content");
+        assertEquals("content:hops content:http://example.com/concept/1", query.toString());
+        assertEquals(1, searcher.search(query, 1).totalHits);
+
+        // a broader concept matches its descendants, its own ancestors are not searched
+        query = parser.parse("movement", "content");
+        assertEquals("content:movement content:http://example.com/concept/8", query.toString());
+        assertEquals(1, searcher.search(query, 1).totalHits);
+
+        query = parser.parse("jumps", "content");
+        assertEquals(1, searcher.search(query, 1).totalHits);
+    }
+
+    private List<String> analyze(String text) throws IOException {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream ts = skosAnalyzer.tokenStream("content", text)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.add(termAtt.toString());
+            }
+            ts.end();
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,291 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.skos.engine.mock.SKOSEngineMock;
+import at.ac.univie.mminf.luceneSKOS.solr.DeferredSKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.solr.DeferredSKOSEngine.Policy;
+import at.ac.univie.mminf.luceneSKOS.solr.SKOSEngineRegistry;
+import at.ac.univie.mminf.luceneSKOS.solr.SKOSEngineRegistry.Key;
+import at.ac.univie.mminf.luceneSKOS.solr.SKOSEngineRegistry.Lease;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testing the shared, reference-counted engine registry
+ */
+public class SKOSEngineRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final SKOSEngineRegistry.EngineLoader loader = new SKOSEngineRegistry.EngineLoader() {
+        @Override
+        public SKOSEngine load(String indexDirectory) {
+            loads.incrementAndGet();
+            return new SKOSEngineMock();
+        }
+    };
+
+    @Test
+    public void leasesShareOneEngineUntilTheLastIsClosed() throws IOException {
+        SKOSEngineRegistry registry = SKOSEngineRegistry.getInstance();
+        Key key = Key.forFile(writeVocabulary("a.n3", "content"), Arrays.asList("en", "de"), null, null);
+        Lease first = registry.acquire(key, loader);
+        Lease second = registry.acquire(key, loader);
+        assertSame(first.getEngine(), second.getEngine());
+        assertEquals(1, loads.get());
+        assertEquals(2, registry.getReferenceCount(key));
+
+        first.close();
+        // closing twice does not release the other lease
+        first.close();
+        assertEquals(1, registry.getReferenceCount(key));
+        second.close();
+        assertEquals(0, registry.getReferenceCount(key));
+
+        Lease third = registry.acquire(key, loader);
+        assertNotSame(first.getEngine(), third.getEngine());
+        assertEquals(2, loads.get());
+        third.close();
+    }
+
+    @Test
+    public void keyDependsOnContentsAndSettings() throws IOException {
+        Path file = writeVocabulary("b.n3", "content");
+        Key key = Key.forFile(file, Arrays.asList("en", "de"), null, null);
+        // language order does not matter
+        assertEquals(key, Key.forFile(file, Arrays.asList("de", "en"), "", null));
+        assertNotEquals(key, Key.forFile(file, Arrays.asList("en"), null, null));
+        assertNotEquals(key, Key.forFile(file, Arrays.asList("en", "de"), "index/", null));
+        Files.write(file, "changed".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(key, Key.forFile(file, Arrays.asList("en", "de"), null, null));
+    }
+
+    @Test
+    public void asyncBuildAppliesNotReadyPolicy() throws Exception {
+        final CountDownLatch proceed = new CountDownLatch(1);
+        SKOSEngineRegistry.EngineLoader slowLoader = new SKOSEngineRegistry.EngineLoader() {
+            @Override
+            public SKOSEngine load(String indexDirectory) throws IOException {
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                SKOSEngineMock engine = new SKOSEngineMock();
+                engine.addEntry("http://example.com/concept/1", SKOSType.PREF, "jumps");
+                return engine;
+            }
+        };
+        Key key = Key.forFile(writeVocabulary("c.n3", "content"), null, null, null);
+        try (Lease lease = SKOSEngineRegistry.getInstance().acquireAsync(key, slowLoader)) {
+            assertEquals(SKOSEngineRegistry.State.BUILDING, lease.getState());
+            DeferredSKOSEngine passthrough = new DeferredSKOSEngine(lease, Policy.PASSTHROUGH);
+            assertTrue(passthrough.getPrefLabels("http://example.com/concept/1").isEmpty());
+            assertEquals(-1, passthrough.getVersion());
+            try {
+                new DeferredSKOSEngine(lease, Policy.FAIL).getPrefLabels("http://example.com/concept/1");
+                fail("lookups fail while the engine is building");
+            } catch (IOException e) {
+                // expected
+            }
+
+            proceed.countDown();
+            DeferredSKOSEngine blocking = new DeferredSKOSEngine(lease, Policy.BLOCK);
+            assertEquals(Arrays.asList("jumps"), blocking.getPrefLabels("http://example.com/concept/1"));
+            assertEquals(SKOSEngineRegistry.State.READY, lease.getState());
+            assertEquals(((ExtendedSKOSEngine) lease.getEngine()).getVersion(), passthrough.getVersion());
+            assertEquals(Arrays.asList("jumps"), passthrough.getPrefLabels("http://example.com/concept/1"));
+        }
+    }
+
+    @Test
+    public void reloadSwitchesTheEngine() throws IOException {
+        Path file = writeVocabulary("e.n3", "content");
+        Lease lease = SKOSEngineRegistry.getInstance().acquire(Key.forFile(file, null, null, null), loader);
+        DeferredSKOSEngine engine = new DeferredSKOSEngine(lease, Policy.BLOCK);
+
+        Files.write(file, "changed".getBytes(StandardCharsets.UTF_8));
+        Lease reloaded = SKOSEngineRegistry.getInstance().acquire(Key.forFile(file, null, null, null), loader);
+        engine.setLease(reloaded);
+        assertEquals(0, SKOSEngineRegistry.getInstance().getReferenceCount(lease.getKey()));
+        assertNotSame(lease.getEngine(), reloaded.getEngine());
+        assertSame(reloaded.getEngine(), engine.getLease().getEngine());
+        engine.close();
+        assertEquals(0, SKOSEngineRegistry.getInstance().getReferenceCount(reloaded.getKey()));
+        assertEquals(SKOSEngineRegistry.State.CLOSED, lease.getState());
+        assertEquals(SKOSEngineRegistry.State.CLOSED, engine.getLease().getState());
+    }
+
+    @Test
+    public void reloadSwitchesAllEnginesOfTheVocabulary() throws IOException {
+        SKOSEngineRegistry registry = SKOSEngineRegistry.getInstance();
+        Path file = writeVocabulary("g.n3", "content");
+        Key key = Key.forFile(file, null, null, null);
+        DeferredSKOSEngine first = registry.createEngine(registry.acquire(key, loader), Policy.BLOCK);
+        DeferredSKOSEngine second = registry.createEngine(registry.acquire(key, loader), Policy.BLOCK);
+        DeferredSKOSEngine closed = registry.createEngine(registry.acquire(key, loader), Policy.BLOCK);
+        closed.close();
+
+        Files.write(file, "changed".getBytes(StandardCharsets.UTF_8));
+        Key changed = Key.forFile(file, null, null, null);
+        assertEquals(2, registry.reload(key, changed, loader));
+        assertEquals(0, registry.getReferenceCount(key));
+        assertEquals(2, registry.getReferenceCount(changed));
+        assertSame(first.getLease().getEngine(), second.getLease().getEngine());
+        assertEquals(0, registry.reload(changed, changed, loader));
+
+        first.close();
+        second.close();
+        assertEquals(0, registry.getReferenceCount(changed));
+    }
+
+    @Test
+    public void reloadWaitsForLookupsInProgress() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        SKOSEngineRegistry.EngineLoader slowLookups = new SKOSEngineRegistry.EngineLoader() {
+            @Override
+            public SKOSEngine load(String indexDirectory) throws IOException {
+                return new SKOSEngineMock() {
+                    @Override
+                    public List<String> getPrefLabels(String conceptURI) {
+                        started.countDown();
+                        try {
+                            proceed.await();
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        return super.getPrefLabels(conceptURI);
+                    }
+                };
+            }
+        };
+        Path file = writeVocabulary("f.n3", "content");
+        Lease lease = SKOSEngineRegistry.getInstance().acquire(Key.forFile(file, null, null, null), slowLookups);
+        final DeferredSKOSEngine engine = new DeferredSKOSEngine(lease, Policy.BLOCK);
+        Thread lookup = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    engine.getPrefLabels("http://example.com/concept/1");
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        lookup.start();
+        started.await();
+
+        Files.write(file, "changed".getBytes(StandardCharsets.UTF_8));
+        engine.setLease(SKOSEngineRegistry.getInstance().acquire(Key.forFile(file, null, null, null), loader));
+        assertEquals(1, SKOSEngineRegistry.getInstance().getReferenceCount(lease.getKey()));
+        proceed.countDown();
+        lookup.join();
+        assertEquals(0, SKOSEngineRegistry.getInstance().getReferenceCount(lease.getKey()));
+
+        engine.close();
+        try {
+            engine.getPrefLabels("http://example.com/concept/1");
+            fail("lookups fail once the engine is closed");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void enginesGetIndexDirectoriesOfTheirOwn() throws IOException {
+        SKOSEngineRegistry.EngineLoader indexing = new SKOSEngineRegistry.EngineLoader() {
+            @Override
+            public SKOSEngine load(String indexDirectory) throws IOException {
+                Path directory = Files.createDirectories(Paths.get(indexDirectory, "vocabulary"));
+                Files.write(directory.resolve("segments_1"), new byte[1]);
+                return new SKOSEngineMock();
+            }
+        };
+        String indexPath = folder.newFolder("index").getPath() + File.separator;
+        // same contents, languages and label analyzer
+        Path first = writeVocabulary("g.n3", "content");
+        Path second = folder.newFolder("other").toPath().resolve("g.n3");
+        Files.write(second, "content".getBytes(StandardCharsets.UTF_8));
+
+        Lease lease = SKOSEngineRegistry.getInstance().acquire(Key.forFile(first, null, indexPath, null), indexing);
+        Lease other = SKOSEngineRegistry.getInstance().acquire(Key.forFile(second, null, indexPath, null), indexing);
+        assertTrue(lease.getIndexDirectory().startsWith(indexPath + "skos-"));
+        assertNotEquals(lease.getIndexDirectory(), other.getIndexDirectory());
+        assertTrue(Files.isDirectory(Paths.get(lease.getIndexDirectory())));
+
+        lease.close();
+        assertFalse(Files.exists(Paths.get(lease.getIndexDirectory())));
+        assertTrue(Files.isDirectory(Paths.get(other.getIndexDirectory())));
+        other.close();
+        assertFalse(Files.exists(Paths.get(other.getIndexDirectory())));
+    }
+
+    @Test
+    public void failedBuildIsReportedAndRetried() throws IOException {
+        Key key = Key.forFile(writeVocabulary("d.n3", "content"), null, null, null);
+        SKOSEngineRegistry.EngineLoader failing = new SKOSEngineRegistry.EngineLoader() {
+            @Override
+            public SKOSEngine load(String indexDirectory) throws IOException {
+                throw new IOException("broken vocabulary");
+            }
+        };
+        try {
+            SKOSEngineRegistry.getInstance().acquire(key, failing);
+            fail("the build failure is passed on");
+        } catch (IOException e) {
+            assertEquals("broken vocabulary", e.getCause().getMessage());
+        }
+        assertEquals(0, SKOSEngineRegistry.getInstance().getReferenceCount(key));
+        try (Lease lease = SKOSEngineRegistry.getInstance().acquire(key, loader)) {
+            assertEquals(SKOSEngineRegistry.State.READY, lease.getState());
+        }
+    }
+
+    private Path writeVocabulary(String name, String content) throws IOException {
+        Path file = folder.newFile(name).toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -16,8 +16,11 @@
  * limitations under the License.
  */
 
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
 import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
 import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngineFactory;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.jena.SKOSEngineImpl;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.jena.SKOSEngineImpl.BuildPhase;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -62,6 +65,16 @@ public void testSKOSSpecSamples() throws IOException {
         assertEquals(skosEngine.getAltTerms("Food and Agriculture Organization").size(), 1);
     }
 
+    @Test
+    public void testSKOSSpecSamplesWithLabelAnalyzer() throws IOException {
+        InputStream skosFile = getClass().getResourceAsStream("/skos_samples/skos_spec_samples.n3");
+        SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(skosFile, "N3", null,
+                SKOSAnalyzer.createLabelAnalyzer());
+        // labels and lookups are normalized by the same analyzer
+        assertEquals(1, skosEngine.getAltTerms("Food, and Agriculture ORGANIZATION").size());
+        assertEquals(3, skosEngine.getAltTerms("animals").size());
+    }
+
     @Test
     public void testSKOSSpecSamplesWithLanguageRestriction() throws IOException {
         InputStream skosFile = getClass().getResourceAsStream("/skos_samples/skos_spec_samples.n3");
@@ -106,4 +119,27 @@ public void testUKATSamples() throws IOException {
         assertTrue(narrowerLabels.contains("ammunition"));
         assertTrue(narrowerLabels.contains("artillery"));
     }
+
+    @Test
+    public void testBuildPhasesAreTimed() throws IOException {
+        InputStream skosFile = getClass().getResourceAsStream("/skos_samples/ukat_examples.n3");
+        SKOSEngineImpl skosEngine = (SKOSEngineImpl) SKOSEngineFactory.getSKOSEngine(skosFile, "N3");
+        for (BuildPhase phase : BuildPhase.values()) {
+            assertTrue(phase.name(), skosEngine.getBuildNanos(phase) > 0);
+        }
+    }
+
+    @Test
+    public void testConceptsAndLabelsAreCounted() throws IOException {
+        InputStream skosFile = getClass().getResourceAsStream("/skos_samples/ukat_examples.n3");
+        SKOSEngineImpl skosEngine = (SKOSEngineImpl) SKOSEngineFactory.getSKOSEngine(skosFile, "N3");
+        long labels = 0;
+        for (String conceptURI : skosEngine.getAllConcepts()) {
+            labels += skosEngine.getPrefLabels(conceptURI).size() + skosEngine.getAltLabels(conceptURI).size()
+                + skosEngine.getHiddenLabels(conceptURI).size();
+        }
+        assertEquals(skosEngine.getAllConcepts().size(), skosEngine.getConceptCount());
+        assertEquals(labels, skosEngine.getLabelCount());
+        assertTrue(skosEngine.getConceptCount() > 0);
+    }
 }
@@ -0,0 +1,100 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import org.junit.Before;
+import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Testing the expansion budgets of the SKOS filters
+ */
+public class SKOSExpansionBudgetTest extends AbstractFilterTest {
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.PREF, "weapons");
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.NARROWER,
+                "http://example.com/concept/9", "http://example.com/concept/10", "http://example.com/concept/11");
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.NARROWERTRANSITIVE,
+                "http://example.com/concept/12", "http://example.com/concept/9",
+                "http://example.com/concept/10", "http://example.com/concept/11");
+        skosEngine.addEntry("http://example.com/concept/9", SKOSType.PREF, "guns");
+        skosEngine.addEntry("http://example.com/concept/9", SKOSType.NARROWER, "http://example.com/concept/12");
+        skosEngine.addEntry("http://example.com/concept/10", SKOSType.PREF, "knives");
+        skosEngine.addEntry("http://example.com/concept/11", SKOSType.PREF, "bows");
+        skosEngine.addEntry("http://example.com/concept/12", SKOSType.PREF, "rifles");
+        skosAnalyzer = new SKOSAnalyzer(SKOSAnalyzer.STOP_WORDS_SET, skosEngine, ExpansionType.LABEL, 1,
+                Arrays.asList(SKOSType.PREF, SKOSType.NARROWERTRANSITIVE));
+    }
+
+    @Test
+    public void unlimitedExpansion() throws IOException {
+        List<String> terms = analyze("weapons");
+        Collections.sort(terms);
+        assertEquals(Arrays.asList("bows", "guns", "knives", "rifles", "weapons"), terms);
+        assertEquals(0, skosAnalyzer.getExpansionStats().getTruncatedTokens());
+    }
+
+    @Test
+    public void tokenBudgetPrunesFarthestConcepts() throws IOException {
+        skosAnalyzer.setMaxExpansionsPerToken(3);
+        List<String> terms = analyze("weapons");
+        Collections.sort(terms);
+        // the prefLabel equal to the token is a duplicate and not counted,
+        // rifles is two hops away and pruned first
+        assertEquals(Arrays.asList("bows", "guns", "knives", "weapons"), terms);
+        assertEquals(1, skosAnalyzer.getExpansionStats().getTruncatedTokens());
+    }
+
+    @Test
+    public void documentBudgetStopsExpansion() throws IOException {
+        skosAnalyzer.setMaxExpansionsPerDocument(2);
+        List<String> terms = analyze("weapons weapons");
+        // the duplicate prefLabel does not use up the budget
+        assertEquals(Arrays.asList("weapons", "knives", "guns", "weapons"), terms);
+        assertEquals(2, skosAnalyzer.getExpansionStats().getDocumentTruncatedTokens());
+    }
+
+    private List<String> analyze(String text) throws IOException {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream ts = skosAnalyzer.tokenStream("subject", text)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.add(termAtt.toString());
+            }
+            ts.end();
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,109 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+
+import org.junit.Before;
+import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSExpansionStats;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing the per-filter cache of token expansions
+ */
+public class SKOSExpansionCacheTest extends AbstractFilterTest {
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        skosAnalyzer = new SKOSAnalyzer(SKOSAnalyzer.STOP_WORDS_SET, skosEngine, ExpansionType.LABEL, 1,
+                Arrays.asList(SKOSType.PREF, SKOSType.ALT));
+    }
+
+    @Test
+    public void recurringTokensAreServedFromCache() throws IOException {
+        List<String> offsets = new ArrayList<>();
+        List<String> terms = analyze("jumps jumps", offsets);
+        assertEquals(Arrays.asList("jumps", "hops", "leaps", "jumps", "hops", "leaps"), terms);
+        // the cached expansion carries the offsets of the second occurrence
+        assertEquals(Arrays.asList("0-5", "0-5", "0-5", "6-11", "6-11", "6-11"), offsets);
+        SKOSExpansionStats stats = skosAnalyzer.getExpansionStats();
+        assertEquals(1, stats.getCacheHits());
+        assertEquals(1, stats.getCacheMisses());
+        assertEquals(4, stats.getExpansions());
+    }
+
+    @Test
+    public void engineChangeInvalidatesCache() throws IOException {
+        analyze("jumps", new ArrayList<String>());
+        skosEngine.addEntry("http://example.com/concept/1", SKOSType.ALT, "bounds");
+        List<String> terms = analyze("jumps", new ArrayList<String>());
+        assertTrue(terms.contains("bounds"));
+        assertEquals(2, skosAnalyzer.getExpansionStats().getCacheMisses());
+    }
+
+    @Test
+    public void lookupsAndFanOutAreRecorded() throws IOException {
+        analyze("jumps jumps", new ArrayList<String>());
+        SKOSExpansionStats stats = skosAnalyzer.getExpansionStats();
+        // the second occurrence is served from the cache
+        assertEquals(1, stats.getLookups());
+        // both occurrences are expanded to two terms, counted in the bucket [2, 3]
+        assertArrayEquals(new long[]{0, 0, 2}, stats.getFanOutHistogram());
+        assertEquals(3, stats.getFanOutPercentile(0.5));
+        assertTrue(stats.getLookupLatencyPercentile(0.99) >= stats.getLookupLatencyPercentile(0.5));
+    }
+
+    @Test
+    public void cacheCanBeDisabled() throws IOException {
+        skosAnalyzer.setExpansionCacheSize(0);
+        List<String> terms = analyze("jumps jumps", new ArrayList<String>());
+        assertEquals(Arrays.asList("jumps", "hops", "leaps", "jumps", "hops", "leaps"), terms);
+        assertEquals(0, skosAnalyzer.getExpansionStats().getCacheHits());
+        assertEquals(0, skosAnalyzer.getExpansionStats().getCacheMisses());
+    }
+
+    private List<String> analyze(String text, List<String> offsets) throws IOException {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream ts = skosAnalyzer.tokenStream("subject", text)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.add(termAtt.toString());
+                offsets.add(offsetAtt.startOffset() + "-" + offsetAtt.endOffset());
+            }
+            ts.end();
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,91 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.RAMDirectory;
+
+import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.facet.SKOSFacetCollector;
+import at.ac.univie.mminf.luceneSKOS.facet.SKOSFacetCollector.FacetNode;
+import at.ac.univie.mminf.luceneSKOS.facet.SKOSFacetFields;
+import at.ac.univie.mminf.luceneSKOS.skos.engine.mock.SKOSEngineMock;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Testing hierarchical concept facets
+ */
+public class SKOSFacetTest {
+
+    private static final String A = "http://example.com/concept/a";
+    private static final String B = "http://example.com/concept/b";
+    private static final String C = "http://example.com/concept/c";
+    private static final String D = "http://example.com/concept/d";
+
+    @Test
+    public void countsRollUpTheHierarchy() throws IOException {
+        // a polyhierarchy: d is narrower than both b and c
+        SKOSEngineMock engine = new SKOSEngineMock();
+        engine.addEntry(B, SKOSType.BROADER, A);
+        engine.addEntry(C, SKOSType.BROADER, A);
+        engine.addEntry(D, SKOSType.BROADER, B, C);
+
+        SKOSFacetFields facetFields = new SKOSFacetFields(engine, "concepts");
+        assertEquals(2, facetFields.getPaths(D).size());
+
+        RAMDirectory directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            for (String conceptURI : new String[]{D, B, A}) {
+                Document doc = new Document();
+                facetFields.addFields(doc, conceptURI);
+                writer.addDocument(doc);
+                // two segments
+                writer.commit();
+            }
+        }
+
+        SKOSFacetCollector collector = new SKOSFacetCollector("concepts");
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+        }
+        assertEquals(3, collector.getTotalHits());
+        assertEquals(3, collector.getCount(A));
+        assertEquals(2, collector.getCount(A, B));
+        assertEquals(1, collector.getCount(A, B, D));
+        assertEquals(1, collector.getCount(A, C));
+        assertEquals(1, collector.getCount(A, C, D));
+        assertEquals(0, collector.getCount(B));
+
+        List<FacetNode> facets = collector.getFacets();
+        assertEquals(1, facets.size());
+        assertEquals(A, facets.get(0).getConceptURI());
+        assertEquals(3, facets.get(0).getCount());
+        assertEquals(B, facets.get(0).getChildren().get(0).getConceptURI());
+        assertEquals(C, facets.get(0).getChildren().get(1).getConceptURI());
+    }
+}
@@ -0,0 +1,107 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.RAMDirectory;
+
+import org.junit.Before;
+import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.ConceptIntervals;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSIntervalFilter;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.engine.mock.SKOSEngineMock;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Testing the pre-order numbering of concepts and subtree range queries
+ */
+public class SKOSIntervalTest {
+
+    private static final String A = "http://example.com/concept/a";
+    private static final String B = "http://example.com/concept/b";
+    private static final String C = "http://example.com/concept/c";
+    private static final String D = "http://example.com/concept/d";
+
+    private ConceptIntervals intervals;
+
+    @Before
+    public void setUp() throws IOException {
+        // a polyhierarchy: d is narrower than both b and c
+        SKOSEngineMock engine = new SKOSEngineMock();
+        engine.addEntry(A, SKOSType.PREF, "a");
+        engine.addEntry(B, SKOSType.PREF, "b");
+        engine.addEntry(B, SKOSType.BROADER, A);
+        engine.addEntry(C, SKOSType.PREF, "c");
+        engine.addEntry(C, SKOSType.BROADER, A);
+        engine.addEntry(D, SKOSType.PREF, "d");
+        engine.addEntry(D, SKOSType.BROADER, B, C);
+        intervals = ConceptIntervals.build(engine);
+    }
+
+    @Test
+    public void polyhierarchiesAreNumberedPerPath() {
+        assertEquals(5, intervals.size());
+        assertArrayEquals(new int[]{0}, intervals.getNumbers(A));
+        assertArrayEquals(new int[]{2, 4}, intervals.getNumbers(D));
+        assertArrayEquals(new int[]{0, 4}, intervals.getSubtreeInterval(A));
+        assertArrayEquals(new int[]{1, 2}, intervals.getSubtreeInterval(B));
+        assertArrayEquals(new int[]{3, 4}, intervals.getSubtreeInterval(C));
+        assertNull(intervals.getSubtreeInterval("http://example.com/concept/x"));
+    }
+
+    @Test
+    public void subtreeIsOneRangeQuery() throws IOException {
+        Analyzer analyzer = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer source = new KeywordTokenizer();
+                return new TokenStreamComponents(source, new SKOSIntervalFilter(source, intervals));
+            }
+        };
+        RAMDirectory directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer))) {
+            for (String conceptURI : new String[]{D, B, A}) {
+                Document doc = new Document();
+                doc.add(new Field("subject", conceptURI, TextField.TYPE_NOT_STORED));
+                writer.addDocument(doc);
+            }
+        }
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            int step = SKOSIntervalFilter.DEFAULT_PRECISION_STEP;
+            assertEquals(1, searcher.search(intervals.newSubtreeQuery("subject", step, C), 10).totalHits);
+            assertEquals(2, searcher.search(intervals.newSubtreeQuery("subject", step, B), 10).totalHits);
+            assertEquals(3, searcher.search(intervals.newSubtreeQuery("subject", step, A), 10).totalHits);
+            assertEquals(1, searcher.search(intervals.newSubtreeQuery("subject", step, D), 10).totalHits);
+        }
+    }
+}
@@ -17,6 +17,14 @@
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 
 import org.apache.lucene.analysis.core.SimpleAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -36,7 +44,9 @@
 
 import org.junit.Before;
 import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.DocFreqSnapshot;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSExpansionSuppressor;
 
 import static org.junit.Assert.assertEquals;
 
@@ -101,4 +111,53 @@ public void testTermQuery() throws IOException, QueryNodeException {
         Query query = parser.parse("united nations", "content");
         assertEquals(1, searcher.search(query, 1).totalHits);
     }
+
+    @Test
+    public void duplicatesAndStopWordsAreDroppedInFilter() throws IOException {
+        List<String> terms = new ArrayList<>();
+        List<Integer> increments = new ArrayList<>();
+        try (TokenStream ts = skosAnalyzer.tokenStream("content", "The Quick")) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute posIncrAtt = ts.addAttribute(PositionIncrementAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.add(termAtt.toString());
+                increments.add(posIncrAtt.getPositionIncrement());
+            }
+            ts.end();
+        }
+        // the prefLabel "quick" duplicates the input token and is not emitted
+        assertEquals(Arrays.asList("quick", "speedy", "fast"), terms);
+        // the position of the stop word "the" is preserved
+        assertEquals(Arrays.asList(2, 0, 0), increments);
+    }
+
+    @Test
+    public void commonExpansionsAreSuppressed() throws IOException {
+        skosAnalyzer.setSuppressor(new SKOSExpansionSuppressor(
+                new DocFreqSnapshot(Collections.singletonMap("speedy", 9), 10), 0.5f));
+        List<String> terms = new ArrayList<>();
+        try (TokenStream ts = skosAnalyzer.tokenStream("content", "Quick")) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.add(termAtt.toString());
+            }
+            ts.end();
+        }
+        assertEquals(Arrays.asList("quick", "fast"), terms);
+        assertEquals(1, skosAnalyzer.getExpansionStats().getSuppressedExpansions());
+    }
+
+    @Test
+    public void suppressorCacheIsBounded() throws IOException {
+        SKOSExpansionSuppressor suppressor = new SKOSExpansionSuppressor(
+                new DocFreqSnapshot(Collections.singletonMap("speedy", 9), 10), 0.5f, 2);
+        assertEquals(0f, suppressor.getWeight("speedy"), 0f);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1f, suppressor.getWeight("term" + i), 0f);
+        }
+        assertEquals(2, suppressor.getCachedDecisions());
+        assertEquals(0f, suppressor.getWeight("speedy"), 0f);
+    }
 }
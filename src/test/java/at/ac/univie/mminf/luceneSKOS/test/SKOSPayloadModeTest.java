@@ -0,0 +1,166 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+
+import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.PayloadMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSPayloads;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngineFactory;
+import at.ac.univie.mminf.luceneSKOS.skos.engine.mock.SKOSEngineMock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing the payload modes of the SKOS filters
+ */
+public class SKOSPayloadModeTest {
+
+    private final static Logger logger = Logger.getLogger(SKOSPayloadModeTest.class.getName());
+
+    private static final String[] UKAT_CONCEPTS = new String[]{
+            "http://www.ukat.org.uk/thesaurus/concept/859",
+            "http://www.ukat.org.uk/thesaurus/concept/5060",
+            "http://www.ukat.org.uk/thesaurus/concept/18874",
+            "http://www.ukat.org.uk/thesaurus/concept/7630"
+    };
+
+    @Test
+    public void maskMergesTypesAtSamePosition() throws IOException {
+        SKOSAnalyzer analyzer = newHierarchyAnalyzer();
+        analyzer.setPayloadMode(PayloadMode.MASK);
+        List<BytesRef> payloads = new ArrayList<>();
+        List<String> terms = analyze(analyzer, payloads);
+        assertEquals(Arrays.asList("http://example.com/concept/1", "weapons"), terms);
+        assertNull(payloads.get(0));
+        assertEquals(1, payloads.get(1).length);
+        assertEquals(EnumSet.of(SKOSType.BROADER, SKOSType.BROADERTRANSITIVE),
+                SKOSPayloads.decodeMask(payloads.get(1)));
+    }
+
+    @Test
+    public void typeWritesSingleByte() throws IOException {
+        SKOSAnalyzer analyzer = newHierarchyAnalyzer();
+        analyzer.setPayloadMode(PayloadMode.TYPE);
+        List<BytesRef> payloads = new ArrayList<>();
+        List<String> terms = analyze(analyzer, payloads);
+        // the duplicate reached through broaderTransitive is dropped
+        assertEquals(Arrays.asList("http://example.com/concept/1", "weapons"), terms);
+        assertEquals(1, payloads.get(1).length);
+        assertEquals(SKOSType.BROADER, SKOSPayloads.decodeType(PayloadMode.TYPE, payloads.get(1)));
+    }
+
+    @Test
+    public void noneWritesNoPayload() throws IOException {
+        SKOSAnalyzer analyzer = newHierarchyAnalyzer();
+        analyzer.setPayloadMode(PayloadMode.NONE);
+        List<BytesRef> payloads = new ArrayList<>();
+        analyze(analyzer, payloads);
+        for (BytesRef payload : payloads) {
+            assertNull(payload);
+        }
+    }
+
+    /**
+     * Measures the index size of the UKAT sample for each payload mode
+     */
+    @Test
+    public void indexSizeOnUKATSamples() throws IOException {
+        Map<PayloadMode, Long> sizes = new EnumMap<>(PayloadMode.class);
+        for (PayloadMode mode : PayloadMode.values()) {
+            sizes.put(mode, indexUKATSamples(mode));
+            logger.info("Index size with payload mode " + mode + ": " + sizes.get(mode) + " bytes");
+        }
+        assertTrue(sizes.get(PayloadMode.NONE) < sizes.get(PayloadMode.TYPE));
+        assertTrue(sizes.get(PayloadMode.TYPE) < sizes.get(PayloadMode.INT));
+        assertTrue(sizes.get(PayloadMode.MASK) < sizes.get(PayloadMode.INT));
+    }
+
+    private SKOSAnalyzer newHierarchyAnalyzer() {
+        SKOSEngineMock engine = new SKOSEngineMock();
+        engine.addEntry("http://example.com/concept/1", SKOSType.PREF, "spearhead");
+        engine.addEntry("http://example.com/concept/1", SKOSType.BROADER, "http://example.com/concept/2");
+        engine.addEntry("http://example.com/concept/1", SKOSType.BROADERTRANSITIVE, "http://example.com/concept/2");
+        engine.addEntry("http://example.com/concept/2", SKOSType.PREF, "weapons");
+        return new SKOSAnalyzer(SKOSAnalyzer.STOP_WORDS_SET, engine, ExpansionType.URI, 1,
+                Arrays.asList(SKOSType.BROADER, SKOSType.BROADERTRANSITIVE));
+    }
+
+    private List<String> analyze(SKOSAnalyzer analyzer, List<BytesRef> payloads) throws IOException {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream ts = analyzer.tokenStream("subject", "http://example.com/concept/1")) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            PayloadAttribute payloadAtt = ts.addAttribute(PayloadAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.add(termAtt.toString());
+                payloads.add(payloadAtt.getPayload() != null ? BytesRef.deepCopyOf(payloadAtt.getPayload()) : null);
+            }
+            ts.end();
+        }
+        return terms;
+    }
+
+    private long indexUKATSamples(PayloadMode mode) throws IOException {
+        SKOSEngine engine = SKOSEngineFactory.getSKOSEngine(
+                getClass().getResourceAsStream("/skos_samples/ukat_examples.n3"), "N3");
+        SKOSAnalyzer analyzer = new SKOSAnalyzer(engine, ExpansionType.URI);
+        analyzer.setPayloadMode(mode);
+        Directory directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer))) {
+            for (int i = 0; i < 100; i++) {
+                Document doc = new Document();
+                for (String conceptURI : UKAT_CONCEPTS) {
+                    doc.add(new Field("subject", conceptURI, TextField.TYPE_NOT_STORED));
+                }
+                writer.addDocument(doc);
+            }
+            writer.forceMerge(1);
+        }
+        long size = 0;
+        for (String file : directory.listAll()) {
+            size += directory.fileLength(file);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,99 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import org.junit.Before;
+import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.ExpansionProfile;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSPerFieldAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Testing the per-field expansion profiles
+ */
+public class SKOSPerFieldAnalyzerTest extends AbstractFilterTest {
+
+    private SKOSPerFieldAnalyzer perFieldAnalyzer;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        Map<String, ExpansionProfile> profiles = new HashMap<>();
+        profiles.put("subject", new ExpansionProfile(ExpansionType.URI, SKOSType.PREF));
+        profiles.put("title", new ExpansionProfile(ExpansionType.LABEL, SKOSType.ALT));
+        ExpansionProfile keywords = new ExpansionProfile(ExpansionType.LABEL, SKOSType.ALT);
+        keywords.setMaxExpansionsPerToken(1);
+        keywords.setExpansionCacheSize(0);
+        profiles.put("keywords", keywords);
+        perFieldAnalyzer = new SKOSPerFieldAnalyzer(skosEngine, new KeywordAnalyzer(), profiles);
+    }
+
+    @Test
+    public void fieldsAreExpandedByTheirProfile() throws IOException {
+        assertEquals(Arrays.asList("http://example.com/concept/1", "jumps"),
+                analyze(perFieldAnalyzer, "subject", "http://example.com/concept/1"));
+        assertEquals(Arrays.asList("jumps", "hops", "leaps"),
+                analyze(perFieldAnalyzer, "title", "jumps"));
+        assertEquals(Arrays.asList("jumps", "leaps"),
+                analyze(perFieldAnalyzer, "keywords", "jumps"));
+        assertEquals(1, perFieldAnalyzer.getExpansionStats("keywords").getTruncatedTokens());
+    }
+
+    @Test
+    public void fieldsShareTheLabelAnalyzer() {
+        Analyzer labelAnalyzer = perFieldAnalyzer.getFieldAnalyzer("subject").getLabelAnalyzer();
+        assertSame(labelAnalyzer, perFieldAnalyzer.getFieldAnalyzer("title").getLabelAnalyzer());
+        assertEquals(0, perFieldAnalyzer.getFieldAnalyzer("keywords").getExpansionCacheSize());
+    }
+
+    @Test
+    public void fieldsWithoutProfileAreNotExpanded() throws IOException {
+        assertEquals(Arrays.asList("jumps"), analyze(perFieldAnalyzer, "id", "jumps"));
+        assertNull(perFieldAnalyzer.getFieldAnalyzer("id"));
+    }
+
+    private List<String> analyze(Analyzer analyzer, String field, String text) throws IOException {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream ts = analyzer.tokenStream(field, text)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.add(termAtt.toString());
+            }
+            ts.end();
+        }
+        return terms;
+    }
+}
@@ -17,9 +17,15 @@
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 
 import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.SKOSStandardQueryParser;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.queries.TermsQuery;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.TextField;
@@ -27,7 +33,11 @@
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.queryparser.flexible.core.nodes.QueryNode;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
+import org.apache.lucene.search.BlendedTermQuery;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.store.Directory;
@@ -38,10 +48,17 @@
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import at.ac.univie.mminf.luceneSKOS.analysis.DocFreqSnapshot;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSExpansionSuppressor;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSExpansionNodeCache;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSExpansionPlanner;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSExpansionPlanner.Strategy;
+import at.ac.univie.mminf.luceneSKOS.queryparser.flexible.standard.processors.SKOSQueryNodeProcessor.ExpansionQueryMode;
 import at.ac.univie.mminf.luceneSKOS.skos.engine.mock.SKOSEngineMock;
 
 public class SKOSStandardQueryParserTest {
@@ -181,4 +198,273 @@ public void queryParserSearchWithBoosts() throws IOException, QueryNodeException
         
       }
     
+    @Test
+    public void queryParserSuppressesCommonExpansions() throws QueryNodeException {
+        
+        SKOSExpansionSuppressor suppressor = new SKOSExpansionSuppressor(
+            new DocFreqSnapshot(Collections.singletonMap("leaps", 9), 10), 0.5f);
+        
+        SKOSStandardQueryParser parser = new SKOSStandardQueryParser(skosAnalyzer);
+        parser.setBoost(SKOSType.ALT, 0.5f);
+        parser.setSuppressor(suppressor);
+        
+        Query query = parser.parse("fox jumps", "content");
+        assertEquals("content:fox (content:jumps content:hops^0.5)", query.toString());
+        
+        suppressor.setAction(SKOSExpansionSuppressor.Action.DOWNWEIGHT);
+        
+        query = parser.parse("fox jumps", "content");
+        assertEquals("content:fox (content:jumps content:hops^0.5 content:leaps^0.05)", query.toString());
+        
+    }
+    
+    @Test
+    public void queryParserRestrictsExpansionTypes() throws QueryNodeException {
+        
+        SKOSStandardQueryParser parser = new SKOSStandardQueryParser(skosAnalyzer);
+        parser.setBoost(SKOSType.ALT, 0.5f);
+        parser.setTypes(EnumSet.of(SKOSType.BROADER));
+        
+        assertEquals("content:fox content:jumps", parser.parse("fox jumps", "content").toString());
+        
+        parser.setTypes(EnumSet.of(SKOSType.ALT));
+        assertEquals("content:fox (content:jumps content:hops^0.5 content:leaps^0.5)",
+            parser.parse("fox jumps", "content").toString());
+    }
+    
+    @Test
+    public void queryParserSynonymAndTermsModes() throws IOException, QueryNodeException {
+        
+        Document doc = new Document();
+        doc.add(new Field("content", "The quick brown fox leaps over the lazy dog",
+            TextField.TYPE_STORED));
+        
+        writer.addDocument(doc);
+        
+        searcher = new IndexSearcher(DirectoryReader.open(writer, false));
+        
+        SKOSStandardQueryParser parser = new SKOSStandardQueryParser(skosAnalyzer);
+        parser.setBoost(SKOSType.ALT, 0.5f);
+        parser.setExpansionQueryMode(ExpansionQueryMode.SYNONYM);
+        
+        // one blended query for the pref label, one for both alt labels
+        Query query = parser.parse("jumps", "content");
+        assertEquals(1, searcher.search(query, 1).totalHits);
+        assertTrue(query instanceof BooleanQuery);
+        for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+            assertTrue(clause.getQuery() instanceof BlendedTermQuery);
+        }
+        assertEquals(2, ((BooleanQuery) query).clauses().size());
+
+        // groups beyond the clause limit are searched without blending
+        SKOSExpansionPlanner planner = new SKOSExpansionPlanner();
+        planner.setMaxClauses(10);
+        parser.setPlanner(planner);
+        skosEngine.addEntry("http://example.com/concept/1", SKOSType.ALT, "bounds");
+        int maxClauseCount = BooleanQuery.getMaxClauseCount();
+        BooleanQuery.setMaxClauseCount(2);
+        try {
+            query = parser.parse("jumps", "content");
+            assertEquals(1, searcher.search(query, 1).totalHits);
+            List<BooleanClause> clauses = ((BooleanQuery) query).clauses();
+            assertTrue(clauses.get(0).getQuery() instanceof BlendedTermQuery);
+            assertTrue(clauses.get(1).getQuery() instanceof TermsQuery);
+            assertEquals(0.5f, clauses.get(1).getQuery().getBoost(), 0f);
+        } finally {
+            BooleanQuery.setMaxClauseCount(maxClauseCount);
+        }
+
+        parser.setExpansionQueryMode(ExpansionQueryMode.TERMS);
+        
+        query = parser.parse("jumps", "content");
+        assertEquals(1, searcher.search(query, 1).totalHits);
+        assertTrue(query instanceof TermsQuery);
+        
+    }
+    
+    @Test
+    public void queryParserCachesExpansions() throws QueryNodeException {
+        
+        SKOSExpansionNodeCache cache = new SKOSExpansionNodeCache();
+        
+        SKOSStandardQueryParser parser = new SKOSStandardQueryParser(skosAnalyzer);
+        parser.setBoost(SKOSType.ALT, 0.5f);
+        parser.setExpansionCache(cache);
+        
+        Query query = parser.parse("fox jumps", "content");
+        assertEquals("content:fox (content:jumps content:hops^0.5 content:leaps^0.5)", query.toString());
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        
+        query = parser.parse("fox jumps", "content");
+        assertEquals("content:fox (content:jumps content:hops^0.5 content:leaps^0.5)", query.toString());
+        assertEquals(2, cache.getHits());
+        
+        // other boosts are other entries
+        parser.setBoost(SKOSType.ALT, 0.2f);
+        query = parser.parse("jumps", "content");
+        assertEquals("content:jumps content:hops^0.2 content:leaps^0.2", query.toString());
+        assertEquals(3, cache.getMisses());
+        
+        // changing the engine data invalidates the entries
+        skosEngine.addEntry("http://example.com/concept/1", SKOSType.ALT, "bounds");
+        query = parser.parse("jumps", "content");
+        assertTrue(query.toString().contains("content:bounds^0.2"));
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        
+    }
+    
+    @Test
+    public void parsersShareCachedExpansions() throws QueryNodeException {
+        
+        SKOSExpansionNodeCache cache = new SKOSExpansionNodeCache();
+        
+        // one parser per request, as in SKOSQParser
+        for (int i = 0; i < 2; i++) {
+            SKOSStandardQueryParser parser = new SKOSStandardQueryParser(skosAnalyzer);
+            parser.setBoost(SKOSType.ALT, 0.5f);
+            parser.setExpansionCache(cache);
+            assertEquals("content:jumps content:hops^0.5 content:leaps^0.5",
+                parser.parse("jumps", "content").toString());
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        
+    }
+    
+    @Test
+    public void queryParserHandlesLargeExpansions() throws QueryNodeException {
+        
+        String[] labels = new String[500];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = "label" + i;
+        }
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.PREF, "large");
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.ALT, labels);
+        
+        SKOSStandardQueryParser parser = new SKOSStandardQueryParser(skosAnalyzer);
+        
+        Query query = parser.parse("large", "content");
+        assertTrue(query instanceof BooleanQuery);
+        assertEquals(labels.length + 1, ((BooleanQuery) query).clauses().size());
+        
+        query = parser.parse("\"fox large\"", "content");
+        assertEquals("org.apache.lucene.search.MultiPhraseQuery", query
+            .getClass().getName());
+        assertTrue(query.toString().startsWith("content:\"fox (large "));
+        
+    }
+    
+    @Test
+    public void queryParserPlansLargeExpansions() throws QueryNodeException {
+        
+        String[] labels = new String[100];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = "label" + i;
+        }
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.PREF, "large");
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.ALT, labels);
+        
+        SKOSExpansionPlanner planner = new SKOSExpansionPlanner();
+        planner.setMaxClauses(10);
+        
+        SKOSStandardQueryParser parser = new SKOSStandardQueryParser(skosAnalyzer);
+        parser.setPlanner(planner);
+        
+        assertEquals(Strategy.ALL, getStrategy(parser, "jumps"));
+        
+        assertEquals(Strategy.TERMS, getStrategy(parser, "large"));
+        assertTrue(parser.parse("large", "content") instanceof TermsQuery);
+        
+        planner.setFallback(Strategy.TOP_K);
+        assertEquals(Strategy.TOP_K, getStrategy(parser, "large"));
+        Query query = parser.parse("large", "content");
+        assertEquals(10, ((BooleanQuery) query).clauses().size());
+        assertTrue(query.toString().startsWith("content:large "));
+        
+        planner.setFallback(Strategy.CONCEPT_ID);
+        planner.setConceptField("concept");
+        assertEquals(Strategy.CONCEPT_ID, getStrategy(parser, "large"));
+        assertEquals("content:large concept:http://example.com/concept/8",
+            parser.parse("large", "content").toString());
+        
+    }
+    
+    @Test
+    public void queryParserPlansEachPosition() throws QueryNodeException {
+        
+        String[] labels = new String[100];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = "label" + i;
+        }
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.PREF, "large");
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.ALT, labels);
+        
+        SKOSExpansionPlanner planner = new SKOSExpansionPlanner();
+        planner.setMaxClauses(10);
+        
+        SKOSStandardQueryParser parser = new SKOSStandardQueryParser(skosAnalyzer);
+        parser.setPlanner(planner);
+        
+        // one query node analyzed into two positions
+        BooleanQuery query = (BooleanQuery) parser.parse("quick-large", "content");
+        assertEquals(2, query.clauses().size());
+        assertTrue(query.clauses().get(0).getQuery() instanceof BooleanQuery);
+        assertTrue(query.clauses().get(1).getQuery() instanceof TermsQuery);
+        
+        planner.setFallback(Strategy.TOP_K);
+        query = (BooleanQuery) parser.parse("quick-large", "content");
+        BooleanQuery large = (BooleanQuery) query.clauses().get(1).getQuery();
+        assertEquals(10, large.clauses().size());
+        assertTrue(large.toString().startsWith("content:large "));
+        
+        // cached expansions keep the strategy of each position
+        SKOSExpansionNodeCache cache = new SKOSExpansionNodeCache();
+        parser.setExpansionCache(cache);
+        planner.setFallback(Strategy.TERMS);
+        for (int i = 0; i < 2; i++) {
+            QueryNode tree = parser.getQueryNodeProcessor().process(
+                parser.getSyntaxParser().parse("quick-large", "content"));
+            List<Strategy> strategies = new ArrayList<>();
+            findStrategies(tree, strategies);
+            assertEquals(Arrays.asList(Strategy.ALL, Strategy.TERMS), strategies);
+        }
+        assertEquals(1, cache.getHits());
+        
+    }
+    
+    private Strategy getStrategy(SKOSStandardQueryParser parser, String text)
+        throws QueryNodeException {
+        QueryNode tree = parser.getQueryNodeProcessor().process(
+            parser.getSyntaxParser().parse(text, "content"));
+        return findStrategy(tree);
+    }
+    
+    private void findStrategies(QueryNode node, List<Strategy> strategies) {
+        if (node.containsTag(SKOSExpansionPlanner.STRATEGY_TAG)) {
+            strategies.add((Strategy) node.getTag(SKOSExpansionPlanner.STRATEGY_TAG));
+        }
+        if (node.getChildren() != null) {
+            for (QueryNode child : node.getChildren()) {
+                findStrategies(child, strategies);
+            }
+        }
+    }
+    
+    private Strategy findStrategy(QueryNode node) {
+        if (node.containsTag(SKOSExpansionPlanner.STRATEGY_TAG)) {
+            return (Strategy) node.getTag(SKOSExpansionPlanner.STRATEGY_TAG);
+        }
+        if (node.getChildren() != null) {
+            for (QueryNode child : node.getChildren()) {
+                Strategy strategy = findStrategy(child);
+                if (strategy != null) {
+                    return strategy;
+                }
+            }
+        }
+        return null;
+    }
+    
 }
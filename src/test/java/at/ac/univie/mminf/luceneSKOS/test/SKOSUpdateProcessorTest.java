@@ -0,0 +1,148 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.skos.engine.mock.SKOSEngineMock;
+import at.ac.univie.mminf.luceneSKOS.solr.SKOSEngineRegistry;
+import at.ac.univie.mminf.luceneSKOS.solr.SKOSEngineRegistry.Key;
+import at.ac.univie.mminf.luceneSKOS.solr.SKOSUpdateProcessorFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing the enrichment of documents by the SKOS update processor
+ */
+public class SKOSUpdateProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private SKOSUpdateProcessorFactory factory;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        NamedList<Object> args = new NamedList<>();
+        args.add("skosFile", "vocabulary.n3");
+        args.add("source", "subject");
+        args.add("type", "pref, alt broader");
+        args.add("labelField", "subject_expanded");
+        args.add("conceptField", "subject_concept");
+        args.add("ancestorField", "subject_ancestor");
+        args.add("pathField", "subject_path");
+        factory = new SKOSUpdateProcessorFactory();
+        factory.init(args);
+
+        file = folder.newFile("vocabulary.n3").toPath();
+        Files.write(file, "first".getBytes(StandardCharsets.UTF_8));
+        factory.setEngineLease(SKOSEngineRegistry.getInstance().acquire(
+            Key.forFile(file, null, null, null), loader("http://example.com/equipment")));
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    public void processAddWritesLabelsConceptsAncestorsAndPaths() throws IOException {
+        SolrInputDocument doc = process(factory.getInstance(null, null, null), "Weapons");
+        assertEquals(Arrays.<Object>asList("weapons", "arms", "equipment"), doc.getFieldValues("subject_expanded"));
+        assertEquals(Arrays.<Object>asList("http://example.com/weapons"), doc.getFieldValues("subject_concept"));
+        assertEquals(Arrays.<Object>asList("http://example.com/equipment"), doc.getFieldValues("subject_ancestor"));
+        assertEquals(Arrays.<Object>asList("http://example.com/equipment|http://example.com/weapons"),
+            doc.getFieldValues("subject_path"));
+    }
+
+    @Test
+    public void resolveLooksUpEachValueOncePerRequest() throws IOException {
+        UpdateRequestProcessor processor = factory.getInstance(null, null, null);
+        process(processor, "Weapons");
+        process(processor, "Weapons");
+        assertEquals(1, lookups.get());
+
+        process(factory.getInstance(null, null, null), "Weapons");
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void reloadReplacesTheCachedPaths() throws IOException {
+        process(factory.getInstance(null, null, null), "Weapons");
+
+        Files.write(file, "second".getBytes(StandardCharsets.UTF_8));
+        Key previous = factory.getEngineLease().getKey();
+        assertTrue(SKOSEngineRegistry.getInstance().reload(previous, Key.forFile(file, null, null, null),
+            loader("http://example.com/arsenal")) > 0);
+        SolrInputDocument doc = process(factory.getInstance(null, null, null), "Weapons");
+        assertEquals(Arrays.<Object>asList("http://example.com/arsenal|http://example.com/weapons"),
+            doc.getFieldValues("subject_path"));
+    }
+
+    private SolrInputDocument process(UpdateRequestProcessor processor, String subject) throws IOException {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("subject", subject);
+        AddUpdateCommand cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = doc;
+        processor.processAdd(cmd);
+        return doc;
+    }
+
+    private SKOSEngineRegistry.EngineLoader loader(final String broaderURI) {
+        return new SKOSEngineRegistry.EngineLoader() {
+            @Override
+            public SKOSEngine load(String indexDirectory) {
+                SKOSEngineMock engine = new SKOSEngineMock() {
+                    @Override
+                    public List<String> getConcepts(String label) {
+                        lookups.incrementAndGet();
+                        return super.getConcepts(label);
+                    }
+                };
+                engine.addEntry("http://example.com/weapons", SKOSType.PREF, "weapons");
+                engine.addEntry("http://example.com/weapons", SKOSType.ALT, "arms");
+                engine.addEntry("http://example.com/weapons", SKOSType.BROADER, broaderURI);
+                engine.addEntry("http://example.com/weapons", SKOSType.BROADERTRANSITIVE, broaderURI);
+                engine.addEntry(broaderURI, SKOSType.PREF, "equipment");
+                return engine;
+            }
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.ExtendedSKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.analysis.engine.SKOSEngineFactory;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSCorpusGenerator;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator.Concept;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator.Format;
+import at.ac.univie.mminf.luceneSKOS.skos.generator.SKOSVocabularyGenerator.Label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing the synthetic vocabulary and corpus generators
+ */
+public class SKOSVocabularyGeneratorTest {
+
+    @Test
+    public void allFormatsLoadTheGeneratedVocabulary() throws IOException {
+        SKOSVocabularyGenerator generator = newGenerator(42);
+        Concept concept = generator.getConcept(150);
+        for (Format format : Format.values()) {
+            SKOSEngine engine = SKOSEngineFactory.getSKOSEngine(new ByteArrayInputStream(
+                    write(generator, format).getBytes(StandardCharsets.UTF_8)), format.getLang());
+            assertEquals(format.name(), 200, ((ExtendedSKOSEngine) engine).getAllConcepts().size());
+            Collection<String> broader = engine.getBroaderConcepts(concept.getURI());
+            assertEquals(format.name(), concept.getParents().length, broader.size());
+            for (int parent : concept.getParents()) {
+                assertTrue(broader.contains(generator.getConceptURI(parent)));
+                assertTrue(engine.getNarrowerConcepts(generator.getConceptURI(parent)).contains(concept.getURI()));
+            }
+            for (Label label : concept.getPrefLabels()) {
+                assertTrue(engine.getPrefLabels(concept.getURI()).contains(label.getText()));
+            }
+        }
+    }
+
+    @Test
+    public void generationIsDeterministic() throws IOException {
+        assertEquals(write(newGenerator(42), Format.TURTLE), write(newGenerator(42), Format.TURTLE));
+        assertNotEquals(write(newGenerator(42), Format.TURTLE), write(newGenerator(43), Format.TURTLE));
+        SKOSCorpusGenerator corpus = new SKOSCorpusGenerator(newGenerator(42), 7);
+        assertEquals(corpus.getDocument(3), new SKOSCorpusGenerator(newGenerator(42), 7).getDocument(3));
+    }
+
+    @Test
+    public void hierarchyRespectsDepth() {
+        SKOSVocabularyGenerator generator = new SKOSVocabularyGenerator(1000, 42);
+        generator.setBranching(3);
+        generator.setDepth(4);
+        // 1 + 3 + 9 + 27 concepts per tree
+        assertEquals(25, generator.getRoots());
+        assertEquals(3, generator.getAncestors(999).length);
+        assertEquals(0, generator.getParents(24).length);
+        assertEquals(0, generator.getParents(25)[0]);
+    }
+
+    @Test
+    public void corpusHitRateIsControllable() {
+        SKOSCorpusGenerator corpus = new SKOSCorpusGenerator(newGenerator(42), 7);
+        corpus.setHitRate(0);
+        for (String word : corpus.getDocument(0).split(" ")) {
+            assertTrue(word.endsWith("sh"));
+        }
+        corpus.setHitRate(1);
+        for (String word : corpus.getDocument(0).split(" ")) {
+            assertFalse(word.endsWith("sh"));
+        }
+    }
+
+    private SKOSVocabularyGenerator newGenerator(long seed) {
+        SKOSVocabularyGenerator generator = new SKOSVocabularyGenerator(200, seed);
+        generator.setBranching(4);
+        generator.setPolyhierarchyRatio(0.3);
+        Map<String, Double> languages = new LinkedHashMap<>();
+        languages.put("en", 1d);
+        languages.put("de", 0.5);
+        generator.setLanguages(languages);
+        generator.setAltLabels(1, 2);
+        return generator;
+    }
+
+    private String write(SKOSVocabularyGenerator generator, Format format) throws IOException {
+        StringWriter out = new StringWriter();
+        generator.write(out, format);
+        return out.toString();
+    }
+}
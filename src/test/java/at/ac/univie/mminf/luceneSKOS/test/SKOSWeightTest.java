@@ -0,0 +1,107 @@
+package at.ac.univie.mminf.luceneSKOS.test;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TopDocs;
+
+import org.junit.Before;
+import org.junit.Test;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.PayloadMode;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSPayloads;
+import at.ac.univie.mminf.luceneSKOS.analysis.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.search.SKOSWeightSimilarity;
+import at.ac.univie.mminf.luceneSKOS.search.SKOSWeightedTermQuery;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Testing the hierarchy-distance weights written in WEIGHT payload mode
+ */
+public class SKOSWeightTest extends AbstractFilterTest {
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.PREF, "weapons");
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.NARROWER, "http://example.com/concept/9");
+        skosEngine.addEntry("http://example.com/concept/8", SKOSType.NARROWERTRANSITIVE,
+                "http://example.com/concept/12", "http://example.com/concept/9");
+        skosEngine.addEntry("http://example.com/concept/9", SKOSType.PREF, "guns");
+        skosEngine.addEntry("http://example.com/concept/9", SKOSType.NARROWER, "http://example.com/concept/12");
+        skosEngine.addEntry("http://example.com/concept/12", SKOSType.PREF, "rifles");
+        skosAnalyzer = new SKOSAnalyzer(SKOSAnalyzer.STOP_WORDS_SET, skosEngine, ExpansionType.LABEL, 1,
+                Arrays.asList(SKOSType.PREF, SKOSType.NARROWERTRANSITIVE));
+        skosAnalyzer.setPayloadMode(PayloadMode.WEIGHT);
+    }
+
+    @Test
+    public void weightsDecayWithDistance() throws IOException {
+        Map<String, Float> weights = new HashMap<>();
+        try (TokenStream ts = skosAnalyzer.tokenStream("subject", "weapons")) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            PayloadAttribute payloadAtt = ts.addAttribute(PayloadAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                weights.put(termAtt.toString(), SKOSPayloads.decodeWeight(payloadAtt.getPayload()));
+            }
+            ts.end();
+        }
+        assertEquals(1f, weights.get("weapons"), 0f);
+        assertEquals(0.5f, weights.get("guns"), 0f);
+        assertEquals(0.25f, weights.get("rifles"), 0f);
+    }
+
+    @Test
+    public void weightedQueryRanksDirectMatchesFirst() throws IOException {
+        writer = new IndexWriter(directory, new IndexWriterConfig(skosAnalyzer));
+        for (String[] values : new String[][]{{"1", "weapons"}, {"2", "rifles"}}) {
+            Document doc = new Document();
+            doc.add(new StringField("id", values[0], Field.Store.YES));
+            doc.add(new TextField("subject", values[1], Field.Store.NO));
+            writer.addDocument(doc);
+        }
+        writer.close();
+        writer = null;
+        searcher = new IndexSearcher(DirectoryReader.open(directory));
+        searcher.setSimilarity(new SKOSWeightSimilarity());
+        TopDocs results = searcher.search(new SKOSWeightedTermQuery(new Term("subject", "rifles")), 10);
+        assertEquals(2, results.totalHits);
+        assertEquals("2", searcher.doc(results.scoreDocs[0].doc).get("id"));
+        assertEquals("1", searcher.doc(results.scoreDocs[1].doc).get("id"));
+        assertEquals(0.25f, results.scoreDocs[1].score / results.scoreDocs[0].score, 0.001f);
+    }
+}